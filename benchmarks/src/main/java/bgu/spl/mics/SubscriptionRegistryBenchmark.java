@@ -0,0 +1,110 @@
+package bgu.spl.mics;
+
+import bgu.spl.mics.benchmarks.PingBroadcast;
+import bgu.spl.mics.benchmarks.PingEvent;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Looking up the subscribers of a message type, which every send does, while another thread keeps subscribing
+ * and unsubscribing: through the {@link SubscriptionRegistry} against a map under a {@link WriterFavoredReadWriteLock},
+ * which is how the broker used to look them up.
+ * It's in the package of the registry, which is package-private.
+ * The ratio of the looking up threads to the churning one is set with {@code -tg}, e.g. {@code -tg 7,1}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Group)
+public class SubscriptionRegistryBenchmark {
+    private static final String REGISTRY = "registry";
+    private static final String LOCKED = "locked";
+
+    @Param({ REGISTRY, LOCKED })
+    public String lookup;
+
+    @Param({ "16" })
+    public int subscribers;
+
+    private SubscriptionRegistry registry;
+    private ReadWriteLock lock;
+    private Map<Class<? extends Message>, List<Subscriber>> lockedSubscribers;
+    private final Subscriber churner = new IdleSubscriber("churner");
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        registry = new SubscriptionRegistry();
+        lock = new WriterFavoredReadWriteLock();
+        lockedSubscribers = new HashMap<>();
+        List<Subscriber> broadcastSubscribers = new LinkedList<>();
+        for (int i = 0; i < subscribers; i++) {
+            Subscriber subscriber = new IdleSubscriber("Subscriber" + i);
+            registry.subscribe(PingBroadcast.class, subscriber);
+            broadcastSubscribers.add(subscriber);
+        }
+        lockedSubscribers.put(PingBroadcast.class, broadcastSubscribers);
+    }
+
+    @Benchmark
+    @Group("churn")
+    @GroupThreads(3)
+    public int getSubscribers() {
+        if (lookup.equals(REGISTRY)) {
+            return registry.getSubscribers(PingBroadcast.class).length;
+        }
+
+        lock.acquireReadLock();
+        try {
+            return lockedSubscribers.get(PingBroadcast.class).size();
+        } finally {
+            lock.releaseReadLock();
+        }
+    }
+
+    @Benchmark
+    @Group("churn")
+    @GroupThreads(1)
+    public void subscribeAndUnsubscribe() {
+        if (lookup.equals(REGISTRY)) {
+            registry.subscribe(PingEvent.class, churner);
+            registry.unsubscribe(churner);
+            return;
+        }
+
+        lock.acquireWriteLock();
+        try {
+            lockedSubscribers.computeIfAbsent(PingEvent.class, type -> new LinkedList<>()).add(churner);
+        } finally {
+            lock.releaseWriteLock();
+        }
+        lock.acquireWriteLock();
+        try {
+            // Unsubscribing goes over the subscribers of every type, like the registry does
+            for (List<Subscriber> typeSubscribers : lockedSubscribers.values()) {
+                typeSubscribers.remove(churner);
+            }
+        } finally {
+            lock.releaseWriteLock();
+        }
+    }
+
+    /**
+     * A subscriber which is only ever looked up, it's never run
+     */
+    private static class IdleSubscriber extends Subscriber {
+        IdleSubscriber(String name) {
+            super(name);
+        }
+
+        @Override
+        protected void initialize() {
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package bgu.spl.mics.benchmarks;
+
+import bgu.spl.mics.MessageBroker;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The time it takes a broadcast to reach all of its subscribers, i.e. until every one of them has taken it
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(1)
+@State(Scope.Benchmark)
+public class BroadcastFanOutBenchmark {
+    @Param({ Brokers.LINKED_QUEUES, Brokers.RING_BUFFER })
+    public String broker;
+
+    @Param({ "1", "16", "64" })
+    public int subscribers;
+
+    private MessageBroker messageBroker;
+    private EchoSubscribers echoSubscribers;
+
+    /**
+     * The amount of broadcasts the subscribers will have taken once they've all taken the last one sent
+     */
+    private long expected;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        messageBroker = Brokers.create(broker);
+        echoSubscribers = new EchoSubscribers(messageBroker, subscribers);
+        expected = 0;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        echoSubscribers.stop();
+    }
+
+    @Benchmark
+    public long sendToAll() throws InterruptedException {
+        messageBroker.sendBroadcast(new PingBroadcast());
+        expected += subscribers;
+        long received;
+        while ((received = echoSubscribers.getBroadcastCount()) < expected) {
+            Thread.yield();
+        }
+        return received;
+    }
+}
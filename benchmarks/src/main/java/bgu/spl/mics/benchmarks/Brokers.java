@@ -0,0 +1,39 @@
+package bgu.spl.mics.benchmarks;
+
+import bgu.spl.mics.MessageBroker;
+import bgu.spl.mics.MessageBrokerImpl;
+import bgu.spl.mics.RingBufferMessageBroker;
+import bgu.spl.mics.WaitStrategy;
+
+/**
+ * Creates the message brokers under test, by the names used in the configuration of the application
+ * (and the ring buffer with each of its wait strategies, it parks by default)
+ */
+final class Brokers {
+    static final String LINKED_QUEUES = "linkedQueues";
+    static final String RING_BUFFER = "ringBuffer";
+    static final String RING_BUFFER_YIELD = "ringBufferYield";
+    static final String RING_BUFFER_BUSY_SPIN = "ringBufferBusySpin";
+
+    private Brokers() {
+    }
+
+    /**
+     * @param name The name of the broker implementation
+     * @return A new message broker
+     */
+    static MessageBroker create(String name) {
+        switch (name) {
+            case LINKED_QUEUES:
+                return new MessageBrokerImpl();
+            case RING_BUFFER:
+                return new RingBufferMessageBroker();
+            case RING_BUFFER_YIELD:
+                return new RingBufferMessageBroker(RingBufferMessageBroker.DEFAULT_RING_SIZE, WaitStrategy.Yield);
+            case RING_BUFFER_BUSY_SPIN:
+                return new RingBufferMessageBroker(RingBufferMessageBroker.DEFAULT_RING_SIZE, WaitStrategy.BusySpin);
+            default:
+                throw new IllegalArgumentException("Unknown message broker '" + name + "'");
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package bgu.spl.mics.benchmarks;
+
+import bgu.spl.mics.application.passiveObjects.Diary;
+import bgu.spl.mics.application.passiveObjects.Report;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.reflect.Constructor;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Many Ms adding reports at once: the {@link Diary} against a list under a monitor,
+ * which is how the diary used to add the reports.
+ * Every thread is an M, set their amount with {@code -t}, e.g. {@code -t 1} up to {@code -t 64}.
+ * Every iteration starts with an empty diary and every M adds a batch of reports,
+ * so the reports kept don't grow throughout the run.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, batchSize = DiaryBenchmark.REPORTS_PER_M)
+@Measurement(iterations = 10, batchSize = DiaryBenchmark.REPORTS_PER_M)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class DiaryBenchmark {
+    static final int REPORTS_PER_M = 100_000;
+
+    private final Report report = new Report();
+    private Constructor<Diary> constructor;
+    private Diary diary;
+    private List<Report> lockedReports;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() throws ReflectiveOperationException {
+        // The diary is a singleton, a new one is created for every iteration instead
+        constructor = Diary.class.getDeclaredConstructor();
+        constructor.setAccessible(true);
+    }
+
+    @Setup(Level.Iteration)
+    public void setUp() throws ReflectiveOperationException {
+        diary = constructor.newInstance();
+        lockedReports = new LinkedList<>();
+    }
+
+    @Benchmark
+    public void diary() {
+        diary.addReport(report);
+    }
+
+    @Benchmark
+    public void synchronizedList() {
+        synchronized (lockedReports) {
+            lockedReports.add(report);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package bgu.spl.mics.benchmarks;
+
+import bgu.spl.mics.Event;
+import bgu.spl.mics.MessageBrokerImpl;
+import bgu.spl.mics.RoutingMessageBroker;
+import bgu.spl.mics.RoutingPolicies;
+import bgu.spl.mics.RoutingPolicy;
+import bgu.spl.mics.Subscriber;
+import bgu.spl.mics.SubscriberExecutor;
+import bgu.spl.mics.ThreadSubscriberExecutor;
+import bgu.spl.mics.application.messages.LastTickBroadcast;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The latency of events (from sending until completed) under the routing policies,
+ * when a few of the events take much longer to handle than the rest, like missions whose needs take a while.
+ * Round-Robin keeps handing events to a subscriber which is stuck on a long one, so the tail latency grows,
+ * while the load-aware policies send them to the idle subscribers,
+ * and with work stealing the idle subscribers take them away from the stuck one.
+ * There are more senders than subscribers, so events queue up behind the long ones. Read the percentiles of the samples.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class DispatchLatencyBenchmark {
+    private static final String ROUND_ROBIN = "roundRobin";
+    private static final String LEAST_PENDING = "leastPending";
+    private static final String TWO_CHOICES = "twoChoices";
+    private static final String STEALING = "stealing";
+
+    private static final int SUBSCRIBERS = 4;
+    private static final int SHORT_MS = 2;
+    private static final int LONG_MS = 40;
+    private static final double LONG_RATIO = 0.1;
+
+    @Param({ ROUND_ROBIN, LEAST_PENDING, TWO_CHOICES, STEALING })
+    public String policy;
+
+    private RoutingMessageBroker broker;
+    private SubscriberExecutor executor;
+
+    @Setup(Level.Trial)
+    public void setUp() throws InterruptedException {
+        // The workers are subscribers, which always use the broker instance
+        broker = (RoutingMessageBroker)MessageBrokerImpl.getInstance();
+        broker.setRoutingPolicy(Job.class, createPolicy());
+        broker.setWorkStealing(Job.class, policy.equals(STEALING));
+
+        CountDownLatch registered = new CountDownLatch(SUBSCRIBERS);
+        executor = new ThreadSubscriberExecutor();
+        for (int i = 0; i < SUBSCRIBERS; i++) {
+            executor.execute(new Worker("Worker" + i, registered));
+        }
+        registered.await();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        broker.sendBroadcast(new LastTickBroadcast(0));
+        executor.awaitTermination();
+        broker.setRoutingPolicy(Job.class, null);
+        broker.setWorkStealing(Job.class, false);
+    }
+
+    @Benchmark
+    public Void sendAndComplete() throws InterruptedException {
+        Job job = new Job(ThreadLocalRandom.current().nextDouble() < LONG_RATIO ? LONG_MS : SHORT_MS);
+        return broker.sendEvent(job).get();
+    }
+
+    private RoutingPolicy<Job> createPolicy() {
+        switch (policy) {
+            case LEAST_PENDING:
+                return RoutingPolicies.leastPending(broker);
+            case TWO_CHOICES:
+                return RoutingPolicies.twoChoices(broker);
+            default:
+                return RoutingPolicies.roundRobin();
+        }
+    }
+
+    private static class Job implements Event<Void> {
+        private final int durationMs;
+
+        Job(int durationMs) {
+            this.durationMs = durationMs;
+        }
+    }
+
+    private static class Worker extends Subscriber {
+        private final CountDownLatch registered;
+
+        Worker(String name, CountDownLatch registered) {
+            super(name);
+            this.registered = registered;
+        }
+
+        @Override
+        protected void initialize() {
+            subscribeBroadcast(LastTickBroadcast.class, b -> terminate());
+            subscribeEvent(Job.class, job -> {
+                Thread.sleep(job.durationMs);
+                complete(job, null);
+            });
+            registered.countDown();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package bgu.spl.mics.benchmarks;
+
+import bgu.spl.mics.Message;
+import bgu.spl.mics.MessageBroker;
+import bgu.spl.mics.Subscriber;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Subscribers of {@link PingEvent}s and {@link PingBroadcast}s, each taking messages from the broker on a thread of its own.
+ * They complete every event right away and count the broadcasts they take.
+ * Driving the broker directly (rather than running {@link Subscriber#run()}) keeps callbacks out of the measurement.
+ */
+final class EchoSubscribers {
+    private final MessageBroker broker;
+    private final Thread[] threads;
+    private final AtomicLong broadcasts;
+
+    /**
+     * Registers the subscribers and starts their threads
+     * @param broker The message broker
+     * @param count The amount of subscribers
+     */
+    EchoSubscribers(MessageBroker broker, int count) {
+        this.broker = broker;
+        threads = new Thread[count];
+        broadcasts = new AtomicLong();
+        for (int i = 0; i < count; i++) {
+            Subscriber subscriber = new IdleSubscriber("echo" + i);
+            broker.register(subscriber);
+            broker.subscribeEvent(PingEvent.class, subscriber);
+            broker.subscribeBroadcast(PingBroadcast.class, subscriber);
+            threads[i] = new Thread(() -> echo(subscriber), subscriber.getName());
+            threads[i].setDaemon(true);
+            threads[i].start();
+        }
+    }
+
+    /**
+     * @return The amount of broadcasts taken by all the subscribers
+     */
+    long getBroadcastCount() {
+        return broadcasts.get();
+    }
+
+    /**
+     * Stops the subscribers and waits for their threads to finish
+     */
+    void stop() throws InterruptedException {
+        for (Thread thread : threads) {
+            thread.interrupt();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+
+    private void echo(Subscriber subscriber) {
+        try {
+            while (true) {
+                Message message = broker.awaitMessage(subscriber);
+                if (message instanceof PingEvent) {
+                    broker.complete((PingEvent)message, 0);
+                }
+                else {
+                    broadcasts.incrementAndGet();
+                }
+            }
+        } catch (InterruptedException ignored) {
+        }
+        broker.unregister(subscriber);
+    }
+
+    /**
+     * A subscriber which is only registered with the broker, it never runs
+     */
+    static class IdleSubscriber extends Subscriber {
+        IdleSubscriber(String name) {
+            super(name);
+        }
+
+        @Override
+        protected void initialize() {
+        }
+    }
+}
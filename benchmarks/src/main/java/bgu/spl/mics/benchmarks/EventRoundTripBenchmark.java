@@ -0,0 +1,45 @@
+package bgu.spl.mics.benchmarks;
+
+import bgu.spl.mics.Future;
+import bgu.spl.mics.MessageBroker;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The latency of sending an event and waiting for its result, from subscribers which complete it right away.
+ * Run it with more sender threads ({@code -t}) to measure the broker under contention.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EventRoundTripBenchmark {
+    @Param({ Brokers.LINKED_QUEUES, Brokers.RING_BUFFER })
+    public String broker;
+
+    @Param({ "1", "4" })
+    public int subscribers;
+
+    private MessageBroker messageBroker;
+    private EchoSubscribers echoSubscribers;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        messageBroker = Brokers.create(broker);
+        echoSubscribers = new EchoSubscribers(messageBroker, subscribers);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        echoSubscribers.stop();
+    }
+
+    @Benchmark
+    public Integer sendAndComplete() throws InterruptedException {
+        Future<Integer> future = messageBroker.sendEvent(new PingEvent());
+        return future.get();
+    }
+}
@@ -0,0 +1,61 @@
+package bgu.spl.mics.benchmarks;
+
+import bgu.spl.mics.Future;
+import bgu.spl.mics.MessageBroker;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The throughput of events sent without waiting for each other, to subscribers which complete them right away,
+ * through the linked queues and through the rings with each of their wait strategies.
+ * Every invocation sends a batch of events and only then waits for all of them, so the queues stay bounded.
+ * Spinning only pays off with a spare core for every subscriber, so expect it to lag on a small machine.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(2)
+@State(Scope.Benchmark)
+public class EventThroughputBenchmark {
+    private static final int BATCH = 100;
+
+    @Param({ Brokers.LINKED_QUEUES, Brokers.RING_BUFFER, Brokers.RING_BUFFER_YIELD, Brokers.RING_BUFFER_BUSY_SPIN })
+    public String broker;
+
+    @Param({ "4" })
+    public int subscribers;
+
+    private MessageBroker messageBroker;
+    private EchoSubscribers echoSubscribers;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        messageBroker = Brokers.create(broker);
+        echoSubscribers = new EchoSubscribers(messageBroker, subscribers);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        echoSubscribers.stop();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public int sendBatch() throws InterruptedException {
+        List<Future<Integer>> futures = new ArrayList<>(BATCH);
+        for (int i = 0; i < BATCH; i++) {
+            futures.add(messageBroker.sendEvent(new PingEvent()));
+        }
+
+        int sum = 0;
+        for (Future<Integer> future : futures) {
+            sum += future.get();
+        }
+        return sum;
+    }
+}
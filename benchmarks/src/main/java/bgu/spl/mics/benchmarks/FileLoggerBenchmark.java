@@ -0,0 +1,67 @@
+package bgu.spl.mics.benchmarks;
+
+import bgu.spl.mics.loggers.AsyncFileLogger;
+import bgu.spl.mics.loggers.FileLogger;
+import bgu.spl.mics.loggers.FullBufferPolicy;
+import bgu.spl.mics.loggers.Logger;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The throughput of logging lines to a file: the {@link FileLogger}, which writes every line under one lock,
+ * against the {@link AsyncFileLogger}, with either policy for a full buffer.
+ * The throughput counts the lines logged, including the dropped ones.
+ * Run it with more threads ({@code -t}) to measure the loggers under contention.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FileLoggerBenchmark {
+    private static final String SYNC = "sync";
+    private static final String ASYNC_BLOCK = "asyncBlock";
+    private static final String ASYNC_DROP = "asyncDrop";
+
+    @Param({ SYNC, ASYNC_BLOCK, ASYNC_DROP })
+    public String logger;
+
+    private File file;
+    private Logger fileLogger;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        file = File.createTempFile("logger-benchmark", ".log");
+        file.deleteOnExit();
+        fileLogger = open(file.getPath());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        ((Closeable)fileLogger).close();
+        file.delete();
+    }
+
+    @Benchmark
+    public Logger appendLine() {
+        return fileLogger.appendLine(bgu.spl.mics.loggers.Level.Info, "{} sending {}", Thread.currentThread().getName(), "the event");
+    }
+
+    private Logger open(String filePath) throws IOException {
+        switch (logger) {
+            case SYNC:
+                return new FileLogger(filePath);
+            case ASYNC_BLOCK:
+                return new AsyncFileLogger(filePath);
+            case ASYNC_DROP:
+                return new AsyncFileLogger(filePath, AsyncFileLogger.DEFAULT_CAPACITY, FullBufferPolicy.Drop);
+            default:
+                throw new IllegalArgumentException("Unknown logger: " + logger);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package bgu.spl.mics.benchmarks;
+
+import bgu.spl.mics.Future;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The latency of {@link Future#get()} from the moment another thread is handed the future to resolve,
+ * i.e. how fast a blocked waiter is woken up. Every benchmark thread has a resolving thread of its own,
+ * so running it with more threads ({@code -t}) measures the wake-ups under contention for the CPUs.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FutureWakeUpBenchmark {
+    private final AtomicReference<Future<Integer>> handOff = new AtomicReference<>();
+    private Thread resolver;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        resolver = new Thread(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                Future<Integer> future = handOff.getAndSet(null);
+                if (future != null) {
+                    future.resolve(0);
+                }
+                else {
+                    Thread.yield();
+                }
+            }
+        });
+        resolver.setDaemon(true);
+        resolver.start();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        resolver.interrupt();
+        resolver.join();
+    }
+
+    @Benchmark
+    public Integer getResolvedByAnotherThread() throws InterruptedException {
+        Future<Integer> future = new Future<>();
+        handOff.set(future);
+        return future.get();
+    }
+
+    @Benchmark
+    public Integer getAlreadyResolved() throws InterruptedException {
+        Future<Integer> future = new Future<>();
+        future.resolve(0);
+        return future.get();
+    }
+}
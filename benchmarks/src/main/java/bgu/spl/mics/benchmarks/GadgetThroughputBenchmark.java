@@ -0,0 +1,77 @@
+package bgu.spl.mics.benchmarks;
+
+import bgu.spl.mics.MessageBroker;
+import bgu.spl.mics.MessageBrokerImpl;
+import bgu.spl.mics.SubscriberExecutor;
+import bgu.spl.mics.ThreadSubscriberExecutor;
+import bgu.spl.mics.application.messages.GadgetAvailableEvent;
+import bgu.spl.mics.application.messages.LastTickBroadcast;
+import bgu.spl.mics.application.messages.ReturnGadgetEvent;
+import bgu.spl.mics.application.messages.eventsInfo.GadgetAvailableEventArgs;
+import bgu.spl.mics.application.messages.eventsInfo.GadgetAvailableResult;
+import bgu.spl.mics.application.messages.eventsInfo.ReturnGadgetEventArgs;
+import bgu.spl.mics.application.passiveObjects.Inventory;
+import bgu.spl.mics.application.subscribers.Q;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The throughput of gadget requests (getting a gadget and returning it) through the broker,
+ * with the inventory sharded across several Qs.
+ * Every request is routed to the Q which owns the gadget, so the Qs handle their requests in parallel.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class GadgetThroughputBenchmark {
+    private static final int DISTINCT_GADGETS = 1_000;
+
+    @Param({ "1", "2", "4" })
+    public int qs;
+
+    private String[] gadgets;
+    private MessageBroker broker;
+    private SubscriberExecutor executor;
+
+    @Setup(Level.Trial)
+    public void setUp() throws InterruptedException {
+        gadgets = new String[DISTINCT_GADGETS];
+        for (int i = 0; i < DISTINCT_GADGETS; i++) {
+            gadgets[i] = "Gadget" + i;
+        }
+        Inventory inventory = Inventory.getInstance();
+        inventory.load(gadgets, qs);
+
+        // The Qs are subscribers, which always use the broker instance
+        broker = MessageBrokerImpl.getInstance();
+        CountDownLatch registered = new CountDownLatch(qs);
+        executor = new ThreadSubscriberExecutor();
+        for (int i = 0; i < qs; i++) {
+            executor.execute(new Q("Q" + (i + 1), inventory, i, registered));
+        }
+        registered.await();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        broker.sendBroadcast(new LastTickBroadcast(0));
+        executor.awaitTermination();
+    }
+
+    @Benchmark
+    public boolean getAndReturn() throws InterruptedException {
+        String gadget = gadgets[ThreadLocalRandom.current().nextInt(gadgets.length)];
+        GadgetAvailableResult result = broker.sendEvent(new GadgetAvailableEvent(new GadgetAvailableEventArgs(gadget))).get();
+        if (result.isAvailable()) {
+            broker.sendEvent(new ReturnGadgetEvent(new ReturnGadgetEventArgs(gadget))).get();
+        }
+        return result.isAvailable();
+    }
+}
@@ -0,0 +1,50 @@
+package bgu.spl.mics.benchmarks;
+
+import bgu.spl.mics.application.passiveObjects.Inventory;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Getting and returning gadgets of a large inventory directly, without the broker.
+ * Run it with more threads ({@code -t}) to measure the inventory under contention.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class InventoryBenchmark {
+    private static final int DISTINCT_GADGETS = 100_000;
+    private static final int COPIES = 3;
+
+    private String[] names;
+    private Inventory inventory;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        names = new String[DISTINCT_GADGETS];
+        for (int i = 0; i < DISTINCT_GADGETS; i++) {
+            names[i] = "Gadget" + i;
+        }
+        String[] gadgets = new String[DISTINCT_GADGETS * COPIES];
+        for (int i = 0; i < gadgets.length; i++) {
+            gadgets[i] = names[i % DISTINCT_GADGETS];
+        }
+
+        inventory = Inventory.getInstance();
+        inventory.load(gadgets);
+    }
+
+    @Benchmark
+    public boolean getAndReturn() {
+        String gadget = names[ThreadLocalRandom.current().nextInt(DISTINCT_GADGETS)];
+        if (inventory.getItem(gadget)) {
+            inventory.returnItem(gadget);
+            return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,81 @@
+package bgu.spl.mics.benchmarks;
+
+import bgu.spl.mics.Event;
+import bgu.spl.mics.MessageBrokerImpl;
+import bgu.spl.mics.Subscriber;
+import bgu.spl.mics.loggers.Logger;
+import bgu.spl.mics.loggers.Loggers;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What logging costs when it's disabled (the {@link Loggers#NoLogger}):
+ * a log line built eagerly by the caller against the leveled, parameterized one,
+ * and the hot paths of the broker which log on every message.
+ * Run it with the allocation profiler ({@code -prof gc}) and read {@code gc.alloc.rate.norm}, the bytes allocated per operation.
+ * The envelope, the future and the queue node of a message are allocated anyway, the log lines shouldn't add to them.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LoggingAllocationBenchmark {
+    private static final int SUBSCRIBERS = 16;
+
+    private Logger logger;
+    private Event<Integer> event;
+    private MessageBrokerImpl broker;
+    private Subscriber subscriber;
+    private Subscriber[] broadcastSubscribers;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Loggers.DefaultLogger = Loggers.NoLogger;
+        logger = Loggers.DefaultLogger;
+        event = new PingEvent();
+
+        broker = new MessageBrokerImpl();
+        subscriber = new EchoSubscribers.IdleSubscriber("events");
+        broker.register(subscriber);
+        broker.subscribeEvent(PingEvent.class, subscriber);
+
+        broadcastSubscribers = new Subscriber[SUBSCRIBERS];
+        for (int i = 0; i < SUBSCRIBERS; i++) {
+            broadcastSubscribers[i] = new EchoSubscribers.IdleSubscriber("broadcasts" + i);
+            broker.register(broadcastSubscribers[i]);
+            broker.subscribeBroadcast(PingBroadcast.class, broadcastSubscribers[i]);
+        }
+    }
+
+    @Benchmark
+    public Logger eagerLine() {
+        return logger.appendLine(Thread.currentThread().getName() + " sending " + event);
+    }
+
+    @Benchmark
+    public Logger leveledLine() {
+        return logger.appendLine(bgu.spl.mics.loggers.Level.Debug, "{} sending {}", Thread.currentThread().getName(), event);
+    }
+
+    @Benchmark
+    public Object roundTrip() throws InterruptedException {
+        PingEvent sent = new PingEvent();
+        broker.sendEvent(sent);
+        Object taken = broker.awaitMessage(subscriber);
+        broker.complete(sent, 0);
+        return taken;
+    }
+
+    @Benchmark
+    public Object broadcast() throws InterruptedException {
+        broker.sendBroadcast(new PingBroadcast());
+        Object last = null;
+        for (Subscriber s : broadcastSubscribers) {
+            last = broker.awaitMessage(s);
+        }
+        return last;
+    }
+}
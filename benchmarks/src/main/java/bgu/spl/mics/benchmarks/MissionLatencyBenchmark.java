@@ -0,0 +1,132 @@
+package bgu.spl.mics.benchmarks;
+
+import bgu.spl.mics.MessageBroker;
+import bgu.spl.mics.MessageBrokerImpl;
+import bgu.spl.mics.Subscriber;
+import bgu.spl.mics.SubscriberExecutor;
+import bgu.spl.mics.ThreadSubscriberExecutor;
+import bgu.spl.mics.application.messages.AgentsAvailableEvent;
+import bgu.spl.mics.application.messages.GadgetAvailableEvent;
+import bgu.spl.mics.application.messages.LastTickBroadcast;
+import bgu.spl.mics.application.messages.MissionReceivedEvent;
+import bgu.spl.mics.application.messages.SendAgentsEvent;
+import bgu.spl.mics.application.messages.eventsInfo.AgentsAvailableResult;
+import bgu.spl.mics.application.messages.eventsInfo.GadgetAvailableResult;
+import bgu.spl.mics.application.passiveObjects.Diary;
+import bgu.spl.mics.application.passiveObjects.MissionInfo;
+import bgu.spl.mics.application.subscribers.M;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Collections;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How long it takes M to prepare a mission, from receiving it until sending the agents,
+ * when acquiring the agents and the gadget take a known time ({@code delays} is "agents ms/gadget ms").
+ * Preparing the needs one after the other takes at least the sum of their times,
+ * requesting them concurrently brings it close to the slower one.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MissionLatencyBenchmark {
+    @Param({ "10/10", "20/5", "5/20", "50/50" })
+    public String delays;
+
+    private MessageBroker broker;
+    private SubscriberExecutor executor;
+    private BlockingQueue<Long> sentAgents;
+    private int missions;
+
+    @Setup(Level.Trial)
+    public void setUp() throws InterruptedException {
+        String[] parts = delays.split("/");
+        int agentsDelayMs = Integer.parseInt(parts[0]);
+        int gadgetDelayMs = Integer.parseInt(parts[1]);
+
+        // M is a subscriber, which always uses the broker instance
+        broker = MessageBrokerImpl.getInstance();
+        sentAgents = new LinkedBlockingQueue<>();
+        CountDownLatch registered = new CountDownLatch(4);
+        executor = new ThreadSubscriberExecutor();
+        executor.execute(new M(1, Diary.getInstance(), registered));
+        executor.execute(new Responder("Moneypenny", registered) {
+            @Override
+            protected void subscribe() {
+                subscribeEvent(AgentsAvailableEvent.class, e -> {
+                    Thread.sleep(agentsDelayMs);
+                    complete(e, new AgentsAvailableResult(true, Collections.singletonList("James Bond"), e.getArgs().agentsSerialNumbers(), 1));
+                });
+            }
+        });
+        executor.execute(new Responder("Q", registered) {
+            @Override
+            protected void subscribe() {
+                subscribeEvent(GadgetAvailableEvent.class, e -> {
+                    Thread.sleep(gadgetDelayMs);
+                    complete(e, new GadgetAvailableResult(true, 0));
+                });
+            }
+        });
+        executor.execute(new Responder("Squad", registered) {
+            @Override
+            protected void subscribe() {
+                subscribeEvent(SendAgentsEvent.class, e -> {
+                    sentAgents.add(System.nanoTime());
+                    complete(e, null);
+                });
+            }
+        });
+        registered.await();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        broker.sendBroadcast(new LastTickBroadcast(0));
+        executor.awaitTermination();
+    }
+
+    @Benchmark
+    public long prepareMission() throws InterruptedException {
+        broker.sendEvent(new MissionReceivedEvent(createMission(missions++)));
+        return sentAgents.take();
+    }
+
+    private static MissionInfo createMission(int i) {
+        MissionInfo missionInfo = new MissionInfo();
+        missionInfo.setMissionName("Mission" + i);
+        missionInfo.setSerialAgentsNumbers(Collections.singletonList("007"));
+        missionInfo.setGadget("Gadget");
+        missionInfo.setTimeIssued(0);
+        missionInfo.setTimeExpired(Integer.MAX_VALUE);
+        missionInfo.setDuration(1);
+        return missionInfo;
+    }
+
+    /**
+     * Stands in for the subscribers M talks to, answering its events
+     */
+    private abstract static class Responder extends Subscriber {
+        private final CountDownLatch registered;
+
+        Responder(String name, CountDownLatch registered) {
+            super(name);
+            this.registered = registered;
+        }
+
+        @Override
+        protected void initialize() {
+            subscribeBroadcast(LastTickBroadcast.class, b -> terminate());
+            subscribe();
+            registered.countDown();
+        }
+
+        protected abstract void subscribe();
+    }
+}
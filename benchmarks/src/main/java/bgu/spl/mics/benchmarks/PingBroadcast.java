@@ -0,0 +1,9 @@
+package bgu.spl.mics.benchmarks;
+
+import bgu.spl.mics.Broadcast;
+
+/**
+ * A broadcast which is only counted by its subscribers
+ */
+public class PingBroadcast implements Broadcast {
+}
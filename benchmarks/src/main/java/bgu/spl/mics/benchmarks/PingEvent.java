@@ -0,0 +1,9 @@
+package bgu.spl.mics.benchmarks;
+
+import bgu.spl.mics.Event;
+
+/**
+ * An event which is completed as soon as it's taken
+ */
+public class PingEvent implements Event<Integer> {
+}
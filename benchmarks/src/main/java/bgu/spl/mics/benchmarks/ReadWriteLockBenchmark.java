@@ -0,0 +1,91 @@
+package bgu.spl.mics.benchmarks;
+
+import bgu.spl.mics.ReadWriteLock;
+import bgu.spl.mics.WriterFavoredReadWriteLock;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Readers and writers contending on {@link WriterFavoredReadWriteLock}, against the JDK's read/write lock.
+ * Each holds the lock for a short critical section. The ratio of readers to writers is set with {@code -tg},
+ * e.g. {@code -tg 7,1}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Group)
+public class ReadWriteLockBenchmark {
+    private static final String WRITER_FAVORED = "writerFavored";
+    private static final String REENTRANT = "reentrant";
+
+    /**
+     * The amount of work done while holding the lock
+     */
+    private static final int CRITICAL_SECTION_TOKENS = 50;
+
+    @Param({ WRITER_FAVORED, REENTRANT })
+    public String lock;
+
+    private ReadWriteLock readWriteLock;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        readWriteLock = lock.equals(REENTRANT) ? new JdkReadWriteLock() : new WriterFavoredReadWriteLock();
+    }
+
+    @Benchmark
+    @Group("readWrite")
+    @GroupThreads(3)
+    public void read() {
+        readWriteLock.acquireReadLock();
+        try {
+            Blackhole.consumeCPU(CRITICAL_SECTION_TOKENS);
+        } finally {
+            readWriteLock.releaseReadLock();
+        }
+    }
+
+    @Benchmark
+    @Group("readWrite")
+    @GroupThreads(1)
+    public void write() {
+        readWriteLock.acquireWriteLock();
+        try {
+            Blackhole.consumeCPU(CRITICAL_SECTION_TOKENS);
+        } finally {
+            readWriteLock.releaseWriteLock();
+        }
+    }
+
+    /**
+     * Adapts the JDK's lock to the interface of the repository's lock
+     */
+    private static class JdkReadWriteLock implements ReadWriteLock {
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+        @Override
+        public void acquireReadLock() {
+            lock.readLock().lock();
+        }
+
+        @Override
+        public void releaseReadLock() {
+            lock.readLock().unlock();
+        }
+
+        @Override
+        public void acquireWriteLock() {
+            lock.writeLock().lock();
+        }
+
+        @Override
+        public void releaseWriteLock() {
+            lock.writeLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package bgu.spl.mics.benchmarks;
+
+import bgu.spl.mics.application.passiveObjects.Agent;
+import bgu.spl.mics.application.passiveObjects.Squad;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Acquiring and releasing groups of random agents through the {@link Squad}, like missions which need a few agents each.
+ * Run it with more threads ({@code -t}) to measure the squad when missions compete for the same agents.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SquadBenchmark {
+    private static final int AGENTS = 32;
+    private static final int AGENTS_PER_MISSION = 3;
+
+    private String[] serials;
+    private Squad squad;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        serials = new String[AGENTS];
+        Agent[] agents = new Agent[AGENTS];
+        for (int i = 0; i < AGENTS; i++) {
+            serials[i] = String.format("%03d", i);
+            agents[i] = new Agent();
+            agents[i].setSerialNumber(serials[i]);
+            agents[i].setName("Agent" + i);
+        }
+
+        squad = Squad.getInstance();
+        squad.load(agents);
+    }
+
+    @Benchmark
+    public boolean getAndRelease() throws InterruptedException {
+        List<String> mission = randomMission();
+        boolean acquired = squad.getAgents(mission);
+        squad.releaseAgents(mission);
+        return acquired;
+    }
+
+    /**
+     * @return The serial numbers of distinct random agents
+     */
+    private List<String> randomMission() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        List<String> mission = new ArrayList<>(AGENTS_PER_MISSION);
+        while (mission.size() < AGENTS_PER_MISSION) {
+            String serial = serials[random.nextInt(AGENTS)];
+            if (!mission.contains(serial)) {
+                mission.add(serial);
+            }
+        }
+
+        return mission;
+    }
+}
@@ -0,0 +1,159 @@
+package bgu.spl.mics.benchmarks;
+
+import bgu.spl.mics.MessageBroker;
+import bgu.spl.mics.MessageBrokerImpl;
+import bgu.spl.mics.PooledSubscriberExecutor;
+import bgu.spl.mics.Subscriber;
+import bgu.spl.mics.SubscriberExecutor;
+import bgu.spl.mics.ThreadSubscriberExecutor;
+import bgu.spl.mics.Utils;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Running the subscribers on a thread each, on a shared pool and on virtual threads, for a growing amount of subscribers.
+ * Every invocation starts the subscribers, which handle {@link #ROUNDS} broadcasts each and terminate.
+ * The handlers either return at once or block for a while, which makes the pool add threads for the blocked ones
+ * (up to its cap, the default one or one which is as large as the amount of subscribers).
+ * The peak amount of live threads during every iteration is reported as a secondary result (see {@link ThreadCounters}).
+ * Virtual threads fail the trial on a JVM which doesn't support them.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SubscriberExecutionBenchmark {
+    private static final String THREADS = "threads";
+    private static final String POOL = "pool";
+    private static final String POOL_MAX = "poolMax";
+    private static final String VIRTUAL = "virtual";
+
+    private static final String NON_BLOCKING = "nonBlocking";
+    private static final String BLOCKING = "blocking";
+
+    private static final int ROUNDS = 20;
+    private static final int POOL_SIZE = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * How long a blocking handler blocks for every broadcast
+     */
+    private static final long BLOCK_MILLIS = 1;
+
+    @Param({ "10", "100", "1000", "10000" })
+    public int subscribers;
+
+    @Param({ THREADS, POOL, POOL_MAX, VIRTUAL })
+    public String execution;
+
+    @Param({ NON_BLOCKING, BLOCKING })
+    public String handlers;
+
+    private ThreadMXBean threadBean;
+    private SubscriberExecutor executor;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() {
+        threadBean = ManagementFactory.getThreadMXBean();
+        if (execution.equals(VIRTUAL) && ThreadSubscriberExecutor.virtual() == null) {
+            throw new UnsupportedOperationException("This JVM doesn't support virtual threads");
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        threadBean.resetPeakThreadCount();
+        executor = createExecutor();
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    @Benchmark
+    public void runSubscribers(ThreadCounters counters) throws InterruptedException {
+        boolean blocking = handlers.equals(BLOCKING);
+        CountDownLatch ready = new CountDownLatch(subscribers);
+        for (int i = 0; i < subscribers; i++) {
+            executor.execute(new CountingSubscriber("Subscriber" + i, blocking, ready));
+        }
+        ready.await();
+
+        // The subscribers always use the broker instance
+        MessageBroker broker = MessageBrokerImpl.getInstance();
+        for (int i = 0; i < ROUNDS; i++) {
+            broker.sendBroadcast(new PingBroadcast());
+        }
+        executor.awaitTermination();
+        counters.peakThreads = threadBean.getPeakThreadCount();
+    }
+
+    private SubscriberExecutor createExecutor() {
+        switch (execution) {
+            case THREADS:
+                return new ThreadSubscriberExecutor();
+            case POOL:
+                return new PooledSubscriberExecutor(POOL_SIZE);
+            case POOL_MAX:
+                return new PooledSubscriberExecutor(POOL_SIZE, POOL_SIZE + subscribers);
+            case VIRTUAL:
+                return ThreadSubscriberExecutor.virtual();
+            default:
+                throw new IllegalArgumentException("Unknown execution: " + execution);
+        }
+    }
+
+    /**
+     * The counters reported next to the time of every iteration
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class ThreadCounters {
+        /**
+         * The peak amount of live threads during the iteration, including the ones of JMH and of the JVM
+         */
+        public long peakThreads;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            peakThreads = 0;
+        }
+    }
+
+    private static class CountingSubscriber extends Subscriber {
+        private final boolean blocking;
+        private final CountDownLatch ready;
+        private int received;
+
+        CountingSubscriber(String name, boolean blocking, CountDownLatch ready) {
+            super(name);
+            this.blocking = blocking;
+            this.ready = ready;
+            received = 0;
+        }
+
+        @Override
+        protected void initialize() {
+            subscribeBroadcast(PingBroadcast.class, b -> {
+                if (blocking) {
+                    try {
+                        Utils.managedSleep(BLOCK_MILLIS);
+                    } catch (InterruptedException e) {
+                        terminate();
+                        return;
+                    }
+                }
+                if (++received == ROUNDS) {
+                    terminate();
+                }
+            });
+            ready.countDown();
+        }
+    }
+}
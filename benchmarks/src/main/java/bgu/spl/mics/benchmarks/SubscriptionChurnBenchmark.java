@@ -0,0 +1,60 @@
+package bgu.spl.mics.benchmarks;
+
+import bgu.spl.mics.MessageBroker;
+import bgu.spl.mics.Subscriber;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sending events while other threads keep registering, subscribing and unregistering subscribers of the same type.
+ * Measures both sides of the group: how much the churn slows down the senders, and how fast the churn goes.
+ * The ratio of senders to churners is set with {@code -tg}, e.g. {@code -tg 3,1}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Group)
+public class SubscriptionChurnBenchmark {
+    @Param({ Brokers.LINKED_QUEUES, Brokers.RING_BUFFER })
+    public String broker;
+
+    @Param({ "4" })
+    public int subscribers;
+
+    private MessageBroker messageBroker;
+    private EchoSubscribers echoSubscribers;
+    private final AtomicInteger churned = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        messageBroker = Brokers.create(broker);
+        echoSubscribers = new EchoSubscribers(messageBroker, subscribers);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        echoSubscribers.stop();
+    }
+
+    @Benchmark
+    @Group("churn")
+    @GroupThreads(3)
+    public Object send() throws InterruptedException {
+        // Events routed to a churning subscriber fail once it unregisters
+        return messageBroker.sendEvent(new PingEvent());
+    }
+
+    @Benchmark
+    @Group("churn")
+    @GroupThreads(1)
+    public void subscribeAndUnregister() {
+        Subscriber subscriber = new EchoSubscribers.IdleSubscriber("churn" + churned.incrementAndGet());
+        messageBroker.register(subscriber);
+        messageBroker.subscribeEvent(PingEvent.class, subscriber);
+        messageBroker.unregister(subscriber);
+    }
+}
@@ -0,0 +1,22 @@
+package bgu.spl.mics;
+
+/**
+ * A {@link MessageBroker} whose subscriber queues can be bounded, so a slow subscriber under a burst of messages
+ * pushes back on the senders (or sheds messages) instead of growing its queue without limit.
+ * A subscriber can choose its own bounds (see {@link Subscriber#setQueueBounds(int, OverflowPolicy)}),
+ * otherwise it gets the default ones. By default the queues are unbounded.
+ */
+public interface BoundedMessageBroker extends MessageBroker {
+    /**
+     * Sets the bounds of the queues of the subscribers which register from now on and didn't choose their own
+     * @param capacity The maximal amount of messages in a queue, {@link Integer#MAX_VALUE} for unbounded
+     * @param policy What to do with a message sent to a full queue
+     */
+    void setDefaultQueueBounds(int capacity, OverflowPolicy policy);
+
+    /**
+     * @param s The subscriber
+     * @return How full the queue of the subscriber is, null if it's not registered
+     */
+    QueueOccupancy getQueueOccupancy(Subscriber s);
+}
@@ -0,0 +1,13 @@
+package bgu.spl.mics;
+
+/**
+ * A {@link Broadcast} of a latest value (like the current time tick), which supersedes the previous ones of its type.
+ * A subscriber queue holds at most one broadcast of such a type: a newer one sent while the previous one
+ * is still waiting in the queue replaces it, in its place, so a lagging subscriber handles only the latest value.
+ * The type is the exact class of the broadcast, so a subclass (like the last tick) never replaces its superclass
+ * and is never replaced by it.
+ * <p>
+ * Subscribers of such broadcasts must not rely on receiving every one of them.
+ */
+public interface CoalescingBroadcast extends Broadcast {
+}
@@ -0,0 +1,58 @@
+package bgu.spl.mics;
+
+/**
+ * Carries a message through the queue of a subscriber, together with the {@link Future}
+ * of the message if it is an {@link Event}.
+ * Binding the future to the delivered message lets the broker resolve it directly when the event is completed,
+ * without keeping a shared event-to-future map.
+ * @param <T> The result type of the event, {@link Void} for broadcasts
+ */
+final class Envelope<T> {
+    private final Message message;
+    private final Future<T> future;
+
+    private Envelope(Message message, Future<T> future) {
+        this.message = message;
+        this.future = future;
+    }
+
+    /**
+     * Creates an envelope for an event, with a new future for its result
+     * @param e The event
+     * @param <T> The result type of the event
+     * @return The envelope
+     */
+    static <T> Envelope<T> of(Event<T> e) {
+        return new Envelope<>(e, new Future<>());
+    }
+
+    /**
+     * Creates an envelope for a broadcast. The same envelope can be put in the queues of all the subscribers.
+     * @param b The broadcast
+     * @return The envelope
+     */
+    static Envelope<Void> of(Broadcast b) {
+        return new Envelope<>(b, null);
+    }
+
+    /**
+     * @return The carried message
+     */
+    Message getMessage() {
+        return message;
+    }
+
+    /**
+     * @return The future of the carried event, null if the message is a broadcast
+     */
+    Future<T> getFuture() {
+        return future;
+    }
+
+    /**
+     * @return Whether the carried message is an event which has not been completed yet
+     */
+    boolean isPending() {
+        return future != null && !future.isDone();
+    }
+}
@@ -1,25 +1,50 @@
 package bgu.spl.mics;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 /**
  * A Future object represents a promised result - an object that will
  * eventually be resolved to hold a result of some operation. The class allows
- * Retrieving the result once it is available.
+ * Retrieving the result once it is available, either by blocking until it is,
+ * or by registering callbacks which are called when it is resolved.
+ * <p>
+ * The state is kept in a single volatile field which is changed with CAS, no monitor is used:
+ * while pending, it holds a stack of the registered completions (callbacks and blocked threads),
+ * and resolving swaps it with the result and then runs the completions.
+ * A future may also fail (see {@link #fail(Throwable)}), e.g. when its event was rejected,
+ * which tells the failure apart from a null result.
  *
  * Only private methods may be added to this class.
+ * The exceptions are the public methods which let callers react to the result without blocking,
+ * and the failure of a future: {@link #onResolved(Consumer)}, {@link #thenApply(Function)},
+ * {@link #thenCompose(Function)}, {@link #toCompletableFuture()}, {@link #fail(Throwable)},
+ * {@link #isFailed()} and {@link #getFailure()}.
  * No public constructor is allowed except for the empty constructor.
  */
 public class Future<T> {
-    private T result;
-    private boolean isDone;
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<Future, Object> STATE =
+        AtomicReferenceFieldUpdater.newUpdater(Future.class, Object.class, "state");
+
+    /**
+     * null while pending with no completions, a {@link Completion} while pending with completions,
+     * or a {@link Result} once resolved
+     */
+    private volatile Object state;
 
     /**
      * This should be the the only public constructor in this class.
      */
     public Future() {
-        result = null;
-        isDone = false;
+        state = null;
     }
 
     /**
@@ -29,10 +54,11 @@ public class Future<T> {
      * <p>
      *
      * @return return the result of type T if it is available, if not wait until it is available.
+     * null if the future has failed (see {@link #isFailed()}).
      */
     public T get() throws InterruptedException {
-        if (isDone) {
-            return result;
+        if (isDone()) {
+            return result();
         }
 
         return waitAndReturn();
@@ -40,22 +66,57 @@ public class Future<T> {
 
     /**
      * Resolves the result of this Future object.
+     * Only the first call resolves the future, later calls are ignored.
+     * The callbacks registered on this future are called by the resolving thread.
      */
     public void resolve(T result) {
-        synchronized (this) {
-            this.result = result;
-            isDone = true;
-            stopBlocking();
-        }
+        complete(new Result(result, null));
+    }
+
+    /**
+     * Fails this Future object, it's done without a result.
+     * Only the first call to resolve or fail takes effect, later calls are ignored.
+     * The callbacks registered with {@link #onResolved(Consumer)} are not called,
+     * the futures chained to this one fail as well.
+     * @param cause Why it has failed
+     */
+    public void fail(Throwable cause) {
+        complete(new Result(null, cause));
+    }
+
+    /**
+     * @return true if this object has failed rather than resolved with a result, false otherwise
+     */
+    public boolean isFailed() {
+        Object current = state;
+        return current instanceof Result && ((Result)current).failure != null;
+    }
+
+    /**
+     * @return Why this object has failed, null if it's pending or resolved with a result
+     */
+    public Throwable getFailure() {
+        Object current = state;
+        return current instanceof Result ? ((Result)current).failure : null;
+    }
+
+    private void complete(Result resolved) {
+        Object current;
+        do {
+            current = state;
+            if (current instanceof Result) {
+                return;
+            }
+        } while (!STATE.compareAndSet(this, current, resolved));
+
+        runCompletions((Completion)current, resolved);
     }
 
     /**
-     * @return true if this object has been resolved, false otherwise
+     * @return true if this object has been resolved (or has failed), false otherwise
      */
     public boolean isDone() {
-        synchronized (this) {
-            return isDone;
-        }
+        return state instanceof Result;
     }
 
     /**
@@ -68,55 +129,314 @@ public class Future<T> {
      * @param unit    the {@link TimeUnit} time units to wait.
      * @return return the result of type T if it is available, if not,
      * wait for {@code timeout} TimeUnits {@code unit}. If time has
-     * elapsed, return null.
+     * elapsed (or the future has failed), return null.
      */
     public T get(long timeout, TimeUnit unit) throws InterruptedException {
-        if (isDone) {
-            return result;
+        if (isDone()) {
+            return result();
         }
 
         timeout = TimeUnit.NANOSECONDS.convert(timeout, unit);
         return waitUntilTimeoutOrDoneAndReturn(timeout);
     }
 
-    private void stopBlocking() {
-        notifyAll();
+    /**
+     * Registers a callback to be called with the result once this future is resolved.
+     * If it is already resolved, the callback is called immediately by the calling thread,
+     * otherwise it is called by the resolving thread. It's not called if the future fails.
+     * If it throws when called by the resolving thread, the stack trace is printed and the rest of the callbacks are still called.
+     * This method is non-blocking.
+     * @param callback The callback
+     */
+    public void onResolved(Consumer<? super T> callback) {
+        addCompletion(new CallbackCompletion<>(callback, null));
     }
 
-    private T waitAndReturn() throws InterruptedException {
-        synchronized (this) {
-            while (shouldWait()) {
-                wait();
+    /**
+     * Returns a new future which is resolved with the result of applying {@code fn}
+     * to the result of this future, once this future is resolved.
+     * If this future fails or {@code fn} throws, the returned future fails.
+     * @param fn The function to apply to the result
+     * @param <U> The result type of the returned future
+     * @return The new future
+     */
+    public <U> Future<U> thenApply(Function<? super T, ? extends U> fn) {
+        Future<U> future = new Future<>();
+        addCompletion(new CallbackCompletion<T>(result -> {
+            U mapped;
+            try {
+                mapped = fn.apply(result);
+            } catch (RuntimeException e) {
+                future.fail(e);
+                return;
             }
+            future.resolve(mapped);
+        }, future::fail));
+        return future;
+    }
 
-            return this.result;
+    /**
+     * Returns a new future which is resolved with the result of the future returned by applying {@code fn}
+     * to the result of this future, once both are resolved. Used for chaining events,
+     * e.g. sending an event once the result of a previous one is known.
+     * If {@code fn} returns null (like sending an event which no one is subscribed to),
+     * the returned future is resolved with null. If this future or the returned one fails,
+     * or {@code fn} throws, the returned future fails.
+     * @param fn The function which returns the next future
+     * @param <U> The result type of the returned future
+     * @return The new future
+     */
+    public <U> Future<U> thenCompose(Function<? super T, Future<U>> fn) {
+        Future<U> future = new Future<>();
+        addCompletion(new CallbackCompletion<T>(result -> {
+            Future<U> next;
+            try {
+                next = fn.apply(result);
+            } catch (RuntimeException e) {
+                future.fail(e);
+                return;
+            }
+            if (next != null) {
+                next.addCompletion(new CallbackCompletion<>(future::resolve, future::fail));
+            }
+            else {
+                future.resolve(null);
+            }
+        }, future::fail));
+        return future;
+    }
+
+    /**
+     * @return A {@link CompletableFuture} which is completed with the result of this future once it's resolved,
+     * or exceptionally if it fails
+     */
+    public CompletableFuture<T> toCompletableFuture() {
+        CompletableFuture<T> completableFuture = new CompletableFuture<>();
+        addCompletion(new CallbackCompletion<>(completableFuture::complete, completableFuture::completeExceptionally));
+        return completableFuture;
+    }
+
+    @SuppressWarnings("unchecked")
+    private T result() {
+        return (T)((Result)state).value;
+    }
+
+    /**
+     * Pushes the completion to the completions stack if this future is pending, otherwise runs it immediately
+     */
+    private void addCompletion(Completion completion) {
+        Object current;
+        do {
+            current = state;
+            if (current instanceof Result) {
+                completion.run((Result)current);
+                return;
+            }
+            completion.next = (Completion)current;
+        } while (!STATE.compareAndSet(this, current, completion));
+    }
+
+    /**
+     * Runs the completions in the order they were added (the stack holds them in reverse order)
+     */
+    private void runCompletions(Completion head, Result result) {
+        // Collected rather than reversed in place, a waiter which gave up may be unlinking itself concurrently
+        List<Completion> completions = new ArrayList<>();
+        for (Completion completion = head; completion != null; completion = completion.next) {
+            completions.add(completion);
+        }
+
+        for (int i = completions.size() - 1; i >= 0; i--) {
+            Completion completion = completions.get(i);
+            try {
+                completion.run(result);
+            } catch (RuntimeException e) {
+                // A failing callback must not prevent the rest from running, nor fail whoever resolved the future
+                e.printStackTrace();
+            }
         }
     }
 
+    private T waitAndReturn() throws InterruptedException {
+        awaitDone(false, 0L);
+        return result();
+    }
+
     private T waitUntilTimeoutOrDoneAndReturn(long timeout) throws InterruptedException {
-        TimeUnit unit = TimeUnit.NANOSECONDS;
+        awaitDone(true, System.nanoTime() + timeout);
+
         T result = null;
-        synchronized (this) {
-            while (shouldWait() && timeout > 0) {
-                timeout = timedWait(timeout, unit);
+        if (isDone()) {
+            result = result();
+        }
+
+        return result;
+    }
+
+    /**
+     * Blocks until this future is resolved, or until the deadline if timed.
+     * A managed block lets a pool running subscribers compensate for the blocked thread.
+     * A waiter which gives up (timed out or interrupted) is unlinked from the completions stack,
+     * so repeated timed gets on a pending future don't pile up waiters.
+     */
+    private void awaitDone(boolean timed, long deadline) throws InterruptedException {
+        WaiterCompletion waiter = new WaiterCompletion(Thread.currentThread());
+        addCompletion(waiter);
+        try {
+            ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+                @Override
+                public boolean block() throws InterruptedException {
+                    while (!isReleasable()) {
+                        if (timed) {
+                            LockSupport.parkNanos(Future.this, deadline - System.nanoTime());
+                        }
+                        else {
+                            LockSupport.park(Future.this);
+                        }
+                        if (Thread.interrupted()) {
+                            throw new InterruptedException();
+                        }
+                    }
+                    return true;
+                }
+
+                @Override
+                public boolean isReleasable() {
+                    return !shouldWait() || (timed && deadline - System.nanoTime() <= 0);
+                }
+            });
+        } finally {
+            if (shouldWait()) {
+                waiter.cancel();
+                removeCancelledWaiters();
             }
+        }
+    }
 
-            if (isDone) {
-                result = this.result;
+    /**
+     * Unlinks the waiters which gave up from the completions stack.
+     * Completions are only ever pushed at the top, so a waiter is unlinked either by a CAS of the top,
+     * or by linking its predecessor past it (and starting over if the predecessor gave up meanwhile).
+     */
+    private void removeCancelledWaiters() {
+        retry:
+        while (true) {
+            Object current = state;
+            if (!(current instanceof Completion)) {
+                return;
             }
 
-            return result;
+            Completion pred = null;
+            Completion next;
+            for (Completion completion = (Completion)current; completion != null; completion = next) {
+                next = completion.next;
+                if (!completion.isCancelled()) {
+                    pred = completion;
+                }
+                else if (pred != null) {
+                    pred.next = next;
+                    if (pred.isCancelled()) {
+                        continue retry;
+                    }
+                }
+                else if (!STATE.compareAndSet(this, completion, next)) {
+                    continue retry;
+                }
+            }
+            return;
         }
     }
 
-    private long timedWait(long timeout, TimeUnit unit) throws InterruptedException {
-        long startTime = System.nanoTime();
-        unit.timedWait(this, timeout);
-        timeout -= (System.nanoTime() - startTime);
-        return timeout;
+    private boolean shouldWait() {
+        return !isDone();
     }
 
-    private boolean shouldWait() {
-        return !isDone;
+    /**
+     * The resolved state, wraps the result so a null result can be told apart from a pending future
+     */
+    private static final class Result {
+        private final Object value;
+
+        /**
+         * Why the future has failed, null if it was resolved with a result
+         */
+        private final Throwable failure;
+
+        private Result(Object value, Throwable failure) {
+            this.value = value;
+            this.failure = failure;
+        }
+    }
+
+    /**
+     * Something to run once the future is resolved, linked in the completions stack
+     */
+    private abstract static class Completion {
+        private volatile Completion next;
+
+        abstract void run(Result result);
+
+        /**
+         * @return Whether it no longer needs to run, and can be unlinked from the stack
+         */
+        boolean isCancelled() {
+            return false;
+        }
+    }
+
+    private static final class CallbackCompletion<T> extends Completion {
+        private final Consumer<? super T> callback;
+
+        /**
+         * Called instead of the callback if the future fails, may be null
+         */
+        private final Consumer<? super Throwable> failureCallback;
+
+        private CallbackCompletion(Consumer<? super T> callback, Consumer<? super Throwable> failureCallback) {
+            this.callback = callback;
+            this.failureCallback = failureCallback;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        void run(Result result) {
+            if (result.failure == null) {
+                callback.accept((T)result.value);
+            }
+            else if (failureCallback != null) {
+                failureCallback.accept(result.failure);
+            }
+        }
+    }
+
+    /**
+     * Wakes up a thread which is blocked in {@link #get()}
+     */
+    private static final class WaiterCompletion extends Completion {
+        /**
+         * The blocked thread, null once it gave up waiting
+         */
+        private volatile Thread thread;
+
+        private WaiterCompletion(Thread thread) {
+            this.thread = thread;
+        }
+
+        @Override
+        void run(Result result) {
+            Thread waiting = thread;
+            if (waiting != null) {
+                LockSupport.unpark(waiting);
+            }
+        }
+
+        @Override
+        boolean isCancelled() {
+            return thread == null;
+        }
+
+        private void cancel() {
+            thread = null;
+        }
     }
 }
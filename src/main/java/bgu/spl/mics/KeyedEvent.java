@@ -0,0 +1,16 @@
+package bgu.spl.mics;
+
+/**
+ * An {@link Event} which is routed by a key instead of in a Round-Robin fashion,
+ * unless its type is given another {@link RoutingPolicy}.
+ * Events with the same key are always handled by the same subscriber,
+ * the one owning shard {@code floorMod(key, subscribers)} (see {@link RoutingPolicies#keyAffinity}).
+ * Types whose amount of shards is fixed should be given {@link RoutingPolicies#keyAffinity(java.util.function.ToIntFunction, int)},
+ * so the keys stay put when a subscriber unregisters.
+ */
+public interface KeyedEvent<T> extends Event<T> {
+    /**
+     * @return The key which decides which subscriber receives the event
+     */
+    int getRoutingKey();
+}
@@ -0,0 +1,70 @@
+package bgu.spl.mics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the messages which were delivered to subscribers and haven't been handled yet,
+ * i.e. are either waiting in a queue or being handled right now.
+ * When the count drops to zero, the system is quiescent: no subscriber has any work left
+ * until a new message is sent from outside (by a publisher).
+ */
+final class MessageActivity {
+    private final AtomicLong unhandled;
+
+    MessageActivity() {
+        unhandled = new AtomicLong(0);
+    }
+
+    /**
+     * Notifies that a message was delivered to a subscriber
+     */
+    void delivered() {
+        unhandled.incrementAndGet();
+    }
+
+    /**
+     * Notifies that a message was delivered to {@code count} subscribers, e.g. a broadcast
+     * @param count The amount of deliveries
+     */
+    void delivered(int count) {
+        unhandled.addAndGet(count);
+    }
+
+    /**
+     * Notifies that a delivered message was handled (or discarded)
+     */
+    void handled() {
+        handled(1);
+    }
+
+    /**
+     * Notifies that {@code count} delivered messages were handled (or discarded)
+     * @param count The amount of messages
+     */
+    void handled(int count) {
+        if (unhandled.addAndGet(-count) == 0) {
+            synchronized (this) {
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Waits until every delivered message has been handled
+     * @param timeout The maximal time to wait
+     * @param unit The unit of {@code timeout}
+     * @return Whether the system became quiescent, false if the time elapsed first
+     */
+    boolean awaitQuiescence(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (this) {
+            long remaining;
+            while (unhandled.get() > 0 && (remaining = deadline - System.nanoTime()) > 0) {
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+        }
+
+        return unhandled.get() == 0;
+    }
+}
@@ -0,0 +1,42 @@
+package bgu.spl.mics;
+
+import java.util.function.Supplier;
+
+/**
+ * Chooses the implementation of the single message broker of the system (see {@link MessageBrokerImpl#getInstance()}).
+ * The choice must be made at startup, before the broker is first used.
+ * By default it's a {@link MessageBrokerImpl}.
+ */
+public final class MessageBrokerFactory {
+    private static Supplier<? extends MessageBroker> factory = MessageBrokerImpl::new;
+    private static boolean created = false;
+
+    private MessageBrokerFactory() {
+    }
+
+    /**
+     * Chooses the implementation of the message broker
+     * @param factory Creates the message broker
+     * @throws IllegalStateException If the message broker has already been created
+     */
+    public static synchronized void select(Supplier<? extends MessageBroker> factory) {
+        if (created) {
+            throw new IllegalStateException("The message broker is already in use.");
+        }
+
+        MessageBrokerFactory.factory = factory;
+    }
+
+    /**
+     * Creates the single message broker, once
+     * @return The message broker
+     */
+    static synchronized MessageBroker create() {
+        if (created) {
+            throw new IllegalStateException("The message broker has already been created.");
+        }
+
+        created = true;
+        return factory.get();
+    }
+}
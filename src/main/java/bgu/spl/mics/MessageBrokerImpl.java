@@ -1,52 +1,88 @@
 package bgu.spl.mics;
 
+import bgu.spl.mics.journal.Journals;
+import bgu.spl.mics.loggers.Level;
 import bgu.spl.mics.loggers.Loggers;
 
-import java.util.*;
+import java.util.Set;
 import java.util.concurrent.*;
 
 /**
  * The {@link MessageBrokerImpl class is the implementation of the MessageBroker interface.
  * Write your implementation here!
  * Only private fields and methods can be added to this class.
+ * The exceptions are the public methods of the interfaces it implements besides {@link MessageBroker}:
+ * {@link PollingMessageBroker}, {@link QuiescentMessageBroker}, {@link RoutingMessageBroker}
+ * and {@link BoundedMessageBroker}.
  */
-public class MessageBrokerImpl implements MessageBroker {
-	private ConcurrentMap<Subscriber, BlockingQueue<Message>> subscriberQueues;
+public class MessageBrokerImpl implements PollingMessageBroker, QuiescentMessageBroker, RoutingMessageBroker, BoundedMessageBroker {
+	private ConcurrentMap<Subscriber, SubscriberChannel> subscriberChannels;
 
 	/**
-	 * Lock for reading/writing to the map itself, not for the inner containers (queues).
-	 * The inner containers should be synchronized independently.
+	 * The channel whose messages the current thread handles, i.e. the channel it last took a message from.
+	 * Subscribers complete the events they've taken on their own thread,
+	 * so this finds the future of a completed event without any shared lookup.
 	 */
-	private ReadWriteLock eventsLock;
-	private Map<Class<? extends Message>, EventQueue> subscribedEvents;
+	private ThreadLocal<SubscriberChannel> handledChannel;
 
-	private ConcurrentMap<Event<?>, Future<?>> futures;
+	/**
+	 * The subscribers of every message type. Sending a message only reads a snapshot from it,
+	 * so the send path does not take any lock for looking up the subscribers.
+	 */
+	private SubscriptionRegistry subscriptions;
 
 	/**
-	 * Initializes this message broker instance
-	 * NOTE: should be private, but it's said not to change signatures of public methods
+	 * The policies which pick the subscriber handling each sent event, of the types which were given one
 	 */
-	public MessageBrokerImpl() {
-		subscriberQueues = new ConcurrentHashMap<>();
+	private ConcurrentMap<Class<? extends Message>, RoutingPolicy<?>> routingPolicies;
+
+	/**
+	 * Picks the subscriber handling the events of the types which were not given a policy
+	 */
+	private RoutingPolicy<Event<?>> defaultRoutingPolicy;
+
+	/**
+	 * The event types which may be stolen by an idle subscriber from a busy one
+	 */
+	private Set<Class<? extends Message>> stealableTypes;
+
+	/**
+	 * The subscribers of stealable types which wait for messages while there's nothing to steal,
+	 * signaled when an event may be stolen from a peer
+	 */
+	private ConcurrentMap<Subscriber, SubscriberChannel> idleThieves;
 
-		// We should use the read/write lock seen in class rather than the java's library ReentrantReadWriteLock
-		// because the one seen in class favor writers while the other does not,
-		// so it seems we should use the variant seen in class
-		eventsLock = new WriterFavoredReadWriteLock();
+	/**
+	 * The bounds of the queues of subscribers which didn't choose their own
+	 */
+	private volatile int defaultQueueCapacity;
+	private volatile OverflowPolicy defaultOverflowPolicy;
 
-		// We should use a non-concurrent map, since the access to it is protected by a lock.
-		// We should use a concurrent version because we need to synchronizes
-		// access to each one in the round robin.
-		// Concurrent queue seems like a good idea since it's non-blocking, thread safe
-		// and allows easy implementation of the round robin mechanism
-		// (while not hurting sending broadcasts).
-		subscribedEvents = new HashMap<>();
+	/**
+	 * Counts the messages delivered to all the subscribers until they're handled
+	 */
+	private MessageActivity activity;
 
-		futures = new ConcurrentHashMap<>();
+	/**
+	 * Initializes this message broker instance
+	 * NOTE: should be private, but it's said not to change signatures of public methods
+	 */
+	public MessageBrokerImpl() {
+		subscriberChannels = new ConcurrentHashMap<>();
+		handledChannel = new ThreadLocal<>();
+		subscriptions = new SubscriptionRegistry();
+		routingPolicies = new ConcurrentHashMap<>();
+		defaultRoutingPolicy = RoutingPolicies.byDefault();
+		stealableTypes = ConcurrentHashMap.newKeySet();
+		idleThieves = new ConcurrentHashMap<>();
+		defaultQueueCapacity = Integer.MAX_VALUE;
+		defaultOverflowPolicy = OverflowPolicy.Block;
+		activity = new MessageActivity();
 	}
 
 	/**
-	 * Retrieves the single instance of this class.
+	 * Retrieves the single instance of the message broker,
+	 * whose implementation is chosen by {@link MessageBrokerFactory} (this class by default).
 	 */
 	public static MessageBroker getInstance() {
 		return InstanceHolder.instance;
@@ -62,51 +98,43 @@ public class MessageBrokerImpl implements MessageBroker {
 		subscribeMessage(type, m);
 	}
 
-	@SuppressWarnings("unchecked")
 	@Override
 	public <T> void complete(Event<T> e, T result) {
-		// There shouldn't be a problem if context switch happens mid-execution of this method, since:
-		// 1. Only one subscriber is handed the event, therefore only one will complete it.
-		// 2. If a future stays in the map for no reason, no harm can come out of it
-		Future<T> future = (Future<T>)futures.get(e);
-		future.resolve(result);
-		futures.remove(e, future);
-		Loggers.DefaultLogger.appendLine(e + " completed with: " + result);
+		// There shouldn't be a problem if context switch happens mid-execution of this method, since
+		// only one subscriber is handed the event, therefore only one will complete it.
+		SubscriberChannel channel = handledChannel.get();
+		if (channel == null || !channel.complete(e, result)) {
+			completeFromSubscribers(e, result);
+		}
+		Loggers.DefaultLogger.appendLine(Level.Debug, "{} completed with: {}", e, result);
+		Journals.BrokerJournal.complete(e);
 	}
 
 	@Override
 	public void sendBroadcast(Broadcast b) throws InterruptedException {
-		eventsLock.acquireReadLock();
-		try {
-			Loggers.DefaultLogger.appendLine(Thread.currentThread().getName() + " sending " + b);
+		Loggers.DefaultLogger.appendLine(Level.Debug, "{} sending {}", Thread.currentThread().getName(), b);
+		Journals.BrokerJournal.send(b);
 
-			EventQueue queue = getMessageSubscribers(b);
-			if (queue != null) {
-				addBroadcastToSubscriberQueues(b, queue);
-			}
-			else {
-				Loggers.DefaultLogger.appendLine("No one is subbed to '" + b.getClass().getName());
-			}
-		} finally {
-			eventsLock.releaseReadLock();
+		Subscriber[] subscribers = subscriptions.getSubscribers(b.getClass());
+		if (subscribers.length > 0) {
+			addBroadcastToSubscriberQueues(b, subscribers);
+		}
+		else {
+			Loggers.DefaultLogger.appendLine(Level.Warn, "No one is subbed to '{}", b.getClass().getName());
 		}
 	}
 
 	@Override
 	public <T> Future<T> sendEvent(Event<T> e) throws InterruptedException {
-		try {
-			eventsLock.acquireReadLock();
-			Loggers.DefaultLogger.appendLine(Thread.currentThread().getName() + " sending " + e);
+		Loggers.DefaultLogger.appendLine(Level.Debug, "{} sending {}", Thread.currentThread().getName(), e);
+		Journals.BrokerJournal.send(e);
 
-			EventQueue queue = getMessageSubscribers(e);
-			if (queue != null) {
-				return roundRobinEvent(e, queue);
-			}
-			else {
-				Loggers.DefaultLogger.appendLine("No one is subbed to '" + e.getClass().getName());
-			}
-		} finally {
-			eventsLock.releaseReadLock();
+		Subscriber[] subscribers = subscriptions.getSubscribers(e.getClass());
+		if (subscribers.length > 0) {
+			return routeEvent(e, subscribers);
+		}
+		else {
+			Loggers.DefaultLogger.appendLine(Level.Warn, "No one is subbed to '{}", e.getClass().getName());
 		}
 
 		return null;
@@ -114,184 +142,350 @@ public class MessageBrokerImpl implements MessageBroker {
 
 	@Override
 	public void register(Subscriber m) {
-		subscriberQueues.computeIfAbsent(m, s -> new LinkedBlockingQueue<>());
-		Loggers.DefaultLogger.appendLine(m.getName() + " registered");
+		subscriberChannels.computeIfAbsent(m, this::createChannel);
+		Loggers.DefaultLogger.appendLine(Level.Info, "{} registered", m.getName());
+		Journals.BrokerJournal.register(m);
 	}
 
 	@Override
 	public void unregister(Subscriber m) {
-		Loggers.DefaultLogger.appendLine(Thread.currentThread().getName() + " unregistering");
-		BlockingQueue<Message> subscriberMsgQueue = removeSubscriber(m);
-		completeFutures(subscriberMsgQueue);
-		Loggers.DefaultLogger.appendLine(m.getName() + " unregistered");
+		Loggers.DefaultLogger.appendLine(Level.Info, "{} unregistering", Thread.currentThread().getName());
+		Journals.BrokerJournal.unregister(m);
+		SubscriberChannel channel = removeSubscriber(m);
+		if (channel != null) {
+			channel.close();
+			Loggers.DefaultLogger.appendLine(Level.Info, () -> m.getName() + " unregistered, queue " + channel.getOccupancy());
+		}
+		else {
+			Loggers.DefaultLogger.appendLine(Level.Info, "{} unregistered", m.getName());
+		}
 	}
 
 	@Override
 	public Message awaitMessage(Subscriber m) throws InterruptedException {
-		BlockingQueue<Message> queue = getSubscriberQueue(m);
-		return queue.take();
+		SubscriberChannel channel = getRegisteredChannel(m);
+		handledChannel.set(channel);
+		boolean stealing = canSteal(m);
+		channel.setBatching(!stealing);
+		if (!stealing) {
+			return channel.take();
+		}
+
+		// Can't block on the queue alone, so wait to be signaled either by the queue or by a peer which has work to steal
+		while (true) {
+			Message message = channel.poll();
+			if (message != null) {
+				tookOwnMessage(m, channel);
+				return message;
+			}
+			message = steal(m, channel);
+			if (message != null) {
+				return message;
+			}
+
+			idleThieves.put(m, channel);
+			try {
+				// Looked for again once idle, so an event sent meanwhile is either seen here or signals
+				message = steal(m, channel);
+				if (message != null) {
+					return message;
+				}
+				channel.awaitSignal();
+			}
+			finally {
+				idleThieves.remove(m, channel);
+			}
+		}
 	}
 
-	private BlockingQueue<Message> getSubscriberQueue(Subscriber m) {
-		return subscriberQueues.get(m);
+	@Override
+	public Message pollMessage(Subscriber m) {
+		SubscriberChannel channel = getRegisteredChannel(m);
+		handledChannel.set(channel);
+		boolean stealing = !stealableTypes.isEmpty() && canSteal(m);
+		channel.setBatching(!stealing);
+		Message message = channel.poll();
+		if (message != null && stealing) {
+			tookOwnMessage(m, channel);
+		}
+		else if (message == null && stealing) {
+			message = steal(m, channel);
+		}
+		return message;
 	}
 
-	private EventQueue getMessageSubscribers(Message msg) {
-		return subscribedEvents.getOrDefault(msg.getClass(), null);
+	@Override
+	public boolean hasMessages(Subscriber m) {
+		SubscriberChannel channel = getSubscriberChannel(m);
+		return channel != null && channel.hasMessages();
 	}
 
-	private <T> void subscribeMessage(Class<? extends Message> type, Subscriber m) {
-		eventsLock.acquireWriteLock();
-		try {
-			EventQueue queue = subscribedEvents.computeIfAbsent(type, t -> new EventQueue());
-			queue.add(m);
-			Loggers.DefaultLogger.appendLine(m.getName() + " subscribed to " + type.getSimpleName());
-		} finally {
-			eventsLock.releaseWriteLock();
-		}
+	@Override
+	public boolean hasQueuedMessages(Subscriber m) {
+		SubscriberChannel channel = getSubscriberChannel(m);
+		return channel != null && channel.hasQueuedMessages();
 	}
 
-	private void addMessageToSubscriberQueue(Message msg, Subscriber subscriber) throws InterruptedException {
-		BlockingQueue<Message> queue = getSubscriberQueue(subscriber);
-		putToBlockingQueue(queue, msg);
+	@Override
+	public void setMessageListener(Subscriber m, Runnable listener) {
+		getRegisteredChannel(m).setListener(listener);
 	}
 
-	private void addBroadcastToSubscriberQueues(Broadcast b, EventQueue queue) throws InterruptedException {
-		// No (further) synchronization (beyond the lock for the queues map) is needed,
-		// since after registration, the container doesn't change (for a broadcast message type)
-		for (Subscriber subscriber : queue.queue) {
-			Loggers.DefaultLogger.appendLine(subscriber.getName() + " received " + b);
-			addMessageToSubscriberQueue(b, subscriber);
+	@Override
+	public <E extends Event<?>> void setRoutingPolicy(Class<E> type, RoutingPolicy<? super E> policy) {
+		if (policy == null) {
+			routingPolicies.remove(type);
+		}
+		else {
+			routingPolicies.put(type, policy);
 		}
 	}
 
-	private <T> Future<T> roundRobinEvent(Event<T> e, EventQueue queue) throws InterruptedException {
-		// Many threads may try to send an event of this type,
-		// we need to make sure the queue (for this type of message) stays valid
-		synchronized (queue.lock) {
-			Subscriber subscriber = queue.poll();
-			if (subscriber == null) {
-				// No one is subscribed
-				Loggers.DefaultLogger.appendLine("No one is subbed to '" + e.getClass().getName());
-				return null;
-			}
+	@Override
+	public int getPendingCount(Subscriber m) {
+		SubscriberChannel channel = getSubscriberChannel(m);
+		return channel != null ? channel.getPendingCount() : Integer.MAX_VALUE;
+	}
 
-			Loggers.DefaultLogger.appendLine(subscriber.getName() + " assigned " + e);
-			Future<T> future = handEventToSubscriber(e, subscriber);
-			queue.add(subscriber);
-			return future;
+	@Override
+	public void setWorkStealing(Class<? extends Event<?>> type, boolean enabled) {
+		if (enabled) {
+			stealableTypes.add(type);
+		}
+		else {
+			stealableTypes.remove(type);
 		}
 	}
 
-	private <T> Future<T> handEventToSubscriber(Event<T> e, Subscriber subscriber) throws InterruptedException {
-		Future<T> future = new Future<>();
-		futures.put(e, future);
-		addMessageToSubscriberQueue(e, subscriber);
-		return future;
+	@Override
+	public void setDefaultQueueBounds(int capacity, OverflowPolicy policy) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("capacity must be positive.");
+		}
+
+		defaultQueueCapacity = capacity;
+		defaultOverflowPolicy = policy != null ? policy : OverflowPolicy.Block;
 	}
 
-	private void unsubscribeFromMessages(Subscriber m) {
-		Set<Class<? extends Message>> messageTypes = subscribedEvents.keySet();
-		Iterator<Class<? extends Message>> iterator = messageTypes.iterator();
-		unsubscribeFromMessages(m, iterator);
+	@Override
+	public QueueOccupancy getQueueOccupancy(Subscriber m) {
+		SubscriberChannel channel = getSubscriberChannel(m);
+		return channel != null ? channel.getOccupancy() : null;
 	}
 
-	private void unsubscribeFromMessages(Subscriber m, Iterator<Class<? extends Message>> iterator) {
-		while (iterator.hasNext()) {
-			Class<? extends Message> msgType = iterator.next();
-			EventQueue queue = subscribedEvents.get(msgType);
-			queue.remove(m);
+	@Override
+	public boolean awaitQuiescence(long timeout, TimeUnit unit) throws InterruptedException {
+		return activity.awaitQuiescence(timeout, unit);
+	}
 
-			// Removes the message queue for the type if no one is subscribed to the message
-			if (queue.isEmpty()) {
-				iterator.remove();
-			}
+	private SubscriberChannel createChannel(Subscriber m) {
+		if (m.getQueueCapacity() > 0) {
+			return new SubscriberChannel(activity, m.getQueueCapacity(), m.getOverflowPolicy());
 		}
+
+		return new SubscriberChannel(activity, defaultQueueCapacity, defaultOverflowPolicy);
+	}
+
+	private SubscriberChannel getSubscriberChannel(Subscriber m) {
+		return subscriberChannels.get(m);
+	}
+
+	private SubscriberChannel getRegisteredChannel(Subscriber m) {
+		SubscriberChannel channel = getSubscriberChannel(m);
+		if (channel == null) {
+			throw new IllegalStateException(m.getName() + " is not registered.");
+		}
+
+		return channel;
+	}
+
+	private void subscribeMessage(Class<? extends Message> type, Subscriber m) {
+		subscriptions.subscribe(type, m);
+		Loggers.DefaultLogger.appendLine(Level.Info, "{} subscribed to {}", m.getName(), type.getSimpleName());
 	}
 
 	/**
-	 * Puts an item to a blocking queue. The put is tried until it fully completes with interruptions.
-	 * @param queue The queue to put into
-	 * @param e The item to put into the queue
-	 * @param <E> The item's type
+	 * Adds the envelope to the queue of the subscriber.
+	 * @return Whether the envelope was delivered, false if the subscriber has unregistered
 	 */
-	private static <E> void putToBlockingQueue(BlockingQueue<E> queue, E e) throws InterruptedException {
-		queue.put(e);
+	private boolean addEnvelopeToSubscriberQueue(Envelope<?> envelope, Subscriber subscriber) throws InterruptedException {
+		SubscriberChannel channel = getSubscriberChannel(subscriber);
+		return channel != null && channel.put(envelope);
 	}
 
-	private BlockingQueue<Message> removeSubscriber(Subscriber m) {
-		eventsLock.acquireWriteLock();
-		try {
-			BlockingQueue<Message> subscriberMsgQueue = subscriberQueues.remove(m);
-			unsubscribeFromMessages(m);
-			return subscriberMsgQueue;
+	private void addBroadcastToSubscriberQueues(Broadcast b, Subscriber[] subscribers) throws InterruptedException {
+		// The snapshot never changes, so no synchronization is needed for iterating it.
+		// A broadcast has no future, so all the subscribers can share the same envelope.
+		// The whole fan-out is counted as delivered in one go (before any subscriber can handle it),
+		// instead of every subscriber's delivery contending on the shared count.
+		Envelope<Void> envelope = Envelope.of(b);
+		activity.delivered(subscribers.length);
+		int undelivered = 0;
+		for (Subscriber subscriber : subscribers) {
+			Loggers.DefaultLogger.appendLine(Level.Debug, "{} received {}", subscriber.getName(), b);
+			Journals.BrokerJournal.assign(subscriber, b);
+			SubscriberChannel channel = getSubscriberChannel(subscriber);
+			if (channel == null || !channel.putCounted(envelope)) {
+				++undelivered;
+			}
 		}
-		finally {
-			eventsLock.releaseWriteLock();
+		if (undelivered > 0) {
+			activity.handled(undelivered);
 		}
 	}
 
-	@SuppressWarnings({"rawtypes", "unchecked"})
-	private void completeFutures(BlockingQueue<Message> subscriberMsgQueue) {
-		for (Message msg : subscriberMsgQueue) {
-			if (msg instanceof Event) {
-				Event event = (Event)msg;
-				complete(event, null);
+	private <T> Future<T> routeEvent(Event<T> e, Subscriber[] subscribers) throws InterruptedException {
+		// Routing is lock free and the event is enqueued outside of any lock,
+		// so senders of this event type don't wait for each other.
+		// A picked subscriber may have unregistered after the snapshot was taken. It has already been removed
+		// from the subscriptions by then, so route again with a newer snapshot
+		// (at most once for every subscriber in the first snapshot).
+		RoutingPolicy<Event<?>> policy = getRoutingPolicy(e.getClass());
+		Envelope<T> envelope = Envelope.of(e);
+		for (int i = subscribers.length; i > 0 && subscribers.length > 0; i--) {
+			Subscriber subscriber = policy.route(e, subscribers);
+			Loggers.DefaultLogger.appendLine(Level.Debug, "{} assigned {}", subscriber.getName(), e);
+			Journals.BrokerJournal.assign(subscriber, e);
+			if (addEnvelopeToSubscriberQueue(envelope, subscriber)) {
+				if (!idleThieves.isEmpty() && stealableTypes.contains(e.getClass())) {
+					// The subscriber may be busy, an idle peer can take the event away from it
+					signalThief(e.getClass(), subscriber);
+				}
+				return envelope.getFuture();
+			}
+			subscribers = subscriptions.getSubscribers(e.getClass());
+		}
+
+		// Every picked subscriber has unregistered
+		Loggers.DefaultLogger.appendLine(Level.Warn, "No one is subbed to '{}", e.getClass().getName());
+		return null;
+	}
+
+	@SuppressWarnings("unchecked")
+	private RoutingPolicy<Event<?>> getRoutingPolicy(Class<? extends Message> type) {
+		// Only ever set for the events of the type, see setRoutingPolicy
+		RoutingPolicy<Event<?>> policy = (RoutingPolicy<Event<?>>)routingPolicies.get(type);
+		return policy != null ? policy : defaultRoutingPolicy;
+	}
+
+	/**
+	 * @return Whether the subscriber is subscribed to an event type which may be stolen
+	 */
+	private boolean canSteal(Subscriber m) {
+		for (Class<? extends Message> type : stealableTypes) {
+			if (isSubscribed(type, m)) {
+				return true;
 			}
 		}
-		subscriberMsgQueue.clear();
+
+		return false;
 	}
 
 	/**
-	 * Holds a subscriber queue for the round robin and a lock object used to synchronize access to the queue
+	 * Takes a queued event of a stealable type the subscriber is subscribed to, from a busy subscriber of that type.
+	 * The event is handled (and completed) by the subscriber as if it was sent to it,
+	 * its future goes with it.
+	 * @return The stolen event, null if there's nothing to steal
 	 */
-	private static class EventQueue {
-		private Queue<Subscriber> queue;
-		private final Object lock;
-
-		/**
-		 * Initializes a instance with a new queue and a lock for it
-		 */
-		public EventQueue() {
-			queue = new LinkedList<>();
-			lock = new Object();
+	private Message steal(Subscriber m, SubscriberChannel channel) {
+		for (Class<? extends Message> type : stealableTypes) {
+			Subscriber[] peers = subscriptions.getSubscribers(type);
+			if (peers.length < 2 || !isSubscribed(peers, m)) {
+				continue;
+			}
+
+			// Start from a random peer, so the thieves don't all go after the same one
+			int start = ThreadLocalRandom.current().nextInt(peers.length);
+			for (int i = 0; i < peers.length; i++) {
+				Subscriber peer = peers[(start + i) % peers.length];
+				SubscriberChannel victim = peer != m ? getSubscriberChannel(peer) : null;
+				Envelope<?> envelope = victim != null ? victim.steal(type) : null;
+				if (envelope != null) {
+					Loggers.DefaultLogger.appendLine(Level.Debug, "{} stole {} from {}", m.getName(), envelope.getMessage(), peer.getName());
+					Journals.BrokerJournal.assign(m, envelope.getMessage());
+					if (!idleThieves.isEmpty()) {
+						// There may be more to steal from the victim, another idle peer can look for it
+						idleThieves.remove(m, channel);
+						signalThief(type, peer);
+					}
+					return channel.adopt(envelope);
+				}
+			}
 		}
 
-		/**
-		 * Removes a subscriber from the queue
-		 * @param m The subscriber to remove
-		 */
-		public void remove(Subscriber m) {
-			queue.remove(m);
+		return null;
+	}
+
+	/**
+	 * Called after a subscriber of a stealable type took a message from its own queue:
+	 * it's busy now, so the events left in its queue may be stolen
+	 */
+	private void tookOwnMessage(Subscriber m, SubscriberChannel channel) {
+		if (!idleThieves.isEmpty() && channel.hasMessages()) {
+			signalThief(null, m);
 		}
+	}
 
-		/**
-		 * @return Whether this collection contains no elements
-		 */
-		public boolean isEmpty() {
-			return queue.isEmpty();
+	/**
+	 * Wakes an idle subscriber which may steal an event from the victim
+	 * @param type The type of the event, null for any stealable type
+	 * @param victim The subscriber the event may be stolen from
+	 */
+	private void signalThief(Class<? extends Message> type, Subscriber victim) {
+		for (Subscriber thief : idleThieves.keySet()) {
+			if (thief == victim || (type != null && !isSubscribed(type, thief))) {
+				continue;
+			}
+			SubscriberChannel channel = idleThieves.remove(thief);
+			if (channel != null) {
+				// If it finds nothing to steal after all, it goes back to waiting
+				channel.signal();
+				return;
+			}
 		}
+	}
+
+	private boolean isSubscribed(Class<? extends Message> type, Subscriber m) {
+		return isSubscribed(subscriptions.getSubscribers(type), m);
+	}
 
-		/**
-		 * Adds a subscriber to this queue
-		 * @param m The subscriber to add
-		 */
-		public void add(Subscriber m) {
-			queue.add(m);
+	private static boolean isSubscribed(Subscriber[] subscribers, Subscriber m) {
+		for (Subscriber subscriber : subscribers) {
+			if (subscriber == m) {
+				return true;
+			}
 		}
 
-		/**
-		 * Retrieves and removes the head of this queue,
-		 * or returns {@code null} if this queue is empty.
-		 *
-		 * @return the head of this queue, or {@code null} if this queue is empty
-		 */
-		public Subscriber poll() {
-			return queue.poll();
+		return false;
+	}
+
+	/**
+	 * Completes an event which was not taken by the channel the current thread handles.
+	 * A subscriber completes its events from its callbacks, which run on the thread handling it
+	 * (its own thread, or the pool thread draining it with {@link #pollMessage(Subscriber)}),
+	 * even the events it completes after taking other messages. So this is only taken when an event is completed
+	 * from another thread, e.g. one which has taken a message of another subscriber since.
+	 * Only the subscribers of the event's type may have taken it (a thief adopts what it steals),
+	 * so only their channels are looked at.
+	 */
+	private <T> void completeFromSubscribers(Event<T> e, T result) {
+		for (Subscriber subscriber : subscriptions.getSubscribers(e.getClass())) {
+			SubscriberChannel channel = getSubscriberChannel(subscriber);
+			if (channel != null && channel.complete(e, result)) {
+				return;
+			}
 		}
+
+		Loggers.DefaultLogger.appendLine(Level.Warn, "No one has taken {}", e);
+	}
+
+	private SubscriberChannel removeSubscriber(Subscriber m) {
+		// Stop publishing the subscriber first, so new messages won't be sent to it
+		subscriptions.unsubscribe(m);
+		return subscriberChannels.remove(m);
 	}
 
 	private static class InstanceHolder {
-		public static final MessageBrokerImpl instance = new MessageBrokerImpl();
+		public static final MessageBroker instance = MessageBrokerFactory.create();
 	}
 }
@@ -0,0 +1,29 @@
+package bgu.spl.mics;
+
+/**
+ * What a bounded subscriber queue does with an event sent to it while it's full
+ * (see {@link BoundedMessageBroker}).
+ * Broadcasts are never held back or rejected, the publisher of a broadcast (e.g. the time ticks)
+ * may be what the subscriber is waiting for. They're let in beyond the capacity,
+ * except for {@link #DropOldestBroadcast} which drops a stale broadcast to make room.
+ */
+public enum OverflowPolicy {
+    /**
+     * The sender waits until there's room in the queue
+     */
+    Block,
+
+    /**
+     * The event is not delivered, its future fails right away with a {@link java.util.concurrent.RejectedExecutionException},
+     * so the sender can tell it apart from an event no one is subscribed to (whose result is null)
+     */
+    Fail,
+
+    /**
+     * The oldest stale broadcast in the queue is dropped to make room. A broadcast is stale once a newer one
+     * of the same type is sent after it, e.g. a tick which was not handled before the next one,
+     * so the last broadcast of a type (like the last tick) is never dropped.
+     * If the queue holds no stale broadcasts, the sender of an event waits like {@link #Block}.
+     */
+    DropOldestBroadcast
+}
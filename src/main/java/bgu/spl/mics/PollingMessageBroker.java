@@ -0,0 +1,41 @@
+package bgu.spl.mics;
+
+/**
+ * A {@link MessageBroker} which also lets a subscriber take messages without blocking
+ * and get notified when messages arrive. Used for running subscribers which don't own a thread,
+ * so they must not block in {@link MessageBroker#awaitMessage(Subscriber)}.
+ */
+interface PollingMessageBroker extends MessageBroker {
+    /**
+     * Takes the next message from the queue of the subscriber, if there is one.
+     * The method should throw the {@link IllegalStateException} in the case
+     * where {@code s} was never registered.
+     * @param s The subscriber
+     * @return The next message in {@code s}'s queue, null if it is empty
+     */
+    Message pollMessage(Subscriber s);
+
+    /**
+     * Only the thread handling the subscriber may ask, since it includes the messages the subscriber has moved
+     * out of its queue to take them later.
+     * @param s The subscriber
+     * @return Whether there are messages in the queue of the subscriber
+     */
+    boolean hasMessages(Subscriber s);
+
+    /**
+     * Like {@link #hasMessages(Subscriber)}, without the messages the subscriber has moved out of its queue,
+     * so any thread may ask.
+     * @param s The subscriber
+     * @return Whether there are messages left in the queue of the subscriber itself
+     */
+    boolean hasQueuedMessages(Subscriber s);
+
+    /**
+     * Sets a listener which is notified (by the sending thread) after each message
+     * is added to the queue of the subscriber.
+     * @param s The subscriber, must be registered
+     * @param listener The listener
+     */
+    void setMessageListener(Subscriber s, Runnable listener);
+}
@@ -0,0 +1,139 @@
+package bgu.spl.mics;
+
+import bgu.spl.mics.loggers.Level;
+import bgu.spl.mics.loggers.Loggers;
+
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+
+/**
+ * Runs the subscribers on a shared pool of threads.
+ * A subscriber doesn't hold a thread while its queue is empty, its messages are handled on the pool
+ * as they arrive (see {@link Subscriber#runOn}), so idle subscribers don't hold threads.
+ * <p>
+ * The pool is a {@link ForkJoinPool}, because subscribers do block while handling messages
+ * (waiting for futures and agents) and the blocking methods they use tell the pool about it,
+ * so it adds threads to make up for the blocked ones instead of deadlocking.
+ * The amount of threads it adds is capped: once the pool has its maximal size, a handler which blocks
+ * holds its thread without a replacement, and the pool runs with fewer threads until it's done.
+ * A subscriber handles one message at a time, so it blocks a single thread at most:
+ * with a spare for every subscriber which may block, the pool never runs out of threads.
+ * So the pool is only smaller than a thread per subscriber when few of them block at once:
+ * handlers which block while waiting for each other need about a thread for every blocked subscriber,
+ * and a smaller cap may deadlock them.
+ * The cap needs the pool of Java 9 and above, on Java 8 blocked threads are made up for without one.
+ */
+public class PooledSubscriberExecutor implements SubscriberExecutor {
+    /**
+     * How many threads the pool adds beyond its parallelism at most, by default
+     */
+    public static final int DEFAULT_MAX_SPARES = 256;
+
+    /**
+     * How long a thread which was added for a blocked one is kept once idle
+     */
+    private static final long KEEP_ALIVE_SECONDS = 60;
+
+    private final ForkJoinPool pool;
+    private final Set<Subscriber> running;
+    private final AtomicBoolean saturated;
+
+    /**
+     * Initializes an executor with a pool of the given parallelism,
+     * which adds up to {@link #DEFAULT_MAX_SPARES} threads for blocked ones
+     * @param poolSize The amount of threads which handle messages when none of them are blocked
+     */
+    public PooledSubscriberExecutor(int poolSize) {
+        this(poolSize, poolSize + DEFAULT_MAX_SPARES);
+    }
+
+    /**
+     * Initializes an executor with a pool of the given parallelism and maximal size
+     * @param poolSize The amount of threads which handle messages when none of them are blocked
+     * @param maxPoolSize The maximal amount of threads, including the ones added for blocked ones.
+     *                    Handlers which wait for each other may deadlock if it's smaller than
+     *                    the pool size and the amount of subscribers which may block.
+     */
+    public PooledSubscriberExecutor(int poolSize, int maxPoolSize) {
+        if (poolSize <= 0) {
+            throw new IllegalArgumentException("poolSize must be positive.");
+        }
+        if (maxPoolSize < poolSize) {
+            throw new IllegalArgumentException("maxPoolSize must be at least poolSize.");
+        }
+
+        saturated = new AtomicBoolean(false);
+        pool = createPool(poolSize, maxPoolSize);
+        running = ConcurrentHashMap.newKeySet();
+    }
+
+    @Override
+    public void execute(Subscriber s) {
+        running.add(s);
+        s.runOn(pool, () -> onTerminated(s));
+    }
+
+    @Override
+    public void awaitTermination() throws InterruptedException {
+        synchronized (running) {
+            while (!running.isEmpty()) {
+                running.wait();
+            }
+        }
+    }
+
+    @Override
+    public Iterable<String> getRunningNames() {
+        List<String> names = new ArrayList<>();
+        for (Subscriber subscriber : running) {
+            names.add(subscriber.getName());
+        }
+
+        return names;
+    }
+
+    @Override
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * Creates the pool with the constructor of Java 9 and above, which caps the threads added for blocked ones.
+     * It's looked up reflectively since the project targets Java 8, where the pool can't be capped.
+     */
+    private ForkJoinPool createPool(int poolSize, int maxPoolSize) {
+        // Rather than failing the handler which is about to block, let it block without a replacement
+        Predicate<ForkJoinPool> saturate = p -> {
+            if (saturated.compareAndSet(false, true)) {
+                Loggers.DefaultLogger.appendLine(Level.Warn,
+                    "The subscriber pool has reached {} threads, blocked handlers are no longer made up for", maxPoolSize);
+            }
+            return true;
+        };
+
+        try {
+            Constructor<ForkJoinPool> constructor = ForkJoinPool.class.getConstructor(
+                int.class, ForkJoinPool.ForkJoinWorkerThreadFactory.class, Thread.UncaughtExceptionHandler.class,
+                boolean.class, int.class, int.class, int.class, Predicate.class, long.class, TimeUnit.class);
+            // Async mode makes the pool process the scheduled drains in FIFO order, which suits message passing
+            return constructor.newInstance(poolSize, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null,
+                true, poolSize, maxPoolSize, 1, saturate, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS);
+        } catch (ReflectiveOperationException e) {
+            return new ForkJoinPool(poolSize, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+        }
+    }
+
+    private void onTerminated(Subscriber s) {
+        running.remove(s);
+        synchronized (running) {
+            running.notifyAll();
+        }
+    }
+}
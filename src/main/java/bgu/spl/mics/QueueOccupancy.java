@@ -0,0 +1,52 @@
+package bgu.spl.mics;
+
+/**
+ * A snapshot of how full the queue of a subscriber is, and has been
+ */
+public final class QueueOccupancy {
+    private final int size;
+    private final int peak;
+    private final int capacity;
+    private final long overflows;
+
+    QueueOccupancy(int size, int peak, int capacity, long overflows) {
+        this.size = size;
+        this.peak = peak;
+        this.capacity = capacity;
+        this.overflows = overflows;
+    }
+
+    /**
+     * @return The amount of messages in the queue
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @return The largest amount of messages the queue has held at once
+     */
+    public int getPeak() {
+        return peak;
+    }
+
+    /**
+     * @return The capacity of the queue, {@link Integer#MAX_VALUE} if it's unbounded
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return The amount of messages which were rejected or dropped because the queue was full
+     */
+    public long getOverflows() {
+        return overflows;
+    }
+
+    @Override
+    public String toString() {
+        return size + "/" + (capacity == Integer.MAX_VALUE ? "unbounded" : capacity) +
+            " (peak " + peak + ", overflows " + overflows + ")";
+    }
+}
@@ -0,0 +1,18 @@
+package bgu.spl.mics;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link MessageBroker} which can tell when every message it has delivered has been handled.
+ * Used for advancing time as soon as the subscribers are done with the previous tick.
+ */
+interface QuiescentMessageBroker extends MessageBroker {
+    /**
+     * Waits until every message delivered to a subscriber has been handled, i.e. all the queues are empty
+     * and no subscriber is in the middle of handling a message.
+     * @param timeout The maximal time to wait
+     * @param unit The unit of {@code timeout}
+     * @return Whether the broker became quiescent, false if the time elapsed first
+     */
+    boolean awaitQuiescence(long timeout, TimeUnit unit) throws InterruptedException;
+}
@@ -0,0 +1,468 @@
+package bgu.spl.mics;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The message queue of a single subscriber of the {@link RingBufferMessageBroker}, and the events it has taken
+ * but not completed yet.
+ * <p>
+ * The queue is a ring of slots allocated up front, in the fashion of the LMAX Disruptor. A sender claims the next
+ * sequence number with a CAS, puts its envelope in the slot of the sequence and publishes it by marking the slot
+ * with the sequence number. The subscriber takes the slots in the order of their sequence numbers,
+ * so sending a message neither allocates a queue node nor takes a lock.
+ * The ring is bounded: a sender of an event waits while it's full, until the subscriber takes the message
+ * which was sent a ring's length before its own. Broadcasts never wait, since the publisher of a broadcast
+ * (e.g. the time ticks) may be what the subscriber is waiting for. A broadcast which doesn't fit is spilled
+ * to an unbounded queue, and so are the ones after it until the subscriber catches up,
+ * so the broadcasts are still taken in order (but may be taken after events which were sent after them).
+ * <p>
+ * Only the subscriber takes messages from the ring, and closes it.
+ */
+final class RingBufferChannel {
+    /**
+     * Set in the claimed sequence once the ring is closed, making it negative
+     */
+    private static final long CLOSED = Long.MIN_VALUE;
+
+    /**
+     * Returned instead of a claimed sequence number for a broadcast which should be spilled
+     */
+    private static final long SPILLED = Long.MAX_VALUE;
+
+    /**
+     * How many times a waiting thread yields before it parks, with {@link WaitStrategy#Park}
+     */
+    private static final int YIELDS_BEFORE_PARKING = 64;
+
+    /**
+     * How long a sender waiting for room parks at a time, with {@link WaitStrategy#Park}
+     */
+    private static final long ROOM_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private final Envelope<?>[] slots;
+
+    /**
+     * The sequence number of the envelope in each slot, set once the envelope is published
+     */
+    private final AtomicLongArray published;
+    private final int mask;
+
+    /**
+     * The next sequence number to be claimed by a sender
+     */
+    private final AtomicLong claimed;
+
+    /**
+     * The next sequence number to be taken by the subscriber.
+     * The slot of a sequence number can be claimed again once its envelope has been taken.
+     */
+    private final AtomicLong taken;
+
+    /**
+     * Broadcasts which were sent while the ring was full (or while older ones were still spilled)
+     */
+    private final ConcurrentLinkedQueue<Envelope<?>> spilled;
+
+    private final WaitStrategy waitStrategy;
+
+    /**
+     * The thread of the subscriber while it's parked waiting for a message
+     */
+    private volatile Thread parked;
+    private volatile Runnable listener;
+
+    /**
+     * The envelope of the last message taken from the ring
+     */
+    private volatile Envelope<?> current;
+
+    /**
+     * Events which were taken from the ring but were still pending when the next message was taken
+     */
+    private final ConcurrentMap<Event<?>, Envelope<?>> deferred;
+
+    /**
+     * Whether the subscriber is handling the last message it has taken
+     */
+    private volatile boolean handling;
+
+    /**
+     * Counts the messages delivered to all the subscribers until they're handled
+     */
+    private final MessageActivity activity;
+
+    /**
+     * @param activity Counts the messages delivered through this channel (and others) until they're handled
+     * @param size The amount of slots in the ring, a power of 2
+     * @param waitStrategy How the subscriber and the senders wait
+     */
+    RingBufferChannel(MessageActivity activity, int size, WaitStrategy waitStrategy) {
+        if (size <= 0 || Integer.bitCount(size) != 1) {
+            throw new IllegalArgumentException("size must be a power of 2.");
+        }
+
+        slots = new Envelope<?>[size];
+        published = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            published.set(i, -1);
+        }
+        mask = size - 1;
+        claimed = new AtomicLong();
+        taken = new AtomicLong();
+        spilled = new ConcurrentLinkedQueue<>();
+        this.waitStrategy = waitStrategy;
+        deferred = new ConcurrentHashMap<>();
+        this.activity = activity;
+        handling = false;
+    }
+
+    /**
+     * Adds the envelope to the ring. The sender of an event waits for room while the ring is full,
+     * a broadcast is spilled instead.
+     * @param envelope The envelope to add
+     * @return Whether the envelope was delivered, false if the channel has been closed
+     */
+    boolean put(Envelope<?> envelope) throws InterruptedException {
+        return put(envelope, true);
+    }
+
+    /**
+     * Adds a broadcast envelope to the ring, as part of a fan-out whose deliveries the caller counts all at once
+     * in the {@link MessageActivity} (see {@link MessageActivity#delivered(int)}).
+     * @param envelope The envelope of the broadcast
+     * @return Whether the envelope was delivered. If not, the caller should count it as handled.
+     */
+    boolean putCounted(Envelope<Void> envelope) throws InterruptedException {
+        return put(envelope, false);
+    }
+
+    private boolean put(Envelope<?> envelope, boolean countActivity) throws InterruptedException {
+        boolean broadcast = envelope.getFuture() == null;
+        // Once a broadcast is spilled, the ones after it are spilled too, so they're taken in order
+        long sequence = broadcast && !spilled.isEmpty() ? SPILLED : claim(!broadcast);
+        if (sequence == SPILLED) {
+            return spill(envelope, countActivity);
+        }
+        if (sequence < 0) {
+            return false;
+        }
+
+        // Counted before it's published, so the count never drops below the messages which are still unhandled
+        if (countActivity) {
+            activity.delivered();
+        }
+        int index = index(sequence);
+        slots[index] = envelope;
+        // A volatile write, which the parked subscriber is sure to see once it has announced itself
+        published.set(index, sequence);
+        signal();
+        return true;
+    }
+
+    /**
+     * Adds a broadcast which doesn't fit in the ring to the spilled ones
+     * @return Whether the envelope was delivered, false if the channel has been closed
+     */
+    private boolean spill(Envelope<?> envelope, boolean countActivity) {
+        if (isClosed()) {
+            return false;
+        }
+
+        if (countActivity) {
+            activity.delivered();
+        }
+        spilled.add(envelope);
+        // The channel may have been closed concurrently, after we've checked.
+        // Either the closing thread drained the envelope (and handled it), or we take it back.
+        if (isClosed() && spilled.remove(envelope)) {
+            if (countActivity) {
+                activity.handled();
+            }
+            return false;
+        }
+
+        signal();
+        return true;
+    }
+
+    /**
+     * Wakes up the subscriber if it's parked, and notifies the listener
+     */
+    private void signal() {
+        Thread waiter = parked;
+        if (waiter != null) {
+            LockSupport.unpark(waiter);
+        }
+
+        Runnable listener = this.listener;
+        if (listener != null) {
+            listener.run();
+        }
+    }
+
+    /**
+     * Claims the next sequence number
+     * @param wait Whether to wait while the ring is full
+     * @return The claimed sequence number, {@link #SPILLED} if the ring is full and not waiting,
+     * or a negative number if the channel has been closed
+     */
+    private long claim(boolean wait) throws InterruptedException {
+        while (true) {
+            long sequence = claimed.get();
+            if (sequence < 0) {
+                return -1;
+            }
+            if (sequence - slots.length < taken.get()) {
+                if (claimed.compareAndSet(sequence, sequence + 1)) {
+                    return sequence;
+                }
+            }
+            else if (!wait) {
+                return SPILLED;
+            }
+            else {
+                awaitRoom();
+            }
+        }
+    }
+
+    private boolean isClosed() {
+        return claimed.get() < 0;
+    }
+
+    /**
+     * Waits until the ring has room (or is closed).
+     * A managed block lets a pool running subscribers compensate for the blocked thread.
+     */
+    private void awaitRoom() throws InterruptedException {
+        ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+            @Override
+            public boolean block() throws InterruptedException {
+                for (int attempts = 0; !isReleasable(); attempts++) {
+                    idleForRoom(attempts);
+                }
+                return true;
+            }
+
+            @Override
+            public boolean isReleasable() {
+                long sequence = claimed.get();
+                return sequence < 0 || sequence - slots.length < taken.get();
+            }
+        });
+    }
+
+    private void idleForRoom(int attempts) throws InterruptedException {
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+
+        switch (waitStrategy) {
+            case BusySpin:
+                break;
+            case Yield:
+                Thread.yield();
+                break;
+            case Park:
+                // There may be many senders, so they aren't woken up by the subscriber but check again every while
+                if (attempts < YIELDS_BEFORE_PARKING) {
+                    Thread.yield();
+                }
+                else {
+                    LockSupport.parkNanos(this, ROOM_PARK_NANOS);
+                }
+                break;
+        }
+    }
+
+    /**
+     * Takes the next message from the ring, waiting until one is available.
+     * @return The next message
+     */
+    Message take() throws InterruptedException {
+        // Taking the next message means the subscriber is done with the previous one
+        finishHandling();
+        long sequence = taken.get();
+        int index = index(sequence);
+        int attempts = 0;
+        while (published.get(index) != sequence) {
+            Envelope<?> envelope = spilled.poll();
+            if (envelope != null) {
+                return taken(envelope);
+            }
+            awaitPublished(sequence, index, attempts++);
+        }
+        return taken(removed(sequence, index));
+    }
+
+    /**
+     * Takes the next message from the ring if there is one.
+     * @return The next message, null if the ring is empty
+     */
+    Message poll() {
+        finishHandling();
+        long sequence = taken.get();
+        int index = index(sequence);
+        if (published.get(index) == sequence) {
+            return taken(removed(sequence, index));
+        }
+
+        Envelope<?> envelope = spilled.poll();
+        return envelope != null ? taken(envelope) : null;
+    }
+
+    private void awaitPublished(long sequence, int index, int attempts) throws InterruptedException {
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+
+        switch (waitStrategy) {
+            case BusySpin:
+                break;
+            case Yield:
+                Thread.yield();
+                break;
+            case Park:
+                if (attempts < YIELDS_BEFORE_PARKING) {
+                    Thread.yield();
+                }
+                else {
+                    // Announce before checking again, so a sender which publishes after the check sees us parked
+                    parked = Thread.currentThread();
+                    if (published.get(index) != sequence && spilled.isEmpty()) {
+                        LockSupport.park(this);
+                    }
+                    parked = null;
+                }
+                break;
+        }
+    }
+
+    /**
+     * Takes the envelope out of its slot, making room for a new one
+     */
+    private Envelope<?> removed(long sequence, int index) {
+        Envelope<?> envelope = slots[index];
+        slots[index] = null;
+        // Only the subscriber moves it, the senders need only see it eventually
+        taken.lazySet(sequence + 1);
+        return envelope;
+    }
+
+    /**
+     * Makes the envelope the current one, moving the previous one aside if it's still pending
+     * @return The message of the envelope
+     */
+    private Message taken(Envelope<?> envelope) {
+        Envelope<?> previous = current;
+        if (previous != null && previous.isPending()) {
+            Event<?> event = (Event<?>)previous.getMessage();
+            deferred.put(event, previous);
+            // It may have been completed while we were moving it aside
+            if (!previous.isPending()) {
+                deferred.remove(event);
+            }
+        }
+
+        current = envelope;
+        handling = true;
+        return envelope.getMessage();
+    }
+
+    private void finishHandling() {
+        if (handling) {
+            handling = false;
+            activity.handled();
+        }
+    }
+
+    /**
+     * @return Whether there are messages in the ring (or spilled)
+     */
+    boolean hasMessages() {
+        long sequence = taken.get();
+        return published.get(index(sequence)) == sequence || !spilled.isEmpty();
+    }
+
+    /**
+     * @return The amount of messages delivered through this channel which have not been handled yet,
+     * including the one which is being handled
+     */
+    int getPendingCount() {
+        long waiting = (claimed.get() & ~CLOSED) - taken.get();
+        return (int)Math.max(waiting, 0) + spilled.size() + (handling ? 1 : 0);
+    }
+
+    /**
+     * Sets the listener which is notified after every message put in the ring
+     * @param listener The listener, null to stop notifying
+     */
+    void setListener(Runnable listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Resolves the future of an event taken from this channel
+     * @param e The event
+     * @param result The result of the event
+     * @param <T> The result type of the event
+     * @return Whether the event was taken from this channel (and was therefore resolved)
+     */
+    @SuppressWarnings("unchecked")
+    <T> boolean complete(Event<T> e, T result) {
+        Envelope<T> envelope = (Envelope<T>)current;
+        if (envelope == null || envelope.getMessage() != e) {
+            envelope = (Envelope<T>)deferred.get(e);
+            if (envelope == null) {
+                return false;
+            }
+        }
+
+        envelope.getFuture().resolve(result);
+        if (!deferred.isEmpty()) {
+            deferred.remove(e);
+        }
+        return true;
+    }
+
+    /**
+     * Closes the channel, no message can be put into it anymore.
+     * The futures of all the events left in the ring fail with a {@link CancellationException},
+     * as in {@link SubscriberChannel#close()}.
+     */
+    void close() {
+        long end = claimed.getAndUpdate(sequence -> sequence | CLOSED) & ~CLOSED;
+        finishHandling();
+
+        // Every sequence number up to the end has been claimed, and its sender is about to publish it
+        for (long sequence = taken.get(); sequence < end; sequence++) {
+            int index = index(sequence);
+            while (published.get(index) != sequence) {
+                Thread.yield();
+            }
+            Envelope<?> envelope = removed(sequence, index);
+            if (envelope.getFuture() != null) {
+                envelope.getFuture().fail(new CancellationException("The subscriber has unregistered"));
+            }
+            activity.handled();
+        }
+
+        // Polling (rather than clearing) makes sure every spilled envelope is either handled here
+        // or taken back by a sender which raced with the closing
+        while (spilled.poll() != null) {
+            activity.handled();
+        }
+    }
+
+    private int index(long sequence) {
+        return (int)sequence & mask;
+    }
+}
@@ -0,0 +1,270 @@
+package bgu.spl.mics;
+
+import bgu.spl.mics.journal.Journals;
+import bgu.spl.mics.loggers.Level;
+import bgu.spl.mics.loggers.Loggers;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link MessageBroker} whose subscriber queues are rings of preallocated slots (see {@link RingBufferChannel}),
+ * instead of the linked queues of {@link MessageBrokerImpl}. Sending a message takes no lock and allocates no queue node,
+ * and the subscribers wait for messages with a configurable {@link WaitStrategy}.
+ * Choose it at startup with {@link MessageBrokerFactory#select(java.util.function.Supplier)}.
+ * <p>
+ * Every ring has the same fixed size, and a sender waits while the ring of the receiver is full,
+ * so the rings should be large enough to hold a burst of messages.
+ * Events are routed like in {@link MessageBrokerImpl}, but they can't be stolen:
+ * only the subscriber takes messages from its ring. Coalescing broadcasts are delivered like any other.
+ */
+public class RingBufferMessageBroker implements PollingMessageBroker, QuiescentMessageBroker, RoutingMessageBroker {
+    /**
+     * The amount of slots in the ring of every subscriber, by default
+     */
+    public static final int DEFAULT_RING_SIZE = 1024;
+
+    private final int ringSize;
+    private final WaitStrategy waitStrategy;
+    private final ConcurrentMap<Subscriber, RingBufferChannel> subscriberChannels;
+
+    /**
+     * The channel whose messages the current thread handles, i.e. the channel it last took a message from
+     */
+    private final ThreadLocal<RingBufferChannel> handledChannel;
+    private final SubscriptionRegistry subscriptions;
+    private final ConcurrentMap<Class<? extends Message>, RoutingPolicy<?>> routingPolicies;
+    private final RoutingPolicy<Event<?>> defaultRoutingPolicy;
+
+    /**
+     * Counts the messages delivered to all the subscribers until they're handled
+     */
+    private final MessageActivity activity;
+
+    /**
+     * Initializes a broker with rings of the default size, whose threads park while they wait
+     */
+    public RingBufferMessageBroker() {
+        this(DEFAULT_RING_SIZE, WaitStrategy.Park);
+    }
+
+    /**
+     * @param ringSize The amount of slots in the ring of every subscriber, rounded up to a power of 2
+     * @param waitStrategy How the subscribers wait for messages, and the senders for room in a full ring
+     */
+    public RingBufferMessageBroker(int ringSize, WaitStrategy waitStrategy) {
+        if (ringSize <= 0 || ringSize > 1 << 30) {
+            throw new IllegalArgumentException("ringSize must be positive and at most 2^30.");
+        }
+
+        this.ringSize = ringSize == 1 ? 1 : Integer.highestOneBit(ringSize - 1) << 1;
+        this.waitStrategy = waitStrategy != null ? waitStrategy : WaitStrategy.Park;
+        subscriberChannels = new ConcurrentHashMap<>();
+        handledChannel = new ThreadLocal<>();
+        subscriptions = new SubscriptionRegistry();
+        routingPolicies = new ConcurrentHashMap<>();
+        defaultRoutingPolicy = RoutingPolicies.byDefault();
+        activity = new MessageActivity();
+    }
+
+    @Override
+    public <T> void subscribeEvent(Class<? extends Event<T>> type, Subscriber s) {
+        subscribeMessage(type, s);
+    }
+
+    @Override
+    public void subscribeBroadcast(Class<? extends Broadcast> type, Subscriber s) {
+        subscribeMessage(type, s);
+    }
+
+    @Override
+    public <T> void complete(Event<T> e, T result) {
+        RingBufferChannel channel = handledChannel.get();
+        if (channel == null || !channel.complete(e, result)) {
+            completeFromSubscribers(e, result);
+        }
+        Loggers.DefaultLogger.appendLine(Level.Debug, "{} completed with: {}", e, result);
+        Journals.BrokerJournal.complete(e);
+    }
+
+    @Override
+    public void sendBroadcast(Broadcast b) throws InterruptedException {
+        Loggers.DefaultLogger.appendLine(Level.Debug, "{} sending {}", Thread.currentThread().getName(), b);
+        Journals.BrokerJournal.send(b);
+
+        Subscriber[] subscribers = subscriptions.getSubscribers(b.getClass());
+        if (subscribers.length == 0) {
+            Loggers.DefaultLogger.appendLine(Level.Warn, "No one is subbed to '{}", b.getClass().getName());
+            return;
+        }
+
+        // The whole fan-out is counted as delivered at once, see MessageBrokerImpl
+        Envelope<Void> envelope = Envelope.of(b);
+        activity.delivered(subscribers.length);
+        int undelivered = 0;
+        for (Subscriber subscriber : subscribers) {
+            Loggers.DefaultLogger.appendLine(Level.Debug, "{} received {}", subscriber.getName(), b);
+            Journals.BrokerJournal.assign(subscriber, b);
+            RingBufferChannel channel = subscriberChannels.get(subscriber);
+            if (channel == null || !channel.putCounted(envelope)) {
+                ++undelivered;
+            }
+        }
+        if (undelivered > 0) {
+            activity.handled(undelivered);
+        }
+    }
+
+    @Override
+    public <T> Future<T> sendEvent(Event<T> e) throws InterruptedException {
+        Loggers.DefaultLogger.appendLine(Level.Debug, "{} sending {}", Thread.currentThread().getName(), e);
+        Journals.BrokerJournal.send(e);
+
+        Subscriber[] subscribers = subscriptions.getSubscribers(e.getClass());
+        RoutingPolicy<Event<?>> policy = getRoutingPolicy(e.getClass());
+        Envelope<T> envelope = Envelope.of(e);
+        // A picked subscriber may have unregistered after the snapshot was taken, route again with a newer one
+        for (int i = subscribers.length; i > 0 && subscribers.length > 0; i--) {
+            Subscriber subscriber = policy.route(e, subscribers);
+            Loggers.DefaultLogger.appendLine(Level.Debug, "{} assigned {}", subscriber.getName(), e);
+            Journals.BrokerJournal.assign(subscriber, e);
+            RingBufferChannel channel = subscriberChannels.get(subscriber);
+            if (channel != null && channel.put(envelope)) {
+                return envelope.getFuture();
+            }
+            subscribers = subscriptions.getSubscribers(e.getClass());
+        }
+
+        Loggers.DefaultLogger.appendLine(Level.Warn, "No one is subbed to '{}", e.getClass().getName());
+        return null;
+    }
+
+    @Override
+    public void register(Subscriber s) {
+        subscriberChannels.computeIfAbsent(s, subscriber -> new RingBufferChannel(activity, ringSize, waitStrategy));
+        Loggers.DefaultLogger.appendLine(Level.Info, "{} registered", s.getName());
+        Journals.BrokerJournal.register(s);
+    }
+
+    @Override
+    public void unregister(Subscriber s) {
+        Loggers.DefaultLogger.appendLine(Level.Info, "{} unregistering", Thread.currentThread().getName());
+        Journals.BrokerJournal.unregister(s);
+        // Stop publishing the subscriber first, so new messages won't be sent to it
+        subscriptions.unsubscribe(s);
+        RingBufferChannel channel = subscriberChannels.remove(s);
+        if (channel != null) {
+            channel.close();
+        }
+        Loggers.DefaultLogger.appendLine(Level.Info, "{} unregistered", s.getName());
+    }
+
+    @Override
+    public Message awaitMessage(Subscriber s) throws InterruptedException {
+        RingBufferChannel channel = getRegisteredChannel(s);
+        handledChannel.set(channel);
+        return channel.take();
+    }
+
+    @Override
+    public Message pollMessage(Subscriber s) {
+        RingBufferChannel channel = getRegisteredChannel(s);
+        handledChannel.set(channel);
+        return channel.poll();
+    }
+
+    @Override
+    public boolean hasMessages(Subscriber s) {
+        RingBufferChannel channel = subscriberChannels.get(s);
+        return channel != null && channel.hasMessages();
+    }
+
+    @Override
+    public boolean hasQueuedMessages(Subscriber s) {
+        // The ring doesn't move messages aside, any thread may look at it
+        return hasMessages(s);
+    }
+
+    @Override
+    public void setMessageListener(Subscriber s, Runnable listener) {
+        getRegisteredChannel(s).setListener(listener);
+    }
+
+    @Override
+    public <E extends Event<?>> void setRoutingPolicy(Class<E> type, RoutingPolicy<? super E> policy) {
+        if (policy == null) {
+            routingPolicies.remove(type);
+        }
+        else {
+            routingPolicies.put(type, policy);
+        }
+    }
+
+    @Override
+    public int getPendingCount(Subscriber s) {
+        RingBufferChannel channel = subscriberChannels.get(s);
+        return channel != null ? channel.getPendingCount() : Integer.MAX_VALUE;
+    }
+
+    /**
+     * Work stealing is not supported, only the subscriber takes messages from its ring
+     * @throws UnsupportedOperationException If asked to enable stealing
+     */
+    @Override
+    public void setWorkStealing(Class<? extends Event<?>> type, boolean enabled) {
+        if (enabled) {
+            throw new UnsupportedOperationException("Events can't be stolen from a ring buffer.");
+        }
+    }
+
+    @Override
+    public boolean awaitQuiescence(long timeout, TimeUnit unit) throws InterruptedException {
+        return activity.awaitQuiescence(timeout, unit);
+    }
+
+    /**
+     * @return The amount of slots in the ring of every subscriber
+     */
+    public int getRingSize() {
+        return ringSize;
+    }
+
+    private RingBufferChannel getRegisteredChannel(Subscriber s) {
+        RingBufferChannel channel = subscriberChannels.get(s);
+        if (channel == null) {
+            throw new IllegalStateException(s.getName() + " is not registered.");
+        }
+
+        return channel;
+    }
+
+    private void subscribeMessage(Class<? extends Message> type, Subscriber s) {
+        subscriptions.subscribe(type, s);
+        Loggers.DefaultLogger.appendLine(Level.Info, "{} subscribed to {}", s.getName(), type.getSimpleName());
+    }
+
+    @SuppressWarnings("unchecked")
+    private RoutingPolicy<Event<?>> getRoutingPolicy(Class<? extends Message> type) {
+        // Only ever set for the events of the type, see setRoutingPolicy
+        RoutingPolicy<Event<?>> policy = (RoutingPolicy<Event<?>>)routingPolicies.get(type);
+        return policy != null ? policy : defaultRoutingPolicy;
+    }
+
+    /**
+     * Completes an event which was not taken by the channel the current thread handles,
+     * i.e. it's completed from another thread than the one handling the subscriber which took it,
+     * as subscribers complete their events from their callbacks.
+     * Only the channels of the subscribers of the event's type are looked at.
+     */
+    private <T> void completeFromSubscribers(Event<T> e, T result) {
+        for (Subscriber subscriber : subscriptions.getSubscribers(e.getClass())) {
+            RingBufferChannel channel = subscriberChannels.get(subscriber);
+            if (channel != null && channel.complete(e, result)) {
+                return;
+            }
+        }
+
+        Loggers.DefaultLogger.appendLine(Level.Warn, "No one has taken {}", e);
+    }
+}
@@ -0,0 +1,48 @@
+package bgu.spl.mics;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Picks the subscriber which should handle an event in a round-robin fashion.
+ * Every message type has an atomic cursor, each pick takes a ticket from it and
+ * the ticket (modulo the number of subscribers) selects a subscriber from the snapshot.
+ * <p>
+ * Fairness: while the subscribers snapshot of a type doesn't change,
+ * any {@code n} consecutive tickets select each of the {@code n} subscribers exactly once,
+ * so no subscriber is ever picked more than once over any other.
+ * Picking does not take any lock, and the caller enqueues the event after the pick,
+ * so senders of the same type are never serialized behind each other.
+ */
+class RoundRobinDispatcher {
+    private final ConcurrentMap<Class<? extends Message>, AtomicInteger> cursors;
+
+    /**
+     * Initializes a dispatcher with no cursors
+     */
+    RoundRobinDispatcher() {
+        cursors = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Picks the next subscriber of the message type
+     * @param type The message type
+     * @param subscribers A snapshot of the subscribers of {@code type}, must not be empty
+     * @return The picked subscriber
+     */
+    Subscriber next(Class<? extends Message> type, Subscriber[] subscribers) {
+        // floorMod keeps the index valid when the cursor overflows
+        int ticket = getCursor(type).getAndIncrement();
+        return subscribers[Math.floorMod(ticket, subscribers.length)];
+    }
+
+    private AtomicInteger getCursor(Class<? extends Message> type) {
+        AtomicInteger cursor = cursors.get(type);
+        if (cursor == null) {
+            cursor = cursors.computeIfAbsent(type, t -> new AtomicInteger());
+        }
+
+        return cursor;
+    }
+}
@@ -0,0 +1,37 @@
+package bgu.spl.mics;
+
+/**
+ * A {@link MessageBroker} whose choice of the subscriber which receives an event can be changed per event type.
+ * Event types which are not given a policy are routed by their key if they're {@link KeyedEvent}s,
+ * and in a Round-Robin fashion otherwise.
+ */
+public interface RoutingMessageBroker extends MessageBroker {
+    /**
+     * Sets the policy which routes the events of the type.
+     * Should be set before events of the type are sent, events which are already in queues are not re-routed.
+     * @param type The event type, the policy applies to this exact class
+     * @param policy The policy, null to restore the default one
+     * @param <E> The event type
+     */
+    <E extends Event<?>> void setRoutingPolicy(Class<E> type, RoutingPolicy<? super E> policy);
+
+    /**
+     * Tells how loaded a subscriber is, for load-aware routing.
+     * The count may be stale by the time it's used, it's a hint.
+     * @param s The subscriber
+     * @return The amount of messages delivered to the subscriber which it hasn't finished handling
+     * (including the one it's handling), {@link Integer#MAX_VALUE} if it's not registered
+     */
+    int getPendingCount(Subscriber s);
+
+    /**
+     * Sets whether events of the type may be stolen: a subscriber of the type which has nothing to do
+     * takes a queued event of the type away from another subscriber which is busy handling a message
+     * (e.g. blocked waiting for agents), so the event doesn't wait behind it.
+     * Subscribers running on a thread of their own look for events to steal
+     * while they wait for messages, subscribers running on a pool only when they run out of messages.
+     * @param type The event type, stealing applies to this exact class
+     * @param enabled Whether events of the type may be stolen
+     */
+    void setWorkStealing(Class<? extends Event<?>> type, boolean enabled);
+}
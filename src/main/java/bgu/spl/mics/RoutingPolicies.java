@@ -0,0 +1,143 @@
+package bgu.spl.mics;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.ToIntFunction;
+
+/**
+ * Creates the common {@link RoutingPolicy routing policies}
+ */
+public final class RoutingPolicies {
+    private RoutingPolicies() {
+    }
+
+    /**
+     * Creates a policy which hands the events to the subscribers in turns (see {@link RoundRobinDispatcher}).
+     * Every event type has its own turns, so the same policy can be set for several types.
+     * @param <E> The type of the routed events
+     * @return The policy
+     */
+    public static <E extends Event<?>> RoutingPolicy<E> roundRobin() {
+        RoundRobinDispatcher dispatcher = new RoundRobinDispatcher();
+        return (event, subscribers) -> dispatcher.next(event.getClass(), subscribers);
+    }
+
+    /**
+     * Creates a policy which sends all the events with the same key to the same subscriber,
+     * so a subscriber can keep the state of its keys without sharing it (e.g. a shard of the inventory).
+     * <p>
+     * The key is mapped to the shard {@code floorMod(key, subscribers)}, and the event goes to the subscriber
+     * which owns that shard (see {@link Subscriber#setShard(int)}).
+     * If no subscriber owns it (the subscribers don't own shards, or the owner has unregistered),
+     * the shard is used as an index into the subscribers instead,
+     * which keeps the affinity for as long as the subscribers don't change.
+     * Since the shards follow the amount of subscribers, nearly every key moves once a subscriber unregisters,
+     * use {@link #keyAffinity(ToIntFunction, int)} when the amount of shards is known.
+     * @param keyOf Extracts the key of an event
+     * @param <E> The type of the routed events
+     * @return The policy
+     */
+    public static <E extends Event<?>> RoutingPolicy<E> keyAffinity(ToIntFunction<? super E> keyOf) {
+        return (event, subscribers) -> route(Math.floorMod(keyOf.applyAsInt(event), subscribers.length), subscribers);
+    }
+
+    /**
+     * Creates a policy which sends all the events with the same key to the same subscriber,
+     * like {@link #keyAffinity(ToIntFunction)}, over a fixed amount of shards.
+     * <p>
+     * The key is mapped to the shard {@code floorMod(key, shards)}, and the event goes to the subscriber
+     * which owns that shard. Only if the owner has unregistered (or no subscriber owns shards)
+     * the event goes to the subscriber at {@code floorMod(shard, subscribers)} instead,
+     * so the keys of the other shards stay with their owners.
+     * @param keyOf Extracts the key of an event
+     * @param shards The amount of shards
+     * @param <E> The type of the routed events
+     * @return The policy
+     */
+    public static <E extends Event<?>> RoutingPolicy<E> keyAffinity(ToIntFunction<? super E> keyOf, int shards) {
+        if (shards <= 0) {
+            throw new IllegalArgumentException("shards must be positive.");
+        }
+
+        return (event, subscribers) -> route(Math.floorMod(keyOf.applyAsInt(event), shards), subscribers);
+    }
+
+    /**
+     * Creates a policy which hands each event to the least loaded subscriber, the one with the fewest messages
+     * it hasn't finished handling (see {@link RoutingMessageBroker#getPendingCount(Subscriber)}).
+     * Unlike Round-Robin, a subscriber which is stuck on a long message stops receiving events
+     * until the others are as loaded as it is.
+     * Looks at every subscriber, ties are broken starting from a random one so senders don't all pile on the first.
+     * @param broker The broker the events are sent through
+     * @param <E> The type of the routed events
+     * @return The policy
+     */
+    public static <E extends Event<?>> RoutingPolicy<E> leastPending(RoutingMessageBroker broker) {
+        return (event, subscribers) -> {
+            int start = ThreadLocalRandom.current().nextInt(subscribers.length);
+            Subscriber least = subscribers[start];
+            int leastPending = broker.getPendingCount(least);
+            for (int i = 1; i < subscribers.length && leastPending > 0; i++) {
+                Subscriber subscriber = subscribers[(start + i) % subscribers.length];
+                int pending = broker.getPendingCount(subscriber);
+                if (pending < leastPending) {
+                    least = subscriber;
+                    leastPending = pending;
+                }
+            }
+
+            return least;
+        };
+    }
+
+    /**
+     * Creates a policy which picks two subscribers at random and hands the event to the less loaded of them
+     * (the "power of two choices").
+     * It only looks at two subscribers, however many there are, and still avoids the overloaded ones
+     * nearly as well as {@link #leastPending(RoutingMessageBroker)}.
+     * @param broker The broker the events are sent through
+     * @param <E> The type of the routed events
+     * @return The policy
+     */
+    public static <E extends Event<?>> RoutingPolicy<E> twoChoices(RoutingMessageBroker broker) {
+        return (event, subscribers) -> {
+            if (subscribers.length == 1) {
+                return subscribers[0];
+            }
+
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            int first = random.nextInt(subscribers.length);
+            // Any other subscriber, so the two choices are distinct
+            int second = (first + 1 + random.nextInt(subscribers.length - 1)) % subscribers.length;
+            return broker.getPendingCount(subscribers[second]) < broker.getPendingCount(subscribers[first])
+                ? subscribers[second]
+                : subscribers[first];
+        };
+    }
+
+    /**
+     * Creates the policy of event types which have not been given one:
+     * {@link KeyedEvent}s are routed by their key, and any other event in a Round-Robin fashion.
+     * @return The policy
+     */
+    static RoutingPolicy<Event<?>> byDefault() {
+        RoutingPolicy<KeyedEvent<?>> keyed = keyAffinity(KeyedEvent::getRoutingKey);
+        RoutingPolicy<Event<?>> roundRobin = roundRobin();
+        return (event, subscribers) -> event instanceof KeyedEvent
+            ? keyed.route((KeyedEvent<?>)event, subscribers)
+            : roundRobin.route(event, subscribers);
+    }
+
+    /**
+     * @return The subscriber which owns the shard,
+     * or the one at {@code floorMod(shard, subscribers)} if none of them owns it
+     */
+    private static Subscriber route(int shard, Subscriber[] subscribers) {
+        for (Subscriber subscriber : subscribers) {
+            if (subscriber.getShard() == shard) {
+                return subscriber;
+            }
+        }
+
+        return subscribers[Math.floorMod(shard, subscribers.length)];
+    }
+}
@@ -0,0 +1,23 @@
+package bgu.spl.mics;
+
+/**
+ * Decides which subscriber receives a sent event, out of the subscribers of its type.
+ * A policy is set for an event type with {@link RoutingMessageBroker#setRoutingPolicy(Class, RoutingPolicy)},
+ * the common policies are created by {@link RoutingPolicies}.
+ * <p>
+ * Routing is on the send path, so a policy must not block and should not take any lock.
+ * It may be asked again for the same event, with a newer snapshot, if the subscriber it picked has unregistered
+ * before the event was delivered.
+ * @param <E> The type of the routed events
+ */
+@FunctionalInterface
+public interface RoutingPolicy<E extends Event<?>> {
+    /**
+     * Picks the subscriber which receives the event
+     * @param event The sent event
+     * @param subscribers A snapshot of the subscribers of the event's type, never empty.
+     *                    The policy must not modify it.
+     * @return The picked subscriber, one of {@code subscribers}
+     */
+    Subscriber route(E event, Subscriber[] subscribers);
+}
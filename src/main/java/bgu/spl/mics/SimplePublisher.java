@@ -1,5 +1,7 @@
 package bgu.spl.mics;
 
+import java.util.concurrent.TimeUnit;
+
 /**
  * The SimplePublisher is a class that any publisher in the system
  * stores. The SimplePublisher class is responsible to send
@@ -7,6 +9,7 @@ package bgu.spl.mics;
  * <p>
  *
  * Only private fields and methods may be added to this class.
+ * The exception is {@link #awaitQuiescence(long, TimeUnit)}, which the time service calls in virtual time mode.
  * <p>
  */
 public final class SimplePublisher {
@@ -41,4 +44,21 @@ public final class SimplePublisher {
     public final void sendBroadcast(Broadcast b) throws InterruptedException {
         messageBroker.sendBroadcast(b);
     }
+
+    /**
+     * Waits until every message sent so far has been handled by the subscribers, or until the time elapses.
+     * If the MessageBroker can't tell when its messages were handled, waits for the whole time.
+     * <p>
+     * @param timeout The maximal time to wait
+     * @param unit The unit of {@code timeout}
+     * @return Whether all the messages were handled, false if the time elapsed first
+     */
+    public final boolean awaitQuiescence(long timeout, TimeUnit unit) throws InterruptedException {
+        if (messageBroker instanceof QuiescentMessageBroker) {
+            return ((QuiescentMessageBroker)messageBroker).awaitQuiescence(timeout, unit);
+        }
+
+        unit.sleep(timeout);
+        return false;
+    }
 }
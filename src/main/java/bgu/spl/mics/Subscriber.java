@@ -1,9 +1,12 @@
 package bgu.spl.mics;
 
+import bgu.spl.mics.loggers.Level;
 import bgu.spl.mics.loggers.Loggers;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * The Subscriber is an abstract class that any subscriber in the system
@@ -18,10 +21,32 @@ import java.util.Map;
  * type of the message is related to.
  * 
  * Only private fields and methods may be added to this class.
+ * The exceptions are the members which configure how the subscriber is run and routed to:
+ * {@link #NO_SHARD}, {@link #getShard()} and {@link #setShard(int)} for keyed routing,
+ * {@link #setQueueBounds(int, OverflowPolicy)} with {@link #getQueueCapacity()} and {@link #getOverflowPolicy()}
+ * for bounded queues, and {@link #runOn(Executor, Runnable)} for running on a shared pool.
  * <p>
  */
 public abstract class Subscriber extends RunnableSubPub {
-    private boolean terminated = false;
+    /**
+     * The maximal amount of messages handled in a single drain, when running without a dedicated thread,
+     * so a busy subscriber doesn't hold a pool thread for too long
+     */
+    private static final int MAX_DRAIN_BATCH = 32;
+
+    /**
+     * The shard of a subscriber which doesn't own one
+     */
+    public static final int NO_SHARD = -1;
+
+    private volatile boolean terminated = false;
+    private volatile int shard = NO_SHARD;
+
+    /**
+     * The bounds of the message queue chosen by this subscriber, 0 and null for the broker's default
+     */
+    private int queueCapacity = 0;
+    private OverflowPolicy overflowPolicy = null;
     private MessageBroker messageBroker;
     private Map<Class<? extends Message>, Callback<? extends Message>> messageCallbacks;
 
@@ -30,6 +55,13 @@ public abstract class Subscriber extends RunnableSubPub {
      */
     private Thread hostThread;
 
+    /**
+     * Whether a drain of the message queue is scheduled (or running), when running without a dedicated thread
+     */
+    private final AtomicBoolean drainScheduled;
+    private Executor drainExecutor;
+    private Runnable onTermination;
+
     /**
      * @param name the Subscriber name (used mainly for debugging purposes -
      *             does not have to be unique)
@@ -38,6 +70,7 @@ public abstract class Subscriber extends RunnableSubPub {
         super(name);
         messageBroker = MessageBrokerImpl.getInstance();
         messageCallbacks = new HashMap<>();
+        drainScheduled = new AtomicBoolean(false);
     }
 
     /**
@@ -109,6 +142,55 @@ public abstract class Subscriber extends RunnableSubPub {
         messageBroker.complete(e, result);
     }
 
+    /**
+     * Makes this subscriber the owner of a shard of the events it subscribes to which are routed by a key
+     * (see {@link RoutingPolicies#keyAffinity(java.util.function.ToIntFunction)}),
+     * i.e. it receives the events whose key maps to that shard.
+     * The subscribers of a keyed event should own the shards 0 to (the amount of shards - 1).
+     * Should be called before subscribing.
+     * @param shard The shard
+     */
+    protected final void setShard(int shard) {
+        this.shard = shard;
+    }
+
+    /**
+     * @return The shard this subscriber owns, {@link #NO_SHARD} if it doesn't own any
+     */
+    public final int getShard() {
+        return shard;
+    }
+
+    /**
+     * Bounds the message queue of this subscriber, instead of the broker's default bounds
+     * (see {@link BoundedMessageBroker}).
+     * Must be called before the subscriber runs (e.g. in the constructor), since the queue is created on registering.
+     * @param capacity The maximal amount of messages in the queue
+     * @param policy What to do with a message sent while the queue is full
+     */
+    protected final void setQueueBounds(int capacity, OverflowPolicy policy) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive.");
+        }
+
+        queueCapacity = capacity;
+        overflowPolicy = policy != null ? policy : OverflowPolicy.Block;
+    }
+
+    /**
+     * @return The capacity of the message queue chosen by this subscriber, 0 if it didn't choose any
+     */
+    final int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    /**
+     * @return The overflow policy of the message queue chosen by this subscriber, null if it didn't choose any
+     */
+    final OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
     /**
      * Signals the event loop that it must terminate after handling the current
      * message.
@@ -137,15 +219,82 @@ public abstract class Subscriber extends RunnableSubPub {
                 }
             }
         } catch (InterruptedException e) {
-            Loggers.DefaultLogger.appendLine(getName() + " interrupted");
+            Loggers.DefaultLogger.appendLine(Level.Info, "{} interrupted", getName());
             terminate();
         }
 
-        messageBroker.unregister(this);
-        Loggers.MnMPLogger.appendLine(getName() + " terminating...");
+        finish();
+    }
+
+    /**
+     * Runs the subscriber without dedicating a thread to it.
+     * Instead of blocking on its message queue, the subscriber drains it on the executor
+     * whenever messages arrive, so many subscribers can share a small pool of threads.
+     * The message broker must be a {@link PollingMessageBroker}.
+     * @param executor The executor to initialize the subscriber and handle its messages on
+     * @param onTermination Called once the subscriber has terminated
+     */
+    final void runOn(Executor executor, Runnable onTermination) {
+        if (!(messageBroker instanceof PollingMessageBroker)) {
+            throw new IllegalStateException("The message broker can't run subscribers without a thread.");
+        }
+
+        PollingMessageBroker broker = (PollingMessageBroker)messageBroker;
+        this.drainExecutor = executor;
+        this.onTermination = onTermination;
+
+        // The initialization counts as the first drain, so messages which arrive meanwhile wait for it
+        drainScheduled.set(true);
+        executor.execute(() -> {
+            broker.register(this);
+            broker.setMessageListener(this, this::scheduleDrain);
+            initialize();
+            drain();
+        });
+    }
+
+    private void scheduleDrain() {
+        if (drainScheduled.compareAndSet(false, true)) {
+            drainExecutor.execute(this::drain);
+        }
+    }
+
+    private void drain() {
+        PollingMessageBroker broker = (PollingMessageBroker)messageBroker;
+        try {
+            for (int i = 0; i < MAX_DRAIN_BATCH && !shouldTerminate(); i++) {
+                Message message = broker.pollMessage(this);
+                if (message == null) {
+                    break;
+                }
+                processMessage(message);
+            }
+        } catch (InterruptedException e) {
+            Loggers.DefaultLogger.appendLine(Level.Info, "{} interrupted", getName());
+            terminate();
+        }
+
+        if (shouldTerminate()) {
+            finish();
+            onTermination.run();
+            return;
+        }
+
+        // Still marked as scheduled, so no other drain takes the messages moved aside from the queue meanwhile
+        if (broker.hasMessages(this)) {
+            // Stopped at the batch limit, the rest is handled by the next drain, after the other scheduled ones
+            drainExecutor.execute(this::drain);
+            return;
+        }
+
+        drainScheduled.set(false);
+        // A message may have arrived after the last poll, while the drain was still marked as scheduled.
+        // Another drain may have started since, which owns the messages moved aside, so only the queue is looked at
+        if (broker.hasQueuedMessages(this)) {
+            scheduleDrain();
+        }
     }
 
-    @SuppressWarnings({"rawtypes", "unchecked"})
     private boolean awaitAndProcessMessage() throws InterruptedException {
         Message message = messageBroker.awaitMessage(this);
 
@@ -155,15 +304,25 @@ public abstract class Subscriber extends RunnableSubPub {
             return false;
         }
 
+        processMessage(message);
+        return true;
+    }
+
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private void processMessage(Message message) throws InterruptedException {
         // !!! It should be type safe because we only add callbacks with their matching type
         // (hopefully no one actively 'tricks' the generic subscribe method) !!!
         Callback callback = messageCallbacks.get(message.getClass());
-        Loggers.DefaultLogger.appendLine(getName() + " handling " + message);
+        Loggers.DefaultLogger.appendLine(Level.Debug, "{} handling {}", getName(), message);
         callback.call(message);
-        return true;
+    }
+
+    private void finish() {
+        messageBroker.unregister(this);
+        Loggers.MnMPLogger.appendLine(Level.Info, "{} terminating...", getName());
     }
 
     private boolean shouldTerminate() {
-        return terminated || hostThread.isInterrupted();
+        return terminated || (hostThread != null && hostThread.isInterrupted());
     }
 }
@@ -0,0 +1,660 @@
+package bgu.spl.mics;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The message queue of a single subscriber, and the events it has taken but not completed yet.
+ * <p>
+ * Usually a subscriber completes an event while handling it, before taking the next message,
+ * so the taken event is kept in a single slot and completing it doesn't touch any map.
+ * Only an event which is still pending when the next message is taken is moved aside to the deferred map.
+ * <p>
+ * Taking a message moves up to a batch of messages out of the queue at once, so the subscriber takes the queue's lock
+ * (and is woken up) once per batch rather than once per message. The rest of the batch is taken without any lock.
+ * <p>
+ * A {@link CoalescingBroadcast} which supersedes one still waiting in the queue isn't queued,
+ * the waiting one is handed out as the newer one when it's taken.
+ * <p>
+ * The queue may be bounded: an event put while it's full is handled by the {@link OverflowPolicy}.
+ * Broadcasts never wait and are never rejected, since the publisher of a broadcast (e.g. the time ticks)
+ * may be what the subscriber is waiting for. They're let in beyond the capacity, unless a stale one can be dropped.
+ */
+class SubscriberChannel {
+    /**
+     * The maximal amount of messages moved out of the queue at once
+     */
+    static final int DEFAULT_BATCH_SIZE = 32;
+
+    private final BlockingQueue<Envelope<?>> queue;
+
+    /**
+     * Messages which were moved out of the queue together with the last one taken from it, in order.
+     * Only accessed by the subscriber.
+     */
+    private final ArrayDeque<Envelope<?>> batch;
+    private final int batchSize;
+
+    /**
+     * Whether taking a message moves a batch out of the queue. Only accessed by the subscriber.
+     */
+    private boolean batching;
+    private final int capacity;
+    private final OverflowPolicy overflowPolicy;
+
+    /**
+     * The room left in the queue, null if it's unbounded.
+     * Every queued message holds a permit, except for broadcasts which were let in while the queue was full.
+     */
+    private final Semaphore room;
+
+    /**
+     * The amount of queued broadcasts which were let in beyond the capacity, they don't hold a permit
+     */
+    private final AtomicInteger excess;
+
+    /**
+     * The largest amount of messages the queue has held at once
+     */
+    private final AtomicInteger peak;
+
+    /**
+     * The messages which were rejected or dropped because the queue was full
+     */
+    private final LongAdder overflows;
+
+    /**
+     * The latest envelope of every {@link CoalescingBroadcast} type which is waiting in the queue (or in the batch).
+     * The envelope in the queue stands for the latest one, which replaces it when it's taken.
+     */
+    private final ConcurrentMap<Class<? extends Message>, Envelope<?>> coalesced;
+
+    /**
+     * The envelope of the last message taken from the queue
+     */
+    private volatile Envelope<?> current;
+
+    /**
+     * Events which were taken from the queue but were still pending when the next message was taken
+     */
+    private final ConcurrentMap<Event<?>, Envelope<?>> deferred;
+
+    private volatile boolean closed;
+
+    /**
+     * Notified after a message is put in the queue, used by subscribers which don't block on their queue
+     */
+    private volatile Runnable listener;
+
+    /**
+     * Counts the messages delivered through this channel until they're handled
+     */
+    private final MessageActivity activity;
+
+    /**
+     * The messages delivered through this channel which have not been handled yet,
+     * including the one the subscriber is handling. Used by load-aware routing.
+     */
+    private final AtomicInteger pending;
+
+    /**
+     * Whether the subscriber is handling the last message it has taken.
+     * Only changed by the subscriber (taking and closing), other subscribers read it when looking for work to steal.
+     */
+    private volatile boolean handling;
+
+    /**
+     * The thread of the subscriber while it waits in {@link #awaitSignal()}
+     */
+    private volatile Thread waiter;
+
+    /**
+     * Initializes an open channel with an empty queue, whose activity isn't tracked by anyone else
+     */
+    SubscriberChannel() {
+        this(new MessageActivity());
+    }
+
+    /**
+     * Initializes an open channel with an empty unbounded queue
+     * @param activity Counts the messages delivered through this channel until they're handled
+     */
+    SubscriberChannel(MessageActivity activity) {
+        this(activity, Integer.MAX_VALUE, OverflowPolicy.Block);
+    }
+
+    /**
+     * Initializes an open channel with an empty queue
+     * @param activity Counts the messages delivered through this channel until they're handled
+     * @param capacity The maximal amount of messages in the queue, {@link Integer#MAX_VALUE} for unbounded
+     * @param overflowPolicy What to do with a message put while the queue is full
+     */
+    SubscriberChannel(MessageActivity activity, int capacity, OverflowPolicy overflowPolicy) {
+        this(activity, capacity, overflowPolicy, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Initializes an open channel with an empty queue
+     * @param activity Counts the messages delivered through this channel until they're handled
+     * @param capacity The maximal amount of messages in the queue, {@link Integer#MAX_VALUE} for unbounded
+     * @param overflowPolicy What to do with a message put while the queue is full
+     * @param batchSize The maximal amount of messages moved out of the queue at once, 1 to take them one by one
+     */
+    SubscriberChannel(MessageActivity activity, int capacity, OverflowPolicy overflowPolicy, int batchSize) {
+        queue = new LinkedBlockingQueue<>();
+        batch = new ArrayDeque<>(batchSize);
+        this.batchSize = batchSize;
+        batching = true;
+        coalesced = new ConcurrentHashMap<>();
+        this.capacity = capacity;
+        this.overflowPolicy = overflowPolicy;
+        room = capacity != Integer.MAX_VALUE ? new Semaphore(capacity) : null;
+        excess = new AtomicInteger();
+        peak = new AtomicInteger();
+        overflows = new LongAdder();
+        deferred = new ConcurrentHashMap<>();
+        closed = false;
+        this.activity = activity;
+        pending = new AtomicInteger();
+        handling = false;
+        waiter = null;
+    }
+
+    /**
+     * Adds the envelope to the queue. If the queue is full, the overflow policy decides whether to wait for room,
+     * make room by dropping a stale broadcast, or reject an event (its future then fails, see {@link OverflowPolicy#Fail}).
+     * @param envelope The envelope to add
+     * @return Whether the envelope was delivered (or rejected by the overflow policy),
+     * false if the channel has been closed and the envelope was taken back
+     */
+    boolean put(Envelope<?> envelope) throws InterruptedException {
+        return put(envelope, true);
+    }
+
+    /**
+     * Adds a broadcast envelope to the queue, as part of a fan-out whose deliveries the caller counts all at once
+     * in the {@link MessageActivity} (see {@link MessageActivity#delivered(int)}).
+     * @param envelope The envelope of the broadcast
+     * @return Whether the envelope was added to the queue. False if the channel has been closed,
+     * or the broadcast replaced one it supersedes which is still waiting in the queue.
+     * Either way the caller should count it as handled.
+     */
+    boolean putCounted(Envelope<Void> envelope) throws InterruptedException {
+        return put(envelope, false);
+    }
+
+    private boolean put(Envelope<?> envelope, boolean countActivity) throws InterruptedException {
+        if (closed) {
+            return false;
+        }
+        if (envelope.getMessage() instanceof CoalescingBroadcast && coalesced.put(envelope.getMessage().getClass(), envelope) != null) {
+            // The previous one is still waiting, and it will be handed out as this one.
+            // There isn't another message to handle, so nothing is counted
+            // (and a caller which has counted the delivery already is told to take it back).
+            return countActivity;
+        }
+
+        // Counted before it can be taken, so the count never drops below the messages which are still unhandled
+        pending.incrementAndGet();
+        if (countActivity) {
+            activity.delivered();
+        }
+        boolean enqueued;
+        try {
+            enqueued = enqueue(envelope);
+        } catch (InterruptedException e) {
+            // Interrupted while waiting for room, the envelope was never queued
+            pending.decrementAndGet();
+            if (countActivity) {
+                activity.handled();
+            }
+            throw e;
+        }
+        // Broadcasts are never rejected, so only events (which count their activity) get here
+        if (!enqueued) {
+            handled();
+            overflowed(envelope);
+            return true;
+        }
+        updatePeak();
+        // The channel may have been closed concurrently, after we've checked.
+        // Either the closing thread drained the envelope (and handled it), or we take it back.
+        if (closed) {
+            if (queue.remove(envelope)) {
+                freeRoom();
+                if (envelope.getMessage() instanceof CoalescingBroadcast) {
+                    coalesced.remove(envelope.getMessage().getClass(), envelope);
+                }
+                pending.decrementAndGet();
+                if (countActivity) {
+                    activity.handled();
+                }
+                return false;
+            }
+            return true;
+        }
+
+        signal();
+        Runnable listener = this.listener;
+        if (listener != null) {
+            listener.run();
+        }
+        return true;
+    }
+
+    /**
+     * @return How full the queue is, and has been
+     */
+    QueueOccupancy getOccupancy() {
+        // The batch is only accessed by the subscriber, so the waiting messages are counted from the pending ones
+        int waiting = Math.max(pending.get() - (handling ? 1 : 0), 0);
+        return new QueueOccupancy(waiting, peak.get(), capacity, overflows.sum());
+    }
+
+    /**
+     * Takes the next message from the queue, blocking until one is available.
+     * @return The next message
+     */
+    Message take() throws InterruptedException {
+        // Taking the next message means the subscriber is done with the previous one
+        finishHandling();
+        Envelope<?> envelope = batch.poll();
+        if (envelope == null) {
+            envelope = queue.take();
+            fillBatch();
+        }
+        return taken(removed(envelope));
+    }
+
+    /**
+     * Takes the next message from the queue if there is one.
+     * @return The next message, null if the queue is empty
+     */
+    Message poll() {
+        finishHandling();
+        Envelope<?> envelope = batch.poll();
+        if (envelope == null && (envelope = queue.poll()) != null) {
+            fillBatch();
+        }
+        return envelope != null ? taken(removed(envelope)) : null;
+    }
+
+    /**
+     * Takes the next message from the queue, waiting up to the timeout for one to be available.
+     * @param timeout The maximal time to wait
+     * @param unit The unit of {@code timeout}
+     * @return The next message, null if the time elapsed first
+     */
+    Message poll(long timeout, TimeUnit unit) throws InterruptedException {
+        finishHandling();
+        Envelope<?> envelope = batch.poll();
+        if (envelope == null && (envelope = queue.poll(timeout, unit)) != null) {
+            fillBatch();
+        }
+        return envelope != null ? taken(removed(envelope)) : null;
+    }
+
+    /**
+     * Waits until a message is put in the queue or {@link #signal()} is called, without taking a message.
+     * Returns at once if there are messages already, and may return spuriously.
+     * Only the subscriber may wait, it's used by subscribers which have something else to wait for besides their queue.
+     */
+    void awaitSignal() throws InterruptedException {
+        waiter = Thread.currentThread();
+        // Checked after the waiter is set, so a message put meanwhile either is seen here or signals
+        if (!hasMessages() && !closed) {
+            LockSupport.park(this);
+        }
+        waiter = null;
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+    }
+
+    /**
+     * Wakes the subscriber if it waits in {@link #awaitSignal()}
+     */
+    void signal() {
+        Thread waiter = this.waiter;
+        if (waiter != null) {
+            LockSupport.unpark(waiter);
+        }
+    }
+
+    /**
+     * Takes the oldest queued event of the type away from this channel, to be handled by another subscriber.
+     * Only steals while the subscriber is in the middle of handling a message,
+     * an idle subscriber will take its queued events by itself soon enough.
+     * Events which were already moved out of the queue in a batch can't be stolen.
+     * @param type The type of the event to steal
+     * @return The envelope of the stolen event, null if there's nothing to steal
+     */
+    Envelope<?> steal(Class<? extends Message> type) {
+        if (!handling) {
+            return null;
+        }
+
+        for (Envelope<?> envelope : queue) {
+            // Broadcasts are never stolen, every subscriber has to handle them.
+            // Removing fails if the subscriber (or another thief) has taken it meanwhile.
+            if (envelope.getFuture() != null && envelope.getMessage().getClass() == type && queue.remove(envelope)) {
+                freeRoom();
+                // It's still unhandled, so only this channel's count changes (see adopt)
+                pending.decrementAndGet();
+                return envelope;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Takes an envelope stolen from another channel as the next message, as if it was taken from the queue.
+     * The subscriber must be done with the previous message (i.e. it has just polled an empty queue).
+     * @param envelope The stolen envelope
+     * @return The message of the envelope
+     */
+    Message adopt(Envelope<?> envelope) {
+        pending.incrementAndGet();
+        return taken(envelope);
+    }
+
+    /**
+     * @return Whether there are messages in the queue (or left in the batch).
+     * Only the subscriber may ask, since the batch is only accessed by it.
+     */
+    boolean hasMessages() {
+        return !batch.isEmpty() || hasQueuedMessages();
+    }
+
+    /**
+     * @return Whether there are messages in the queue, without the ones left in the batch.
+     * Any thread may ask.
+     */
+    boolean hasQueuedMessages() {
+        return !queue.isEmpty();
+    }
+
+    /**
+     * @return The amount of messages delivered through this channel which have not been handled yet,
+     * including the one which is being handled
+     */
+    int getPendingCount() {
+        return pending.get();
+    }
+
+    /**
+     * Sets the listener which is notified after every message put in the queue
+     * @param listener The listener, null to stop notifying
+     */
+    void setListener(Runnable listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Makes the envelope the current one, moving the previous one aside if it's still pending
+     * @return The message of the envelope
+     */
+    private Message taken(Envelope<?> envelope) {
+        Envelope<?> previous = current;
+        if (previous != null && previous.isPending()) {
+            Event<?> event = (Event<?>)previous.getMessage();
+            deferred.put(event, previous);
+            // It may have been completed while we were moving it aside
+            if (!previous.isPending()) {
+                deferred.remove(event);
+            }
+        }
+
+        current = envelope;
+        handling = true;
+        return envelope.getMessage();
+    }
+
+    private void finishHandling() {
+        if (handling) {
+            handling = false;
+            handled();
+        }
+    }
+
+    /**
+     * Sets whether taking a message moves a batch of messages out of the queue.
+     * Batched events can't be stolen, so subscribers which take part in work stealing don't batch.
+     * @param batching Whether to batch
+     */
+    void setBatching(boolean batching) {
+        this.batching = batching;
+    }
+
+    /**
+     * Moves more messages out of the queue, after the first one of the batch was taken from it.
+     * They still hold their room in the queue until they're taken from the batch.
+     */
+    private void fillBatch() {
+        if (batching && batchSize > 1) {
+            queue.drainTo(batch, batchSize - 1);
+        }
+    }
+
+    /**
+     * Adds the envelope to the queue according to the overflow policy
+     * @return Whether the envelope was added, false if it was rejected
+     */
+    private boolean enqueue(Envelope<?> envelope) throws InterruptedException {
+        if (room != null) {
+            if (envelope.getFuture() == null) {
+                admitBroadcast(envelope);
+            }
+            else if (!admitEvent(envelope)) {
+                return false;
+            }
+        }
+
+        queue.add(envelope);
+        return true;
+    }
+
+    private boolean admitEvent(Envelope<?> envelope) throws InterruptedException {
+        switch (overflowPolicy) {
+            case Fail:
+                return room.tryAcquire();
+            case DropOldestBroadcast:
+                while (!room.tryAcquire()) {
+                    if (!dropStaleBroadcast(envelope)) {
+                        awaitRoom();
+                        break;
+                    }
+                }
+                return true;
+            case Block:
+            default:
+                awaitRoom();
+                return true;
+        }
+    }
+
+    private void admitBroadcast(Envelope<?> envelope) {
+        if (room.tryAcquire()) {
+            return;
+        }
+        if (overflowPolicy == OverflowPolicy.DropOldestBroadcast && dropStaleBroadcast(envelope) && room.tryAcquire()) {
+            return;
+        }
+
+        excess.incrementAndGet();
+    }
+
+    /**
+     * Waits for room in the queue. A managed block lets a pool running subscribers compensate for the blocked thread.
+     */
+    private void awaitRoom() throws InterruptedException {
+        ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+            @Override
+            public boolean block() throws InterruptedException {
+                room.acquire();
+                return true;
+            }
+
+            @Override
+            public boolean isReleasable() {
+                return false;
+            }
+        });
+    }
+
+    /**
+     * Frees the room held by a message which was removed from the queue
+     */
+    private void freeRoom() {
+        if (room == null) {
+            return;
+        }
+
+        int current;
+        do {
+            current = excess.get();
+            if (current == 0) {
+                room.release();
+                return;
+            }
+        } while (!excess.compareAndSet(current, current - 1));
+    }
+
+    /**
+     * Frees the room the envelope held in the queue, and replaces a coalescing broadcast with the latest one of its type
+     * @param envelope The envelope which was removed from the queue (or the batch), may be null
+     * @return The envelope to hand out, null if {@code envelope} is null
+     */
+    private Envelope<?> removed(Envelope<?> envelope) {
+        if (envelope == null) {
+            return null;
+        }
+
+        freeRoom();
+        if (envelope.getMessage() instanceof CoalescingBroadcast) {
+            Envelope<?> latest = coalesced.remove(envelope.getMessage().getClass());
+            if (latest != null) {
+                return latest;
+            }
+        }
+        return envelope;
+    }
+
+    /**
+     * Drops the oldest stale broadcast from the queue to make room.
+     * A broadcast is stale if a newer broadcast of the same type is queued after it, or is the one being put,
+     * e.g. a tick which was not handled before the next one. The last broadcast of a type is never dropped.
+     * @param incoming The envelope being put
+     * @return Whether a broadcast was dropped, false if the queue holds no stale ones
+     */
+    private boolean dropStaleBroadcast(Envelope<?> incoming) {
+        Envelope<?>[] queued = queue.toArray(new Envelope<?>[0]);
+        Map<Class<?>, Integer> newest = new HashMap<>();
+        for (int i = 0; i < queued.length; i++) {
+            if (queued[i].getFuture() == null) {
+                newest.put(queued[i].getMessage().getClass(), i);
+            }
+        }
+        Class<?> incomingType = incoming.getFuture() == null ? incoming.getMessage().getClass() : null;
+
+        for (int i = 0; i < queued.length; i++) {
+            Envelope<?> envelope = queued[i];
+            if (envelope.getFuture() != null) {
+                continue;
+            }
+
+            Class<?> type = envelope.getMessage().getClass();
+            if (type == incomingType || newest.get(type) > i) {
+                // Removing fails if the subscriber has taken it meanwhile, which makes room anyway
+                if (queue.remove(envelope)) {
+                    freeRoom();
+                    handled();
+                    overflowed(envelope);
+                }
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private void overflowed(Envelope<?> envelope) {
+        overflows.increment();
+        if (envelope.getFuture() != null) {
+            envelope.getFuture().fail(new RejectedExecutionException("The queue of the subscriber is full"));
+        }
+    }
+
+    private void updatePeak() {
+        int size = pending.get();
+        int current;
+        while (size > (current = peak.get()) && !peak.compareAndSet(current, size)) {
+            // Raced with another sender, retry with the updated peak
+        }
+    }
+
+    private void handled() {
+        pending.decrementAndGet();
+        activity.handled();
+    }
+
+    /**
+     * Resolves the future of an event taken from this channel
+     * @param e The event
+     * @param result The result of the event
+     * @param <T> The result type of the event
+     * @return Whether the event was taken from this channel (and was therefore resolved)
+     */
+    @SuppressWarnings("unchecked")
+    <T> boolean complete(Event<T> e, T result) {
+        Envelope<T> envelope = (Envelope<T>)current;
+        if (envelope == null || envelope.getMessage() != e) {
+            envelope = (Envelope<T>)deferred.get(e);
+            if (envelope == null) {
+                return false;
+            }
+        }
+
+        envelope.getFuture().resolve(result);
+        if (!deferred.isEmpty()) {
+            deferred.remove(e);
+        }
+        return true;
+    }
+
+    /**
+     * Closes the channel, no message can be put into it anymore.
+     * The futures of all the events left in the queue fail with a {@link CancellationException},
+     * like the futures of rejected events, so the senders can tell them apart from events which were handled.
+     */
+    void close() {
+        closed = true;
+        signal();
+        finishHandling();
+
+        // Polling (rather than iterating and clearing) makes sure every envelope is either handled here
+        // or taken back by a sender which raced with the closing
+        Envelope<?> envelope;
+        while ((envelope = batch.poll()) != null || (envelope = queue.poll()) != null) {
+            removed(envelope);
+            if (envelope.getFuture() != null) {
+                envelope.getFuture().fail(new CancellationException("The subscriber has unregistered"));
+            }
+            handled();
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package bgu.spl.mics;
+
+/**
+ * Runs the event loops of subscribers.
+ * Decouples the subscribers from the threads which run them, so the same subscribers
+ * can run on a thread each or share a pool of threads.
+ */
+public interface SubscriberExecutor {
+    /**
+     * Starts running the subscriber, i.e. registers and initializes it and handles its messages until it terminates
+     * @param s The subscriber
+     */
+    void execute(Subscriber s);
+
+    /**
+     * Waits until every subscriber which was executed has terminated
+     * @throws InterruptedException if interrupted while waiting
+     */
+    void awaitTermination() throws InterruptedException;
+
+    /**
+     * @return The names of the subscribers which haven't terminated yet
+     */
+    Iterable<String> getRunningNames();
+
+    /**
+     * Releases the resources of the executor once the subscribers have terminated
+     */
+    void shutdown();
+}
@@ -0,0 +1,96 @@
+package bgu.spl.mics;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Holds the subscribers of every message type.
+ * Each message type is mapped to an immutable snapshot (an array) of its subscribers.
+ * Subscribing and unsubscribing never change a published snapshot, they atomically swap it with a new one,
+ * so reading the subscribers of a type takes no lock and always sees a consistent view.
+ */
+class SubscriptionRegistry {
+    private static final Subscriber[] NO_SUBSCRIBERS = new Subscriber[0];
+
+    private final ConcurrentMap<Class<? extends Message>, Subscriber[]> subscribers;
+
+    /**
+     * Initializes an empty registry
+     */
+    SubscriptionRegistry() {
+        subscribers = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Retrieves the current snapshot of the subscribers of the message type.
+     * The returned array must not be modified.
+     * @param type The message type
+     * @return The subscribers of the message type, an empty array if no one is subscribed to it
+     */
+    Subscriber[] getSubscribers(Class<? extends Message> type) {
+        return subscribers.getOrDefault(type, NO_SUBSCRIBERS);
+    }
+
+    /**
+     * Subscribes {@code s} to the message type. Subscribing twice to the same type has no effect.
+     * @param type The message type
+     * @param s The subscriber
+     */
+    void subscribe(Class<? extends Message> type, Subscriber s) {
+        // compute is atomic per key, so concurrent writers to the same type cannot lose each other's updates
+        subscribers.compute(type, (t, snapshot) -> add(snapshot, s));
+    }
+
+    /**
+     * Unsubscribes {@code s} from every message type it is subscribed to.
+     * Message types which are left with no subscribers are removed.
+     * @param s The subscriber
+     */
+    void unsubscribe(Subscriber s) {
+        for (Class<? extends Message> type : subscribers.keySet()) {
+            subscribers.computeIfPresent(type, (t, snapshot) -> remove(snapshot, s));
+        }
+    }
+
+    private static Subscriber[] add(Subscriber[] snapshot, Subscriber s) {
+        if (snapshot == null) {
+            return new Subscriber[] { s };
+        }
+        if (indexOf(snapshot, s) >= 0) {
+            return snapshot;
+        }
+
+        Subscriber[] newSnapshot = Arrays.copyOf(snapshot, snapshot.length + 1);
+        newSnapshot[snapshot.length] = s;
+        return newSnapshot;
+    }
+
+    /**
+     * @return The snapshot without {@code s}, null if no subscribers are left (which removes the mapping)
+     */
+    private static Subscriber[] remove(Subscriber[] snapshot, Subscriber s) {
+        int i = indexOf(snapshot, s);
+        if (i < 0) {
+            return snapshot;
+        }
+        if (snapshot.length == 1) {
+            return null;
+        }
+
+        Subscriber[] newSnapshot = new Subscriber[snapshot.length - 1];
+        System.arraycopy(snapshot, 0, newSnapshot, 0, i);
+        System.arraycopy(snapshot, i + 1, newSnapshot, i, snapshot.length - i - 1);
+        return newSnapshot;
+    }
+
+    private static int indexOf(Subscriber[] snapshot, Subscriber s) {
+        for (int i = 0; i < snapshot.length; i++) {
+            if (snapshot[i] == s) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+}
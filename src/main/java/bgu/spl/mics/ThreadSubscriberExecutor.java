@@ -0,0 +1,84 @@
+package bgu.spl.mics;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Runs every subscriber on a thread of its own, which blocks while waiting for messages.
+ */
+public class ThreadSubscriberExecutor implements SubscriberExecutor {
+    private final ThreadFactory threadFactory;
+    private final ConcurrentLinkedQueue<Thread> threads;
+
+    /**
+     * Initializes an executor which runs each subscriber on a new platform thread
+     */
+    public ThreadSubscriberExecutor() {
+        this(Thread::new);
+    }
+
+    /**
+     * Initializes an executor which runs each subscriber on a thread created by the factory
+     * @param threadFactory The factory of the threads
+     */
+    public ThreadSubscriberExecutor(ThreadFactory threadFactory) {
+        this.threadFactory = threadFactory;
+        threads = new ConcurrentLinkedQueue<>();
+    }
+
+    /**
+     * Creates an executor which runs each subscriber on a new virtual thread.
+     * Virtual threads are cheap to block, so a thread per subscriber scales to many subscribers.
+     * They are only available on Java 21 and above, so they're looked up reflectively.
+     * @return The executor, null if the running JVM doesn't support virtual threads
+     */
+    public static ThreadSubscriberExecutor virtual() {
+        ThreadFactory factory = virtualThreadFactory();
+        return factory != null ? new ThreadSubscriberExecutor(factory) : null;
+    }
+
+    @Override
+    public void execute(Subscriber s) {
+        Thread thread = threadFactory.newThread(s);
+        thread.setName(s.getName());
+        threads.add(thread);
+        thread.start();
+    }
+
+    @Override
+    public void awaitTermination() throws InterruptedException {
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+
+    @Override
+    public Iterable<String> getRunningNames() {
+        List<String> names = new ArrayList<>();
+        for (Thread thread : threads) {
+            if (thread.isAlive()) {
+                names.add(thread.getName());
+            }
+        }
+
+        return names;
+    }
+
+    @Override
+    public void shutdown() {
+        // The threads end with their subscribers
+    }
+
+    private static ThreadFactory virtualThreadFactory() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Method factory = Class.forName("java.lang.Thread$Builder").getMethod("factory");
+            return (ThreadFactory)factory.invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+}
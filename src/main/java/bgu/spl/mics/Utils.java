@@ -1,6 +1,7 @@
 package bgu.spl.mics;
 
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Utility methods
@@ -29,4 +30,52 @@ public class Utils {
         sb.append("]");
         return sb.toString();
     }
+
+    /**
+     * Waits on the monitor, like {@link Object#wait()}. The calling thread must hold the monitor.
+     * When called from a thread of a {@link ForkJoinPool}, the pool is told that the thread is blocked,
+     * so it can compensate with another thread. That way subscribers which run on a bounded pool
+     * can't starve each other of threads by waiting for each other.
+     * @param monitor The monitor to wait on
+     */
+    public static void managedWait(Object monitor) throws InterruptedException {
+        ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+            private boolean waited = false;
+
+            @Override
+            public boolean block() throws InterruptedException {
+                monitor.wait();
+                waited = true;
+                return true;
+            }
+
+            @Override
+            public boolean isReleasable() {
+                return waited;
+            }
+        });
+    }
+
+    /**
+     * Sleeps like {@link Thread#sleep(long)}, telling a {@link ForkJoinPool} running the calling thread that it's blocked
+     * (see {@link #managedWait(Object)})
+     * @param millis The time to sleep in milliseconds
+     */
+    public static void managedSleep(long millis) throws InterruptedException {
+        ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+            private boolean slept = false;
+
+            @Override
+            public boolean block() throws InterruptedException {
+                Thread.sleep(millis);
+                slept = true;
+                return true;
+            }
+
+            @Override
+            public boolean isReleasable() {
+                return slept;
+            }
+        });
+    }
 }
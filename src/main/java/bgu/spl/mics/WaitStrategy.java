@@ -0,0 +1,25 @@
+package bgu.spl.mics;
+
+/**
+ * How a thread of the {@link RingBufferMessageBroker} waits, either a subscriber for its next message
+ * or a sender for room in a full ring.
+ * Spinning reacts the fastest but burns a CPU per waiting thread, so it only pays off
+ * when there are more cores than busy subscribers.
+ */
+public enum WaitStrategy {
+    /**
+     * Keeps checking in a tight loop
+     */
+    BusySpin,
+
+    /**
+     * Keeps checking, yielding the CPU to other threads in between
+     */
+    Yield,
+
+    /**
+     * Yields for a short while, then parks the thread until it's woken up by the sender of the next message
+     * (a waiting sender parks for a short while at a time instead). Frees the CPU the most, the default.
+     */
+    Park
+}
@@ -1,18 +1,42 @@
 package bgu.spl.mics.application;
 
+import bgu.spl.mics.PooledSubscriberExecutor;
+import bgu.spl.mics.BoundedMessageBroker;
+import bgu.spl.mics.MessageBroker;
+import bgu.spl.mics.MessageBrokerFactory;
+import bgu.spl.mics.MessageBrokerImpl;
+import bgu.spl.mics.OverflowPolicy;
+import bgu.spl.mics.Publisher;
+import bgu.spl.mics.RingBufferMessageBroker;
+import bgu.spl.mics.RoutingMessageBroker;
+import bgu.spl.mics.RoutingPolicies;
+import bgu.spl.mics.RoutingPolicy;
+import bgu.spl.mics.Subscriber;
+import bgu.spl.mics.SubscriberExecutor;
+import bgu.spl.mics.ThreadSubscriberExecutor;
 import bgu.spl.mics.Tuple;
+import bgu.spl.mics.WaitStrategy;
 import bgu.spl.mics.application.config.*;
+import bgu.spl.mics.application.messages.AgentsAvailableEvent;
+import bgu.spl.mics.application.messages.GadgetAvailableEvent;
+import bgu.spl.mics.application.messages.MissionReceivedEvent;
+import bgu.spl.mics.application.messages.ReturnGadgetEvent;
 import bgu.spl.mics.application.passiveObjects.*;
 import bgu.spl.mics.application.passiveObjects.Agent;
+import bgu.spl.mics.application.publishers.TickScheduler;
 import bgu.spl.mics.application.publishers.TimeService;
 import bgu.spl.mics.application.subscribers.Intelligence;
 import bgu.spl.mics.application.subscribers.M;
 import bgu.spl.mics.application.subscribers.Moneypenny;
 import bgu.spl.mics.application.subscribers.Q;
+import bgu.spl.mics.journal.Journals;
+import bgu.spl.mics.journal.MappedFileJournal;
 import bgu.spl.mics.loggers.Logger;
+import bgu.spl.mics.loggers.Level;
 import bgu.spl.mics.loggers.Loggers;
 import bgu.spl.mics.loggers.StringBufferLogger;
 
+import java.io.Closeable;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.ArrayList;
@@ -28,6 +52,30 @@ import java.util.concurrent.CountDownLatch;
 public class MI6Runner {
     private static final int MAX_TICKS_BEFORE_INTERRUPT = 200;
 
+    private static final String EXECUTION_THREADS = "threads";
+    private static final String EXECUTION_POOL = "pool";
+    private static final String EXECUTION_VIRTUAL = "virtual";
+
+    private static final int DEFAULT_TICK_DURATION = 100;
+    private static final String TIME_MODE_REAL = "real";
+    private static final String TIME_MODE_VIRTUAL = "virtual";
+    private static final String MISSED_TICKS_CATCH_UP = "catchUp";
+    private static final String MISSED_TICKS_SKIP = "skip";
+
+    private static final String DISPATCH_ROUND_ROBIN = "roundRobin";
+    private static final String DISPATCH_LEAST_PENDING = "leastPending";
+    private static final String DISPATCH_TWO_CHOICES = "twoChoices";
+
+    private static final String OVERFLOW_BLOCK = "block";
+    private static final String OVERFLOW_FAIL = "fail";
+    private static final String OVERFLOW_DROP_OLDEST_BROADCAST = "dropOldestBroadcast";
+
+    private static final String BROKER_LINKED_QUEUES = "linkedQueues";
+    private static final String BROKER_RING_BUFFER = "ringBuffer";
+    private static final String WAIT_BUSY_SPIN = "busySpin";
+    private static final String WAIT_YIELD = "yield";
+    private static final String WAIT_PARK = "park";
+
     public static void main(String[] args) {
         if (args.length < 3) {
             printErr("Bad arguments, expected 3 file paths");
@@ -43,35 +91,150 @@ public class MI6Runner {
             return;
         }
 
-        setLoggers();
+        setLoggers(config.services);
+        openJournal(config.services);
+        streamDiary(config.services, diaryOutputFilePath);
         run(config);
+        closeJournal();
         if (!Thread.currentThread().isInterrupted()) {
             printOutputToFiles(inventoryOutputFilePath, diaryOutputFilePath);
         }
+        closeLogger();
         printLogsToTerminal();
     }
 
-    private static void setLoggers() {
+    private static void setLoggers(Services services) {
+        Logger logger = Loggers.NoLogger;
+        if (services.log != null) {
+            Logger fileLogger = Loggers.initAsyncFileLogger(services.log);
+            if (fileLogger != null) {
+                logger = fileLogger;
+            }
+            else {
+                printErr("Failed to open the log file '" + services.log + "', not logging");
+            }
+        }
+
+        Loggers.DefaultLogger = logger;
+        Loggers.MI6RunnerLogger = logger;
+        Loggers.MnMPLogger = logger;
+    }
+
+    private static void closeLogger() {
+        // The same logger is set to all of them
+        Logger logger = Loggers.DefaultLogger;
+        if (!(logger instanceof Closeable)) {
+            return;
+        }
+
         Loggers.DefaultLogger = Loggers.NoLogger;
         Loggers.MI6RunnerLogger = Loggers.NoLogger;
         Loggers.MnMPLogger = Loggers.NoLogger;
+        // The main thread is left interrupted if the run was cut short, closing must still wait for the log to be written
+        boolean interrupted = Thread.interrupted();
+        try {
+            ((Closeable)logger).close();
+        } catch (IOException e) {
+            printErr("Failed to close the log file");
+            e.printStackTrace();
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static void openJournal(Services services) {
+        if (services.journal == null) {
+            return;
+        }
+
+        try {
+            Journals.BrokerJournal = new MappedFileJournal(services.journal);
+        } catch (IOException e) {
+            printErr("Failed to open the journal file '" + services.journal + "', not journaling");
+            e.printStackTrace();
+        }
+    }
+
+    private static void closeJournal() {
+        if (!(Journals.BrokerJournal instanceof Closeable)) {
+            return;
+        }
+
+        try {
+            ((Closeable)Journals.BrokerJournal).close();
+        } catch (IOException e) {
+            printErr("Failed to close the journal file");
+            e.printStackTrace();
+        }
+        Journals.BrokerJournal = Journals.NoJournal;
+    }
+
+    private static void streamDiary(Services services, String diaryOutputFilePath) {
+        if (!services.streamDiary) {
+            return;
+        }
+
+        try {
+            // The reports are written as they're added, printing the diary only completes the file
+            Diary.getInstance().streamToFile(diaryOutputFilePath);
+        } catch (IOException e) {
+            printErr("Failed to open the diary output file '" + diaryOutputFilePath + "', printing it at the end");
+            e.printStackTrace();
+        }
     }
 
     private static void run(Config config) {
-        Tuple<List<Iterable<Thread>>, CountDownLatch> init = initialize(config);
-        List<Iterable<Thread>> splitThreads = init.getFirst();
+        Tuple<List<Iterable<Runnable>>, CountDownLatch> init = initialize(config);
+        List<Iterable<Runnable>> splitActiveObjects = init.getFirst();
         CountDownLatch subRegisterAwaiter = init.getSecond();
 
-        Iterable<Thread> threads = startAll(splitThreads, subRegisterAwaiter);
-        waitForFinish(threads);
+        SubscriberExecutor executor = createSubscriberExecutor(config.services);
+        Iterable<Thread> publisherThreads = startAll(executor, splitActiveObjects, subRegisterAwaiter);
+        waitForFinish(executor, publisherThreads);
         if (Thread.currentThread().isInterrupted()) {
-            logAllAliveThreads(threads);
+            logAllAlive(executor, publisherThreads);
         }
+        executor.shutdown();
     }
 
-    private static void logAllAliveThreads(Iterable<Thread> threads) {
-        Iterable<Thread> aliveThreads = findAllAlive(threads);
-        logThreads(aliveThreads);
+    private static void logAllAlive(SubscriberExecutor executor, Iterable<Thread> publisherThreads) {
+        List<String> alive = new ArrayList<>();
+        for (String name : executor.getRunningNames()) {
+            alive.add(name);
+        }
+        for (Thread thread : findAllAlive(publisherThreads)) {
+            alive.add(thread.getName());
+        }
+        logNames(alive);
+    }
+
+    private static SubscriberExecutor createSubscriberExecutor(Services services) {
+        String execution = services.execution != null ? services.execution : EXECUTION_THREADS;
+        switch (execution) {
+            case EXECUTION_THREADS:
+                return new ThreadSubscriberExecutor();
+            case EXECUTION_POOL:
+                int poolSize = services.poolSize > 0 ? services.poolSize : Runtime.getRuntime().availableProcessors();
+                // The Ms and the Moneypennies block while handling missions, waiting for each other,
+                // so the pool currently needs about a thread for every one of them which is blocked.
+                // By default it gets a spare for every subscriber, a smaller maximal size may deadlock the run.
+                int maxPoolSize = services.maxPoolSize > 0 ?
+                    Math.max(services.maxPoolSize, poolSize) :
+                    poolSize + getSubscriberCount(services);
+                return new PooledSubscriberExecutor(poolSize, maxPoolSize);
+            case EXECUTION_VIRTUAL:
+                SubscriberExecutor executor = ThreadSubscriberExecutor.virtual();
+                if (executor != null) {
+                    return executor;
+                }
+                printErr("Virtual threads are not supported by this JVM, running a thread per subscriber");
+                return new ThreadSubscriberExecutor();
+            default:
+                printErr("Unknown execution '" + execution + "', running a thread per subscriber");
+                return new ThreadSubscriberExecutor();
+        }
     }
 
     private static Config loadConfig(String configFilePath) {
@@ -89,14 +252,121 @@ public class MI6Runner {
         return null;
     }
 
-    private static Tuple<List<Iterable<Thread>>, CountDownLatch> initialize(Config config) {
+    private static Tuple<List<Iterable<Runnable>>, CountDownLatch> initialize(Config config) {
         loadInventory(config);
         loadSquad(config);
+        selectMessageBroker(config.services);
+        setRoutingPolicies(config.services);
+        setQueueBounds(config.services);
         return initializeActiveObjects(config);
     }
 
+    private static void selectMessageBroker(Services services) {
+        String broker = services.broker != null ? services.broker : BROKER_LINKED_QUEUES;
+        switch (broker) {
+            case BROKER_LINKED_QUEUES:
+                break;
+            case BROKER_RING_BUFFER:
+                // The queue capacity is the size of the rings, senders always wait for room in a full one
+                int ringSize = services.queueCapacity > 0 ? services.queueCapacity : RingBufferMessageBroker.DEFAULT_RING_SIZE;
+                WaitStrategy waitStrategy = getWaitStrategy(services);
+                MessageBrokerFactory.select(() -> new RingBufferMessageBroker(ringSize, waitStrategy));
+                break;
+            default:
+                printErr("Unknown message broker '" + broker + "', using linked queues");
+                break;
+        }
+    }
+
+    private static WaitStrategy getWaitStrategy(Services services) {
+        String waitStrategy = services.waitStrategy != null ? services.waitStrategy : WAIT_PARK;
+        switch (waitStrategy) {
+            case WAIT_BUSY_SPIN:
+                return WaitStrategy.BusySpin;
+            case WAIT_YIELD:
+                return WaitStrategy.Yield;
+            case WAIT_PARK:
+                return WaitStrategy.Park;
+            default:
+                printErr("Unknown wait strategy '" + waitStrategy + "', parking");
+                return WaitStrategy.Park;
+        }
+    }
+
+    private static void setRoutingPolicies(Services services) {
+        RoutingMessageBroker broker = (RoutingMessageBroker)MessageBrokerImpl.getInstance();
+        broker.setRoutingPolicy(MissionReceivedEvent.class, getMissionDispatch(services, broker));
+        // Q i owns shard i of the inventory, a gadget stays with the Q of its shard even after another Q is gone
+        int qCount = getQCount(services);
+        broker.setRoutingPolicy(GadgetAvailableEvent.class,
+            RoutingPolicies.keyAffinity(e -> Inventory.shardOf(e.getArgs().gadget(), qCount), qCount));
+        broker.setRoutingPolicy(ReturnGadgetEvent.class,
+            RoutingPolicies.keyAffinity(e -> Inventory.shardOf(e.getArgs().gadget(), qCount), qCount));
+        if (services.workStealing) {
+            try {
+                // The events whose handlers may block for a while, on the needs of a mission or on the agents
+                broker.setWorkStealing(MissionReceivedEvent.class, true);
+                broker.setWorkStealing(AgentsAvailableEvent.class, true);
+            }
+            catch (UnsupportedOperationException e) {
+                printErr("Work stealing is not supported by the message broker: " + e.getMessage());
+            }
+        }
+    }
+
+    private static RoutingPolicy<MissionReceivedEvent> getMissionDispatch(Services services, RoutingMessageBroker broker) {
+        String dispatch = services.missionDispatch != null ? services.missionDispatch : DISPATCH_ROUND_ROBIN;
+        switch (dispatch) {
+            case DISPATCH_ROUND_ROBIN:
+                return RoutingPolicies.roundRobin();
+            case DISPATCH_LEAST_PENDING:
+                return RoutingPolicies.leastPending(broker);
+            case DISPATCH_TWO_CHOICES:
+                return RoutingPolicies.twoChoices(broker);
+            default:
+                printErr("Unknown mission dispatch '" + dispatch + "', dispatching in a Round-Robin fashion");
+                return RoutingPolicies.roundRobin();
+        }
+    }
+
+    private static void setQueueBounds(Services services) {
+        MessageBroker broker = MessageBrokerImpl.getInstance();
+        if (!(broker instanceof BoundedMessageBroker)) {
+            // The rings of the ring buffer broker are sized when it's created
+            if (services.overflow != null && !services.overflow.equals(OVERFLOW_BLOCK)) {
+                printErr("Overflow policy '" + services.overflow + "' is not supported by the message broker, blocking the senders");
+            }
+        }
+        else if (services.queueCapacity > 0) {
+            ((BoundedMessageBroker)broker).setDefaultQueueBounds(services.queueCapacity, getOverflowPolicy(services));
+        }
+    }
+
+    private static OverflowPolicy getOverflowPolicy(Services services) {
+        String overflow = services.overflow != null ? services.overflow : OVERFLOW_BLOCK;
+        switch (overflow) {
+            case OVERFLOW_BLOCK:
+                return OverflowPolicy.Block;
+            case OVERFLOW_FAIL:
+                return OverflowPolicy.Fail;
+            case OVERFLOW_DROP_OLDEST_BROADCAST:
+                return OverflowPolicy.DropOldestBroadcast;
+            default:
+                printErr("Unknown overflow policy '" + overflow + "', blocking the senders");
+                return OverflowPolicy.Block;
+        }
+    }
+
     private static void loadInventory(Config config) {
-        Inventory.getInstance().load(config.inventory);
+        Inventory.getInstance().load(config.inventory, getQCount(config.services));
+    }
+
+    private static int getQCount(Services services) {
+        return services.Q > 0 ? services.Q : 1;
+    }
+
+    private static int getSubscriberCount(Services services) {
+        return services.intelligence.length + getQCount(services) + services.M + services.Moneypenny;
     }
 
     private static void loadSquad(Config config) {
@@ -112,50 +382,74 @@ public class MI6Runner {
         Squad.getInstance().load(agents);
     }
 
-    private static Tuple<List<Iterable<Thread>>, CountDownLatch> initializeActiveObjects(Config config) {
+    private static Tuple<List<Iterable<Runnable>>, CountDownLatch> initializeActiveObjects(Config config) {
         Services services = config.services;
-        int subCount = services.intelligence.length + 1 + services.M + services.Moneypenny;
+        int subCount = getSubscriberCount(services);
         CountDownLatch subRegisterAwaiter = new CountDownLatch(subCount);
 
-        Thread timeServiceThread = initializeTimeService(services);
-        Thread[] intelligenceThreads = initializeIntelligences(services, subRegisterAwaiter);
-        Thread qThread = initializeQ(Inventory.getInstance(), subRegisterAwaiter);
-        Thread[] mThreads = initializeMs(services, Diary.getInstance(), subRegisterAwaiter);
-        Thread[] moneypennyThreads = initializeMoneypennies(services, subRegisterAwaiter);
-
-        ArrayList<Thread> subscriberThreads = new ArrayList<>(subCount);
-        subscriberThreads.add(qThread);
-        addAll(subscriberThreads, moneypennyThreads);
-        addAll(subscriberThreads, mThreads);
-        addAll(subscriberThreads, intelligenceThreads);
-
-        ArrayList<Thread> publisherThreads = new ArrayList<Thread>(1) {{
-           add(timeServiceThread);
+        TimeService timeService = initializeTimeService(services);
+        Intelligence[] intelligences = initializeIntelligences(services, subRegisterAwaiter);
+        M.Counter mCounter = new M.Counter(services.M);
+        Q[] qs = initializeQs(services, Inventory.getInstance(), services.M > 0, subRegisterAwaiter);
+        M[] ms = initializeMs(services, Diary.getInstance(), mCounter, subRegisterAwaiter);
+        Moneypenny[] moneypennies = initializeMoneypennies(services, subRegisterAwaiter);
+
+        ArrayList<Runnable> subscribers = new ArrayList<>(subCount);
+        addAll(subscribers, qs);
+        addAll(subscribers, moneypennies);
+        addAll(subscribers, ms);
+        addAll(subscribers, intelligences);
+
+        ArrayList<Runnable> publishers = new ArrayList<Runnable>(1) {{
+           add(timeService);
         }};
 
-        ArrayList<Iterable<Thread>> threads = new ArrayList<Iterable<Thread>>(2) {{
-            add(subscriberThreads);
-            add(publisherThreads);
+        ArrayList<Iterable<Runnable>> activeObjects = new ArrayList<Iterable<Runnable>>(2) {{
+            add(subscribers);
+            add(publishers);
         }};
-        return new Tuple<>(threads, subRegisterAwaiter);
+        return new Tuple<>(activeObjects, subRegisterAwaiter);
+    }
+
+    private static TimeService initializeTimeService(Services services) {
+        int tickDuration = services.tickDuration > 0 ? services.tickDuration : DEFAULT_TICK_DURATION;
+        return new TimeService(services.time, tickDuration, getMissedTickPolicy(services), isVirtualTime(services), "TimeService");
     }
 
-    private static Thread initializeTimeService(Services services) {
-        TimeService timeService = new TimeService(services.time, "TimeService");
-        Thread timeServiceThread = new Thread(timeService);
-        timeServiceThread.setName(timeService.getName());
-        return timeServiceThread;
+    private static boolean isVirtualTime(Services services) {
+        String timeMode = services.timeMode != null ? services.timeMode : TIME_MODE_REAL;
+        switch (timeMode) {
+            case TIME_MODE_REAL:
+                return false;
+            case TIME_MODE_VIRTUAL:
+                return true;
+            default:
+                printErr("Unknown time mode '" + timeMode + "', running in real time");
+                return false;
+        }
+    }
+
+    private static TickScheduler.MissedTickPolicy getMissedTickPolicy(Services services) {
+        String missedTicks = services.missedTicks != null ? services.missedTicks : MISSED_TICKS_CATCH_UP;
+        switch (missedTicks) {
+            case MISSED_TICKS_CATCH_UP:
+                return TickScheduler.MissedTickPolicy.CatchUp;
+            case MISSED_TICKS_SKIP:
+                return TickScheduler.MissedTickPolicy.Skip;
+            default:
+                printErr("Unknown missed ticks policy '" + missedTicks + "', catching up");
+                return TickScheduler.MissedTickPolicy.CatchUp;
+        }
     }
 
-    private static Thread[] initializeIntelligences(Services services, CountDownLatch subRegisterAwaiter) {
+    private static Intelligence[] initializeIntelligences(Services services, CountDownLatch subRegisterAwaiter) {
         bgu.spl.mics.application.config.Intelligence[] intelligenceObjs = services.intelligence;
-        Thread[] intelligenceThreads = new Thread[intelligenceObjs.length];
+        Intelligence[] intelligences = new Intelligence[intelligenceObjs.length];
         for (int i = 0; i < intelligenceObjs.length; i++) {
-            Intelligence intelligence = initializeIntelligence(intelligenceObjs[i], i + 1, subRegisterAwaiter);
-            intelligenceThreads[i] = initializeIntelligenceThread(intelligence);
+            intelligences[i] = initializeIntelligence(intelligenceObjs[i], i + 1, subRegisterAwaiter);
         }
 
-        return intelligenceThreads;
+        return intelligences;
     }
 
     private static Intelligence initializeIntelligence(bgu.spl.mics.application.config.Intelligence intelligenceObj, int id, CountDownLatch subRegisterAwaiter) {
@@ -164,12 +458,6 @@ public class MI6Runner {
         return new Intelligence(name, missionInfos, subRegisterAwaiter);
     }
 
-    private static Thread initializeIntelligenceThread(Intelligence intelligence) {
-        Thread thread = new Thread(intelligence);
-        thread.setName(intelligence.getName());
-        return thread;
-    }
-
     private static MissionInfo[] initializeMissionInfos(Mission[] missions) {
         MissionInfo[] missionInfos = new MissionInfo[missions.length];
         for (int i = 0; i < missions.length; i++) {
@@ -190,51 +478,53 @@ public class MI6Runner {
         return Arrays.asList(mission.serialAgentsNumbers);
     }
 
-    private static Thread initializeQ(Inventory inventory, CountDownLatch subRegisterAwaiter) {
-        Q q = new Q("Q", inventory, subRegisterAwaiter);
-        Thread qThread = new Thread(q);
-        qThread.setName(q.getName());
-        return qThread;
+    private static Q[] initializeQs(Services services, Inventory inventory, boolean awaitMs, CountDownLatch subRegisterAwaiter) {
+        int count = getQCount(services);
+        if (count == 1) {
+            return new Q[] { new Q("Q", inventory, awaitMs, subRegisterAwaiter) };
+        }
+
+        // Q i is responsible for shard i of the inventory
+        Q[] qs = new Q[count];
+        for (int i = 0; i < count; i++) {
+            qs[i] = new Q("Q" + (i + 1), inventory, i, awaitMs, subRegisterAwaiter);
+        }
+
+        return qs;
     }
 
-    private static Thread[] initializeMs(Services services, Diary diary, CountDownLatch subRegisterAwaiter) {
+    private static M[] initializeMs(Services services, Diary diary, M.Counter mCounter, CountDownLatch subRegisterAwaiter) {
         int count = services.M;
-        Thread[] mThreads = new Thread[count];
+        M[] ms = new M[count];
         for (int i = 0; i < count; i++) {
-            M m = new M(i + 1, diary, subRegisterAwaiter);
-            Thread thread = new Thread(m);
-            thread.setName(m.getName());
-            mThreads[i] = thread;
+            ms[i] = new M(i + 1, diary, mCounter, subRegisterAwaiter);
         }
 
-        return mThreads;
+        return ms;
     }
 
-    private static Thread[] initializeMoneypennies(Services services, CountDownLatch subRegisterAwaiter) {
+    private static Moneypenny[] initializeMoneypennies(Services services, CountDownLatch subRegisterAwaiter) {
         int count = services.Moneypenny;
-        Thread[] moneypennyThreads = new Thread[count];
-        initializeMoneypennies(moneypennyThreads, subRegisterAwaiter);
-        return moneypennyThreads;
+        Moneypenny[] moneypennies = new Moneypenny[count];
+        initializeMoneypennies(moneypennies, subRegisterAwaiter);
+        return moneypennies;
     }
 
-    private static void initializeMoneypennies(Thread[] moneypennyThreads, CountDownLatch subRegisterAwaiter) {
-        int count = moneypennyThreads.length;
+    private static void initializeMoneypennies(Moneypenny[] moneypennies, CountDownLatch subRegisterAwaiter) {
+        int count = moneypennies.length;
         int missionHandlersCount = (count / 2);
         int agentManagersCount = count - missionHandlersCount;
         Moneypenny.Releaser releaser = new Moneypenny.Releaser(agentManagersCount);
 
         int iNext = 0;
-        iNext = initializeMoneypennies(moneypennyThreads, iNext, missionHandlersCount, releaser, Moneypenny.SubscribeTO.SendAndRelease, subRegisterAwaiter);
-        iNext = initializeMoneypennies(moneypennyThreads, iNext, agentManagersCount, releaser, Moneypenny.SubscribeTO.AgentsAvailable, subRegisterAwaiter);
+        iNext = initializeMoneypennies(moneypennies, iNext, missionHandlersCount, releaser, Moneypenny.SubscribeTO.SendAndRelease, subRegisterAwaiter);
+        iNext = initializeMoneypennies(moneypennies, iNext, agentManagersCount, releaser, Moneypenny.SubscribeTO.AgentsAvailable, subRegisterAwaiter);
     }
 
-    private static int initializeMoneypennies(Thread[] moneypennyThreads, int iStart, int count, Moneypenny.Releaser releaser, Moneypenny.SubscribeTO duty, CountDownLatch subRegisterAwaiter) {
+    private static int initializeMoneypennies(Moneypenny[] moneypennies, int iStart, int count, Moneypenny.Releaser releaser, Moneypenny.SubscribeTO duty, CountDownLatch subRegisterAwaiter) {
         int iEnd = iStart + count;
         for (int i = iStart; i < iEnd; i++) {
-            Moneypenny moneypenny = new Moneypenny(i + 1, releaser, duty, subRegisterAwaiter);
-            Thread thread = new Thread(moneypenny);
-            thread.setName(moneypenny.getName());
-            moneypennyThreads[i] = thread;
+            moneypennies[i] = new Moneypenny(i + 1, releaser, duty, subRegisterAwaiter);
         }
 
         return iEnd;
@@ -244,12 +534,23 @@ public class MI6Runner {
         list.addAll(Arrays.asList(arr));
     }
 
-    private static Iterable<Thread> startAll(List<Iterable<Thread>> splitThreads, CountDownLatch subRegisterAwaiter) {
-        ArrayList<Thread> threads = new ArrayList<>();
-        for (Iterable<Thread> threadsGroup : splitThreads) {
-            for (Thread thread : threadsGroup) {
-                threads.add(thread);
-                thread.start();
+    /**
+     * Starts the subscribers on the executor and every publisher on a thread of its own
+     * @return The threads of the publishers
+     */
+    private static Iterable<Thread> startAll(SubscriberExecutor executor, List<Iterable<Runnable>> splitActiveObjects, CountDownLatch subRegisterAwaiter) {
+        ArrayList<Thread> publisherThreads = new ArrayList<>();
+        for (Iterable<Runnable> activeObjectsGroup : splitActiveObjects) {
+            for (Runnable activeObject : activeObjectsGroup) {
+                if (activeObject instanceof Subscriber) {
+                    executor.execute((Subscriber)activeObject);
+                }
+                else {
+                    Thread thread = new Thread(activeObject);
+                    thread.setName(((Publisher)activeObject).getName());
+                    publisherThreads.add(thread);
+                    thread.start();
+                }
             }
 
             try {
@@ -260,17 +561,18 @@ public class MI6Runner {
             }
         }
 
-        return threads;
+        return publisherThreads;
     }
 
-    private static void waitForFinish(Iterable<Thread> threads) {
+    private static void waitForFinish(SubscriberExecutor executor, Iterable<Thread> publisherThreads) {
         try {
-            for (Thread thread : threads) {
+            for (Thread thread : publisherThreads) {
                 thread.join();
             }
-            Loggers.MI6RunnerLogger.appendLine("\nDone!");
+            executor.awaitTermination();
+            Loggers.MI6RunnerLogger.appendLine(Level.Info, "\nDone!");
         } catch (InterruptedException e) {
-            Loggers.MI6RunnerLogger.appendLine("\nInterrupted while waiting");
+            Loggers.MI6RunnerLogger.appendLine(Level.Warn, "\nInterrupted while waiting");
             Thread.currentThread().interrupt();
             e.printStackTrace();
         }
@@ -287,25 +589,25 @@ public class MI6Runner {
         return stillAlive;
     }
 
-    private static void logThreads(Iterable<Thread> threads) {
+    private static void logNames(Iterable<String> names) {
         Loggers.MI6RunnerLogger.append("\nPrinting alive threads: [");
-        Iterator<Thread> iterator = threads.iterator();
+        Iterator<String> iterator = names.iterator();
         if (iterator.hasNext()) {
             Loggers.MI6RunnerLogger.appendLine("");
-            Thread next = iterator.next();
+            String next = iterator.next();
             while (iterator.hasNext()) {
-                appendThreadName(next);
+                appendName(next);
                 Loggers.MI6RunnerLogger.appendLine(",");
                 next = iterator.next();
             }
-            appendThreadName(next);
+            appendName(next);
             Loggers.MI6RunnerLogger.appendLine("");
         }
         Loggers.MI6RunnerLogger.append("]");
     }
 
-    private static void appendThreadName(Thread next) {
-        Loggers.MI6RunnerLogger.append("    " + next.getName());
+    private static void appendName(String name) {
+        Loggers.MI6RunnerLogger.append("    " + name);
     }
 
     private static void startInterrupter() {
@@ -322,7 +624,7 @@ public class MI6Runner {
     }
 
     private static void printOutputToFiles(String inventoryOutputFilePath, String diaryOutputFilePath) {
-        Loggers.MI6RunnerLogger.appendLine("Printing output to files...");
+        Loggers.MI6RunnerLogger.appendLine(Level.Info, "Printing output to files...");
         printInventoryToFile(inventoryOutputFilePath);
         printDiaryToFile(diaryOutputFilePath);
     }
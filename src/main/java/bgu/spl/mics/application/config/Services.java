@@ -3,6 +3,22 @@ package bgu.spl.mics.application.config;
 public class Services {
     public int M;
     public int Moneypenny;
+    public int Q;
     public Intelligence[] intelligence;
     public int time;
+    public int tickDuration;
+    public String timeMode;
+    public String missedTicks;
+    public String execution;
+    public int poolSize;
+    public int maxPoolSize;
+    public String missionDispatch;
+    public boolean workStealing;
+    public int queueCapacity;
+    public String overflow;
+    public String broker;
+    public String waitStrategy;
+    public String journal;
+    public String log;
+    public boolean streamDiary;
 }
@@ -1,13 +1,13 @@
 package bgu.spl.mics.application.messages;
 
-import bgu.spl.mics.Event;
+import bgu.spl.mics.KeyedEvent;
 import bgu.spl.mics.application.messages.eventsInfo.GadgetAvailableEventArgs;
 import bgu.spl.mics.application.messages.eventsInfo.GadgetAvailableResult;
 
 /**
  * The event to be sent when a gadget is need for a mission in order to know whether it's available
  */
-public class GadgetAvailableEvent implements Event<GadgetAvailableResult> {
+public class GadgetAvailableEvent implements KeyedEvent<GadgetAvailableResult> {
     private final GadgetAvailableEventArgs args;
 
     /**
@@ -25,6 +25,15 @@ public class GadgetAvailableEvent implements Event<GadgetAvailableResult> {
         return args;
     }
 
+    /**
+     * Routes the event to the Q which owns the gadget's shard of the inventory
+     * @see bgu.spl.mics.application.passiveObjects.Inventory#shardOf(String, int)
+     */
+    @Override
+    public int getRoutingKey() {
+        return args.gadget().hashCode();
+    }
+
     @Override
     public String toString() {
         return getClass().getSimpleName() + ": '" + args.gadget() + "'";
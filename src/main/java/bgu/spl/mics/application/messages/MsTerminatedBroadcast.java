@@ -0,0 +1,14 @@
+package bgu.spl.mics.application.messages;
+
+import bgu.spl.mics.Broadcast;
+
+/**
+ * The broadcast sent by the last M to terminate.
+ * No gadget is requested or returned after it, so the Qs can terminate.
+ */
+public class MsTerminatedBroadcast implements Broadcast {
+    @Override
+    public String toString() {
+        return getClass().getSimpleName();
+    }
+}
@@ -0,0 +1,40 @@
+package bgu.spl.mics.application.messages;
+
+import bgu.spl.mics.KeyedEvent;
+import bgu.spl.mics.application.messages.eventsInfo.ReturnGadgetEventArgs;
+
+/**
+ * The event to be sent when a gadget was acquired for a mission which was aborted before the gadget was used
+ */
+public class ReturnGadgetEvent implements KeyedEvent<Void> {
+    private final ReturnGadgetEventArgs args;
+
+    /**
+     * Initializes a new instance with the given args
+     * @param args The arguments for this event
+     */
+    public ReturnGadgetEvent(ReturnGadgetEventArgs args) {
+        this.args = args;
+    }
+
+    /**
+     * @return The arguments for this event
+     */
+    public ReturnGadgetEventArgs getArgs() {
+        return args;
+    }
+
+    /**
+     * Routes the event to the Q which owns the gadget's shard of the inventory
+     * @see bgu.spl.mics.application.passiveObjects.Inventory#shardOf(String, int)
+     */
+    @Override
+    public int getRoutingKey() {
+        return args.gadget().hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + ": '" + args.gadget() + "'";
+    }
+}
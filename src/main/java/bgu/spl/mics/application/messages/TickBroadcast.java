@@ -1,11 +1,12 @@
 package bgu.spl.mics.application.messages;
 
-import bgu.spl.mics.Broadcast;
+import bgu.spl.mics.CoalescingBroadcast;
 
 /**
- * The broadcast sent very system time tick
+ * The broadcast sent very system time tick.
+ * A subscriber which lags behind receives only the latest tick, so it may skip ticks.
  */
-public class TickBroadcast implements Broadcast {
+public class TickBroadcast implements CoalescingBroadcast {
     private final int tick;
 
     /**
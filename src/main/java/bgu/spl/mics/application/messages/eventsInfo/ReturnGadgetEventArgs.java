@@ -0,0 +1,26 @@
+package bgu.spl.mics.application.messages.eventsInfo;
+
+import bgu.spl.mics.application.messages.ReturnGadgetEvent;
+
+/**
+ * The arguments for
+ * @see ReturnGadgetEvent
+ */
+public class ReturnGadgetEventArgs {
+    private final String gadget;
+
+    /**
+     * Initializes a new instance
+     * @param gadget The gadget to return to the inventory
+     */
+    public ReturnGadgetEventArgs(String gadget) {
+        this.gadget = gadget;
+    }
+
+    /**
+     * @return The gadget to return to the inventory
+     */
+    public String gadget() {
+        return gadget;
+    }
+}
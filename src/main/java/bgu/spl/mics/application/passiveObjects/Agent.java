@@ -1,24 +1,34 @@
 package bgu.spl.mics.application.passiveObjects;
 
+import bgu.spl.mics.loggers.Level;
 import bgu.spl.mics.loggers.Loggers;
 
-import java.util.concurrent.atomic.AtomicBoolean;
-
 /**
  * Passive data-object representing a information about an agent in MI6.
  * You must not alter any of the given public methods of this class. 
  * <p>
  * You may add ONLY private fields and methods to this class.
+ * The exception is {@link #bind(AgentAvailability, int)}, which the squad calls when the agent is loaded to it.
  */
 public class Agent {
 
 	private String serialNumber;
 	private String name;
 
-	private boolean available;
+	/**
+	 * The availability of the agent is kept by the squad it's loaded to (or by the agent itself until then),
+	 * so the squad can acquire several agents at once
+	 */
+	private volatile AgentAvailability availability;
+
+	/**
+	 * The id of the agent in its availability registry, published by the volatile write of the registry
+	 */
+	private int id;
 
 	public Agent(){
-		available = true;
+		id = 0;
+		availability = new AgentAvailability(1);
 	}
 	/**
 	 * Sets the serial number of an agent.
@@ -58,20 +68,17 @@ public class Agent {
      * @return if the agent is available.
      */
 	public boolean isAvailable() {
-		return available;
+		return availability.isAvailable(id);
 	}
 
 	/**
 	 * Acquires an agent.
 	 */
-	public synchronized void acquire() throws InterruptedException {
+	public void acquire() throws InterruptedException {
 		try {
-			while (!available) {
-				wait();
-			}
-			available = false;
+			availability.acquire(id);
 		} catch (InterruptedException e) {
-			Loggers.MnMPLogger.appendLine(Thread.currentThread().getName() + " interrupted while waiting to acquire agent " + serialNumber);
+			Loggers.MnMPLogger.appendLine(Level.Info, "{} interrupted while waiting to acquire agent {}", Thread.currentThread().getName(), serialNumber);
 			throw e;
 		}
 	}
@@ -79,8 +86,18 @@ public class Agent {
 	/**
 	 * Releases an agent.
 	 */
-	public synchronized void release(){
-		available = true;
-		notifyAll();
+	public void release(){
+		availability.release(id);
+	}
+
+	/**
+	 * Makes the agent keep its availability in the squad's registry, under the given id
+	 * @param availability The availability registry of the squad
+	 * @param id The id of the agent in the registry
+	 */
+	void bind(AgentAvailability availability, int id) {
+		// The id is written first, so whoever sees the new registry also sees the id in it
+		this.id = id;
+		this.availability = availability;
 	}
 }
@@ -0,0 +1,194 @@
+package bgu.spl.mics.application.passiveObjects;
+
+import bgu.spl.mics.Utils;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The availability of agents which are identified by dense int ids, kept as a bitset (a set bit is an acquired agent).
+ * <p>
+ * Acquiring a group of agents is all-or-nothing: every word of the bitset which holds some of the agents is
+ * acquired with a single CAS, and if any of the agents is taken, the words acquired so far are rolled back.
+ * Since an acquirer never holds some of its agents while waiting for the rest, the agents don't have to be
+ * acquired in any particular order to avoid deadlocks.
+ * Squads of up to 64 agents fit in a single word, so acquiring any group of them is one atomic operation.
+ * <p>
+ * Only acquirers who find some of the agents taken wait, on the monitor of this object,
+ * and releasing only takes the monitor when someone waits.
+ */
+class AgentAvailability {
+	private static final int BITS_PER_WORD = Long.SIZE;
+
+	private final AtomicLongArray acquired;
+	private final AtomicInteger waiters;
+
+	/**
+	 * Initializes the availability of the given amount of agents, all of them available
+	 * @param agents The amount of agents, their ids are 0 to {@code agents - 1}
+	 */
+	AgentAvailability(int agents) {
+		acquired = new AtomicLongArray(Math.max(1, (agents + BITS_PER_WORD - 1) / BITS_PER_WORD));
+		waiters = new AtomicInteger(0);
+	}
+
+	/**
+	 * @param id The id of an agent
+	 * @return Whether the agent is available
+	 */
+	boolean isAvailable(int id) {
+		return (acquired.get(wordOf(id)) & bitOf(id)) == 0;
+	}
+
+	/**
+	 * Acquires the agent if it's available, without waiting
+	 * @param id The id of the agent
+	 * @return Whether the agent was acquired
+	 */
+	boolean tryAcquire(int id) {
+		return tryAcquireWord(wordOf(id), bitOf(id));
+	}
+
+	/**
+	 * Acquires the agent, waiting until it's available
+	 * @param id The id of the agent
+	 */
+	void acquire(int id) throws InterruptedException {
+		if (!tryAcquire(id)) {
+			awaitAcquired(masksOf(id));
+		}
+	}
+
+	/**
+	 * Releases the agent
+	 * @param id The id of the agent
+	 */
+	void release(int id) {
+		releaseWord(wordOf(id), bitOf(id));
+		signalWaiters();
+	}
+
+	/**
+	 * Acquires all the agents if all of them are available, without waiting
+	 * @param ids The ids of the agents
+	 * @return Whether the agents were acquired
+	 */
+	boolean tryAcquireAll(int[] ids) {
+		return tryAcquireMasks(masksOf(ids));
+	}
+
+	/**
+	 * Acquires all the agents, waiting until all of them are available at once
+	 * @param ids The ids of the agents
+	 */
+	void acquireAll(int[] ids) throws InterruptedException {
+		long[] masks = masksOf(ids);
+		if (!tryAcquireMasks(masks)) {
+			awaitAcquired(masks);
+		}
+	}
+
+	/**
+	 * Releases all the agents
+	 * @param ids The ids of the agents
+	 */
+	void releaseAll(int[] ids) {
+		long[] masks = masksOf(ids);
+		releaseWords(masks, masks.length);
+		signalWaiters();
+	}
+
+	/**
+	 * Waits until the agents are acquired, once trying to acquire them without waiting has failed
+	 */
+	private void awaitAcquired(long[] masks) throws InterruptedException {
+		synchronized (this) {
+			// Registering as a waiter before retrying makes sure a release which happens after
+			// the retry has failed sees the waiter and notifies it
+			waiters.incrementAndGet();
+			try {
+				while (!tryAcquireMasks(masks)) {
+					Utils.managedWait(this);
+				}
+			} finally {
+				waiters.decrementAndGet();
+			}
+		}
+	}
+
+	private boolean tryAcquireMasks(long[] masks) {
+		for (int word = 0; word < masks.length; word++) {
+			if (masks[word] != 0 && !tryAcquireWord(word, masks[word])) {
+				releaseWords(masks, word);
+				if (word > 0) {
+					// Someone may have been waiting for the agents which were acquired just for rolling them back
+					signalWaiters();
+				}
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private boolean tryAcquireWord(int word, long mask) {
+		long current;
+		do {
+			current = acquired.get(word);
+			if ((current & mask) != 0) {
+				return false;
+			}
+		} while (!acquired.compareAndSet(word, current, current | mask));
+
+		return true;
+	}
+
+	/**
+	 * Releases the agents in the first {@code words} words of the masks
+	 */
+	private void releaseWords(long[] masks, int words) {
+		for (int word = 0; word < words; word++) {
+			if (masks[word] != 0) {
+				releaseWord(word, masks[word]);
+			}
+		}
+	}
+
+	private void releaseWord(int word, long mask) {
+		long current;
+		do {
+			current = acquired.get(word);
+		} while (!acquired.compareAndSet(word, current, current & ~mask));
+	}
+
+	private void signalWaiters() {
+		if (waiters.get() > 0) {
+			synchronized (this) {
+				notifyAll();
+			}
+		}
+	}
+
+	private long[] masksOf(int[] ids) {
+		long[] masks = new long[acquired.length()];
+		for (int id : ids) {
+			masks[wordOf(id)] |= bitOf(id);
+		}
+
+		return masks;
+	}
+
+	private long[] masksOf(int id) {
+		long[] masks = new long[acquired.length()];
+		masks[wordOf(id)] = bitOf(id);
+		return masks;
+	}
+
+	private static int wordOf(int id) {
+		return id / BITS_PER_WORD;
+	}
+
+	private static long bitOf(int id) {
+		return 1L << (id % BITS_PER_WORD);
+	}
+}
@@ -2,11 +2,16 @@ package bgu.spl.mics.application.passiveObjects;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonIOException;
+import com.google.gson.stream.JsonWriter;
 
+import java.io.BufferedWriter;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -16,14 +21,29 @@ import java.util.concurrent.atomic.AtomicInteger;
  * You must not alter any of the given public methods of this class.
  * <p>
  * You can add ONLY private fields and methods to this class as you see fit.
+ * The exception is {@link #streamToFile(String)}, which the runner calls to write the reports as they're added.
  */
 public class Diary {
-	private List<Report> reports;
+	/**
+	 * Appended without a lock, the Ms which finish their missions together don't wait for each other
+	 */
+	private Queue<Report> reports;
 	private AtomicInteger total;
 
+	/**
+	 * Writes the reports to the output file as they're added, while streaming (see {@link #streamToFile(String)}).
+	 * Not a part of the serialized diary.
+	 */
+	private transient volatile JsonWriter reportsWriter;
+	private transient Gson gson;
+
 	private Diary() {
-		reports = new LinkedList<>();
+		reports = new ConcurrentLinkedQueue<>();
 		total = new AtomicInteger(0);
+		reportsWriter = null;
+		gson = new GsonBuilder()
+			.setPrettyPrinting()
+			.create();
 	}
 
 	/**
@@ -33,8 +53,12 @@ public class Diary {
 		return InstanceHolder.instance;
 	}
 
+	/**
+	 * @return A snapshot of the reports in the diary, without the ones which were streamed to the output file.
+	 * The reports are only ever appended, so it holds every report added until some moment, in the order they were added.
+	 */
 	public List<Report> getReports() {
-		return reports;
+		return new ArrayList<>(reports);
 	}
 
 	/**
@@ -42,8 +66,40 @@ public class Diary {
 	 * @param reportToAdd - the report to add
 	 */
 	public void addReport(Report reportToAdd){
-		synchronized (this) {
+		if (reportsWriter == null) {
 			reports.add(reportToAdd);
+			return;
+		}
+
+		synchronized (this) {
+			if (reportsWriter == null) {
+				// The file was completed meanwhile
+				reports.add(reportToAdd);
+				return;
+			}
+
+			// A report added without the lock just as the streaming started is still in the queue, it comes first
+			writeQueuedReports();
+			writeReport(reportToAdd);
+		}
+	}
+
+	/**
+	 * Streams the reports to the output file as they're added, instead of keeping all of them
+	 * until {@link #printToFile(String)}, which then only completes the file.
+	 * The file is flushed with every report, so if the run stops midway it holds every report added until then:
+	 * appending the closing brackets of the reports array and of the diary makes it valid (without the total).
+	 * The completed file is the same as the one printed without streaming.
+	 * @param filename The path of the output file
+	 */
+	public void streamToFile(String filename) throws IOException {
+		synchronized (this) {
+			JsonWriter writer = gson.newJsonWriter(new BufferedWriter(new FileWriter(filename)));
+			writer.beginObject();
+			writer.name("reports").beginArray();
+			writer.flush();
+			reportsWriter = writer;
+			writeQueuedReports();
 		}
 	}
 
@@ -55,9 +111,14 @@ public class Diary {
 	 * This method is called by the main method in order to generate the output.
 	 */
 	public void printToFile(String filename){
-		Gson gson = new GsonBuilder()
-			.setPrettyPrinting()
-			.create();
+		synchronized (this) {
+			if (reportsWriter != null) {
+				// The reports are already in the file
+				completeStream();
+				return;
+			}
+		}
+
 		try (FileWriter fileWriter = new FileWriter(filename)) {
 			gson.toJson(this, fileWriter);
 			fileWriter.flush();
@@ -81,6 +142,37 @@ public class Diary {
 		total.incrementAndGet();
 	}
 
+	private void writeQueuedReports() {
+		Report report;
+		while ((report = reports.poll()) != null) {
+			writeReport(report);
+		}
+	}
+
+	private void writeReport(Report report) {
+		try {
+			gson.toJson(report, Report.class, reportsWriter);
+			reportsWriter.flush();
+		} catch (JsonIOException | IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Writes the end of the reports array and the total, like the serialized diary, and closes the file
+	 */
+	private void completeStream() {
+		writeQueuedReports();
+		try (JsonWriter writer = reportsWriter) {
+			reportsWriter = null;
+			writer.endArray();
+			writer.name("total").value(getTotal());
+			writer.endObject();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
 	private static class InstanceHolder {
 		public static final Diary instance = new Diary();
 	}
@@ -2,11 +2,16 @@ package bgu.spl.mics.application.passiveObjects;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
-;
+
 import java.io.FileWriter;
 import java.io.IOException;
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  *  That's where Q holds his gadget (e.g. an explosive pen was used in GoldenEye, a geiger counter in Dr. No, etc).
@@ -15,9 +20,22 @@ import java.util.List;
  * You must not alter any of the given public methods of this class.
  * <p>
  * You can add ONLY private fields and methods to this class as you see fit.
+ * The exceptions are the public methods which spread the gadgets between the Qs:
+ * {@link #load(String[], int)}, {@link #shardOf(String, int)} and {@link #returnItem(String)}.
  */
 public class Inventory {
-	private List<String> gadgets;
+	/**
+	 * The amount of every gadget, a gadget may appear more than once, partitioned by the hash of the gadget names.
+	 * Getting a gadget decrements its count with CAS, so it's constant time and doesn't take any lock.
+	 * Every Q owns a shard and only receives the events of its gadgets, so Qs don't contend with each other.
+	 */
+	private List<Map<String, AtomicInteger>> shards;
+
+	/**
+	 * The gadget names in the order they were first loaded, for printing
+	 */
+	private Queue<String> names;
+
 	/**
      * Retrieves the single instance of this class.
      */
@@ -33,11 +51,39 @@ public class Inventory {
      * 						of the inventory.
      */
 	public void load (String[] inventory) {
-		gadgets = new LinkedList<>();
+		load(inventory, 1);
+	}
+
+	/**
+	 * Initializes the inventory, partitioning the gadgets into shards by the hash of their names.
+	 * <p>
+	 * @param inventory 	Data structure containing all data necessary for initialization
+	 * 						of the inventory.
+	 * @param shards 		The amount of shards
+	 */
+	public void load (String[] inventory, int shards) {
+		if(shards <= 0){
+			throw new IllegalArgumentException("shards must be positive.");
+		}
+
+		this.shards = new ArrayList<>(shards);
+		for(int i = 0; i < shards; i++){
+			this.shards.add(new ConcurrentHashMap<>());
+		}
+		names = new ConcurrentLinkedQueue<>();
 		for(String gadget: inventory){
-			gadgets.add(gadget);
+			count(gadget).incrementAndGet();
 		}
 	}
+
+	/**
+	 * @param gadget 		Name of a gadget
+	 * @param shards 		The amount of shards
+	 * @return The shard which holds the gadget
+	 */
+	public static int shardOf(String gadget, int shards){
+		return Math.floorMod(gadget.hashCode(), shards);
+	}
 	
 	/**
      * acquires a gadget and returns 'true' if it exists.
@@ -46,7 +92,29 @@ public class Inventory {
      * @return 	‘false’ if the gadget is missing, and ‘true’ otherwise
      */
 	public boolean getItem(String gadget){
-		return gadgets.remove(gadget);
+		AtomicInteger count = shardMap(gadget).get(gadget);
+		if(count == null){
+			return false;
+		}
+
+		int current;
+		do {
+			current = count.get();
+			if(current == 0){
+				return false;
+			}
+		} while(!count.compareAndSet(current, current - 1));
+
+		return true;
+	}
+
+	/**
+	 * Returns a gadget which was acquired by {@link #getItem(String)} but wasn't used.
+	 * <p>
+	 * @param gadget 		Name of the gadget to return
+	 */
+	public void returnItem(String gadget){
+		count(gadget).incrementAndGet();
 	}
 
 	/**
@@ -59,7 +127,7 @@ public class Inventory {
 	public void printToFile(String filename){
 		Gson gson = new GsonBuilder().create();
 		try (FileWriter fileWriter = new FileWriter(filename)) {
-			gson.toJson(gadgets.toArray(), fileWriter);
+			gson.toJson(remainingGadgets().toArray(), fileWriter);
 			fileWriter.flush();
 
 		} catch (IOException e) {
@@ -68,6 +136,31 @@ public class Inventory {
 
 	}
 
+	private Map<String, AtomicInteger> shardMap(String gadget){
+		return shards.get(shardOf(gadget, shards.size()));
+	}
+
+	private AtomicInteger count(String gadget){
+		return shardMap(gadget).computeIfAbsent(gadget, name -> {
+			names.add(name);
+			return new AtomicInteger(0);
+		});
+	}
+
+	/**
+	 * @return The gadgets left in the inventory, a gadget appears as many times as it's left
+	 */
+	private List<String> remainingGadgets(){
+		List<String> remaining = new ArrayList<>();
+		for(String name: names){
+			for(int i = shardMap(name).get(name).get(); i > 0; i--){
+				remaining.add(name);
+			}
+		}
+
+		return remaining;
+	}
+
 	private static class InstanceHolder {
 		public static final Inventory instance = new Inventory();
 	}
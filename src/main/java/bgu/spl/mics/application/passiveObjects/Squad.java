@@ -1,6 +1,7 @@
 package bgu.spl.mics.application.passiveObjects;
 import bgu.spl.mics.Utils;
 import bgu.spl.mics.application.publishers.TimeService;
+import bgu.spl.mics.loggers.Level;
 import bgu.spl.mics.loggers.Loggers;
 
 import java.util.*;
@@ -16,9 +17,16 @@ public class Squad {
 
 	private Map<String, Agent> agents;
 
+	/**
+	 * The serial numbers of the agents, interned to dense ids when the squad is loaded
+	 */
+	private Map<String, Integer> ids;
+	private Agent[] agentsById;
+	private AgentAvailability availability;
+
 	// NOTE: should be private, but it's said not to change signatures of public methods
 	public Squad() {
-		this.agents = new HashMap<>();
+		load(new Agent[0]);
 	}
 
 	/**
@@ -35,23 +43,35 @@ public class Squad {
 	 * 						of the squad.
 	 */
 	public void load (Agent[] agents) {
+		Map<String, Agent> agentsMap = new HashMap<>();
+		Map<String, Integer> ids = new HashMap<>();
+		Agent[] agentsById = new Agent[agents.length];
+		AgentAvailability availability = new AgentAvailability(agents.length);
 		for(Agent agent: agents){
-			this.agents.put(agent.getSerialNumber(), agent);
+			// A serial number which appears more than once keeps the id of its first agent
+			int id = ids.computeIfAbsent(agent.getSerialNumber(), serial -> ids.size());
+			// An agent which was acquired before the squad was loaded stays acquired
+			boolean available = agent.isAvailable();
+			agent.bind(availability, id);
+			if(!available){
+				availability.tryAcquire(id);
+			}
+			agentsMap.put(agent.getSerialNumber(), agent);
+			agentsById[id] = agent;
 		}
+
+		this.agents = agentsMap;
+		this.ids = ids;
+		this.agentsById = agentsById;
+		this.availability = availability;
 	}
 
 	/**
 	 * Releases agents.
-	 * Sort it, and then release from end to start
+	 * Serial numbers of agents which are not in the squad are ignored.
 	 */
 	public void releaseAgents(List<String> serials){
-		serials.sort(String.CASE_INSENSITIVE_ORDER);
-		for(int i=serials.size()-1; i > -1; i=i-1){
-			Agent agent = agents.getOrDefault(serials.get(i), null);
-			if(agent != null){
-				agent.release();
-			}
-		}
+		availability.releaseAll(toIds(serials, false));
 	}
 
 	/**
@@ -60,7 +80,7 @@ public class Squad {
 	 */
 	public void sendAgents(List<String> serials, int time) throws InterruptedException {
 		int timeTickDuration = TimeService.getTimeTickDuration();
-		Thread.sleep(time*timeTickDuration);
+		Utils.managedSleep(time*timeTickDuration);
 		releaseAgents(serials);
 	}
 
@@ -70,19 +90,16 @@ public class Squad {
 	 * @return ‘false’ if an agent of serialNumber ‘serial’ is missing, and ‘true’ otherwise
 	 */
 	public boolean getAgents(List<String> serials) throws InterruptedException {
-		boolean allExist = checkAllExist(serials);
+		int[] agentIds = toIds(serials, true);
+		boolean allExist = agentIds != null;
 		if(allExist) {
-			serials.sort(String.CASE_INSENSITIVE_ORDER);
-			Loggers.MnMPLogger.appendLine(Thread.currentThread().getName() + " getting agents " + Utils.listToString(serials));
-			for (String serial : serials) {
-				Loggers.MnMPLogger.appendLine(Thread.currentThread().getName() + " trying to acquire " + serial);
-				Agent agent = agents.get(serial);
-				agent.acquire();
-				Loggers.MnMPLogger.appendLine(Thread.currentThread().getName() + " acquired " + serial);
-			}
+			// All the agents are acquired at once, so there's no need to acquire them in a global order
+			Loggers.MnMPLogger.appendLine(Level.Debug, "{} getting agents {}", Thread.currentThread().getName(), serials);
+			availability.acquireAll(agentIds);
+			Loggers.MnMPLogger.appendLine(Level.Debug, "{} acquired {}", Thread.currentThread().getName(), serials);
 		}
 		else {
-			Loggers.MnMPLogger.appendLine(Thread.currentThread().getName() + " got agents that do not exist " + Utils.listToString(serials));
+			Loggers.MnMPLogger.appendLine(Level.Warn, "{} got agents that do not exist {}", Thread.currentThread().getName(), serials);
 		}
 
 		return allExist;
@@ -94,9 +111,9 @@ public class Squad {
      * @return a list of the names of the agents with the specified serials.
      */
     public List<String> getAgentsNames(List<String> serials){
-		List<String> names = new LinkedList<>();
+		List<String> names = new ArrayList<>(serials.size());
 		for(String serial: serials){
-			names.add(agents.get(serial).getName());
+			names.add(agentsById[ids.get(serial)].getName());
 		}
 
 		return names;
@@ -114,22 +131,26 @@ public class Squad {
 	}
 
 	/**
-	 * Check if all agents are exist according to the serials
+	 * Looks up the ids of the agents
 	 * @param serials list of serials for the agents
-	 * @return true if all serials are exist
+	 * @param requireAll Whether every serial must be of an agent in the squad
+	 * @return The ids of the agents, without the serials which are not in the squad
+	 * 			(or null if there are such serials and {@code requireAll} is set)
 	 */
-	private boolean checkAllExist(List<String> serials){
-		boolean allExist = true;
-
+	private int[] toIds(List<String> serials, boolean requireAll){
+		int[] agentIds = new int[serials.size()];
+		int count = 0;
 		for(String serial: serials){
-			Agent agent = agents.getOrDefault(serial, null);
-			if(agent == null){
-				allExist = false;
-				break;
+			Integer id = ids.get(serial);
+			if(id != null){
+				agentIds[count++] = id;
+			}
+			else if(requireAll){
+				return null;
 			}
 		}
 
-		return allExist;
+		return count == agentIds.length ? agentIds : Arrays.copyOf(agentIds, count);
 	}
 
 }
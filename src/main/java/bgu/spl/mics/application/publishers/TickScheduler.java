@@ -0,0 +1,144 @@
+package bgu.spl.mics.application.publishers;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs a task once every tick on the calling thread, which is dedicated to it.
+ * <p>
+ * Tick {@code n} is due at {@code start + n * tickDuration}. Waiting for an absolute deadline
+ * (rather than sleeping a tick's duration after the previous tick) compensates for the time
+ * the task itself takes, so the ticks don't drift.
+ * When the task takes longer than a tick, the later ticks are late, and the {@link MissedTickPolicy}
+ * decides how to recover.
+ * <p>
+ * In virtual time, a tick is due as soon as the work of the previous one is done (see {@link IdleAwaiter}),
+ * and at most a tick's duration after it, so a simulation runs as fast as it can be processed.
+ */
+public class TickScheduler {
+    /**
+     * What to do with the ticks whose deadline has passed while a previous tick was still running
+     */
+    public enum MissedTickPolicy {
+        /**
+         * Run the missed ticks back to back until the schedule is caught up,
+         * so the amount of ticks in a period of time stays the same
+         */
+        CatchUp,
+
+        /**
+         * Run the next tick immediately and continue the schedule from it,
+         * so the ticks keep their spacing and the schedule is delayed by the lost time
+         */
+        Skip
+    }
+
+    /**
+     * The task run every tick
+     */
+    public interface TickTask {
+        /**
+         * @param tick The tick, starting at 1
+         */
+        void run(int tick) throws InterruptedException;
+    }
+
+    /**
+     * Notified after every tick of how late it completed
+     */
+    public interface TickLagListener {
+        /**
+         * @param tick The tick
+         * @param lagNanos The time between the deadline of the tick and when its task has completed
+         */
+        void onTickLag(int tick, long lagNanos);
+    }
+
+    /**
+     * Tells when the work caused by the previous ticks is done, used for running in virtual time
+     */
+    public interface IdleAwaiter {
+        /**
+         * Waits until the work caused by the previous ticks is done
+         * @param timeoutNanos The maximal time to wait
+         */
+        void awaitIdle(long timeoutNanos) throws InterruptedException;
+    }
+
+    private final long tickNanos;
+    private final MissedTickPolicy missedTickPolicy;
+    private final TickLagListener lagListener;
+    private final IdleAwaiter idleAwaiter;
+
+    /**
+     * Initializes a new scheduler
+     * @param tickDuration The duration of a tick in milliseconds
+     * @param missedTickPolicy What to do with ticks which are late
+     * @param lagListener Notified of the lag of every tick
+     */
+    public TickScheduler(long tickDuration, MissedTickPolicy missedTickPolicy, TickLagListener lagListener) {
+        this(tickDuration, missedTickPolicy, lagListener, null);
+    }
+
+    /**
+     * Initializes a new scheduler which runs in virtual time
+     * @param tickDuration The maximal duration of a tick in milliseconds
+     * @param lagListener Notified of the lag of every tick
+     * @param idleAwaiter Tells when the work of the previous tick is done
+     */
+    public TickScheduler(long tickDuration, TickLagListener lagListener, IdleAwaiter idleAwaiter) {
+        this(tickDuration, MissedTickPolicy.Skip, lagListener, idleAwaiter);
+    }
+
+    private TickScheduler(long tickDuration, MissedTickPolicy missedTickPolicy, TickLagListener lagListener, IdleAwaiter idleAwaiter) {
+        if (tickDuration <= 0) {
+            throw new IllegalArgumentException("tickDuration must be positive.");
+        }
+
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickDuration);
+        this.missedTickPolicy = missedTickPolicy;
+        this.lagListener = lagListener;
+        this.idleAwaiter = idleAwaiter;
+    }
+
+    /**
+     * Runs the task for the ticks 1 to {@code lastTick}, the first one a tick after this method is called.
+     * Returns after the last tick.
+     * @param lastTick The last tick
+     * @param task The task
+     * @throws InterruptedException if interrupted while waiting for a tick (or by the task)
+     */
+    public void run(int lastTick, TickTask task) throws InterruptedException {
+        long deadline = System.nanoTime();
+        for (int tick = 1; tick <= lastTick; tick++) {
+            deadline += tickNanos;
+            if (idleAwaiter != null) {
+                idleAwaiter.awaitIdle(deadline - System.nanoTime());
+                // The tick is due once the previous one is done, a late tick is only one which timed out
+                deadline = Math.min(deadline, System.nanoTime());
+            }
+            else {
+                waitUntil(deadline);
+            }
+
+            long late = System.nanoTime() - deadline;
+            if (late >= tickNanos && missedTickPolicy == MissedTickPolicy.Skip) {
+                // Drop the deadlines which have already passed, this tick takes the latest of them
+                deadline += (late / tickNanos) * tickNanos;
+            }
+
+            task.run(tick);
+            lagListener.onTickLag(tick, System.nanoTime() - deadline);
+        }
+    }
+
+    private static void waitUntil(long deadline) throws InterruptedException {
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+    }
+}
@@ -1,13 +1,12 @@
 package bgu.spl.mics.application.publishers;
 
-import bgu.spl.mics.Broadcast;
 import bgu.spl.mics.Publisher;
 import bgu.spl.mics.application.messages.LastTickBroadcast;
 import bgu.spl.mics.application.messages.TickBroadcast;
+import bgu.spl.mics.loggers.Level;
 import bgu.spl.mics.loggers.Loggers;
 
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.concurrent.TimeUnit;
 
 /**
  * TimeService is the global system timer There is only one instance of this Publisher.
@@ -19,15 +18,37 @@ import java.util.TimerTask;
  * You MAY change constructor signatures and even add new public constructors.
  */
 public class TimeService extends Publisher {
-	private static final int TICK_MS = 100;
-	private int duration;
-	private int tick;
-	private final Object notify;
+	private static final int DEFAULT_TICK_MS = 100;
+
+	/**
+	 * The tick duration of the time service, there's only one
+	 */
+	private static volatile int tickDuration = DEFAULT_TICK_MS;
+
+	private final int duration;
+	private final TickScheduler scheduler;
+	private long maxLagNanos;
+	private long totalLagNanos;
 
 	public TimeService(int duration, String name) {
+		this(duration, DEFAULT_TICK_MS, TickScheduler.MissedTickPolicy.CatchUp, false, name);
+	}
+
+	/**
+	 * @param duration The amount of ticks, the last one is a {@link LastTickBroadcast}
+	 * @param tickDuration The duration of a tick in milliseconds, the maximal one in virtual time
+	 * @param missedTickPolicy What to do with ticks which are late because sending the previous ones took too long
+	 * @param virtualTime Whether to send each tick as soon as the subscribers are done with the previous one
+	 *                    (waiting at most {@code tickDuration}) instead of on a fixed schedule
+	 * @param name The name of the time service
+	 */
+	public TimeService(int duration, int tickDuration, TickScheduler.MissedTickPolicy missedTickPolicy, boolean virtualTime, String name) {
 		super(name);
 		this.duration = duration;
-		notify = new Object();
+		this.scheduler = virtualTime ?
+			new TickScheduler(tickDuration, this::onTickLag, this::awaitSubscribersIdle) :
+			new TickScheduler(tickDuration, missedTickPolicy, this::onTickLag);
+		TimeService.tickDuration = tickDuration;
 	}
 
 	@Override
@@ -37,18 +58,12 @@ public class TimeService extends Publisher {
 
 	@Override
 	public void run() {
-		tick = 1;
-		Timer timer = new Timer(getName());
-		TimerTask timerTask = new TimeTickSchedule();
-		timer.schedule(timerTask, TICK_MS, TICK_MS);
-
-		//Wait for the timer to complete its tasks
+		maxLagNanos = 0;
+		totalLagNanos = 0;
 		try {
-			synchronized (notify) {
-				notify.wait();
-				timer.cancel();
-				timer.purge();
-			}
+			scheduler.run(duration, this::sendTick);
+			Loggers.MnMPLogger.appendLine(Level.Info, () -> getName() + " tick lag: max " + toMillis(maxLagNanos) + "ms, mean " +
+				toMillis(duration > 0 ? totalLagNanos / duration : 0) + "ms");
 		} catch (InterruptedException e) {
 			Thread.currentThread().interrupt();
 		}
@@ -59,34 +74,38 @@ public class TimeService extends Publisher {
 	 * @return time tick duration
 	 */
 	public static int getTimeTickDuration(){
-		return TICK_MS;
+		return tickDuration;
 	}
 
-	private class TimeTickSchedule extends TimerTask{
+	private void awaitSubscribersIdle(long timeoutNanos) throws InterruptedException {
+		getSimplePublisher().awaitQuiescence(timeoutNanos, TimeUnit.NANOSECONDS);
+	}
 
-		@Override
-		public void run() {
-			if(tick != duration){
+	private void sendTick(int tick) throws InterruptedException {
+		if (tick != duration) {
+			if (Loggers.MnMPLogger.isEnabled(Level.Debug)) {
 				Loggers.MnMPLogger.appendLine(getName() + " sending tick " + tick);
-				TickBroadcast tickBroadcast = new TickBroadcast(tick);
-				sendBroadcast(tickBroadcast);
-				tick = tick +1;
-			} else {
-				Loggers.MnMPLogger.appendLine(getName() + " sending last tick");
-				LastTickBroadcast lastTickBroadcast = new LastTickBroadcast(tick);
-				sendBroadcast(lastTickBroadcast);
-				synchronized (notify){
-					notify.notifyAll();
-				}
 			}
+			sendBroadcast(new TickBroadcast(tick));
 		}
+		else {
+			Loggers.MnMPLogger.appendLine(Level.Debug, "{} sending last tick", getName());
+			sendBroadcast(new LastTickBroadcast(tick));
+		}
+	}
 
-		private void sendBroadcast(Broadcast b) {
-			try {
-				TimeService.this.sendBroadcast(b);
-			} catch (InterruptedException ignored) {
-			}
+	/**
+	 * Reports how long after its deadline a tick was delivered to the queues of its subscribers
+	 */
+	private void onTickLag(int tick, long lagNanos) {
+		maxLagNanos = Math.max(maxLagNanos, lagNanos);
+		totalLagNanos += lagNanos;
+		if (Loggers.MnMPLogger.isEnabled(Level.Debug)) {
+			Loggers.MnMPLogger.appendLine(getName() + " tick " + tick + " delivered " + toMillis(lagNanos) + "ms after its deadline");
 		}
 	}
 
+	private static String toMillis(long nanos) {
+		return String.format("%.3f", nanos / 1_000_000.0);
+	}
 }
@@ -19,12 +19,18 @@ import java.util.concurrent.CountDownLatch;
 public class Intelligence extends Subscriber {
 
 	private final CountDownLatch subRegisterAwaiter;
-	private Map<Integer, LinkedList<MissionInfo>> missionInfos;
+	private NavigableMap<Integer, LinkedList<MissionInfo>> missionInfos;
+
+	/**
+	 * The last tick whose missions were sent
+	 */
+	private int lastTick;
 
 	public Intelligence(String name, MissionInfo[] missions, CountDownLatch subRegisterAwaiter) {
 		super(name);
 		this.subRegisterAwaiter = subRegisterAwaiter;
-		missionInfos = new HashMap<>();
+		missionInfos = new TreeMap<>();
+		lastTick = 0;
 		for(MissionInfo mission : missions){
 			List<MissionInfo> list =  missionInfos.computeIfAbsent(mission.getTimeIssued(), t -> new LinkedList<>());
 			list.add(mission);
@@ -40,13 +46,18 @@ public class Intelligence extends Subscriber {
 
 	private void TickBroadcastCallBack(TickBroadcast tick) throws InterruptedException {
 		int tickTime = tick.getTick();
-		LinkedList<MissionInfo> list =  missionInfos.getOrDefault(tickTime, null);
-		if(list != null){
+		if(tickTime <= lastTick){
+			return;
+		}
+
+		// Ticks may be skipped when this subscriber lags behind (only the latest one is received),
+		// so send the missions of every tick since the last one
+		for (LinkedList<MissionInfo> list : missionInfos.subMap(lastTick, false, tickTime, true).values()) {
 			for (MissionInfo mission: list) {
 				sendEvent(new MissionReceivedEvent(mission));
 			}
 		}
-
+		lastTick = tickTime;
 	}
 
 	private void lastTickBroadcast(LastTickBroadcast lastTickBroadcast){
@@ -7,10 +7,13 @@ import bgu.spl.mics.application.messages.eventsInfo.*;
 import bgu.spl.mics.application.passiveObjects.Diary;
 import bgu.spl.mics.application.passiveObjects.MissionInfo;
 import bgu.spl.mics.application.passiveObjects.Report;
+import bgu.spl.mics.loggers.Level;
 import bgu.spl.mics.loggers.Loggers;
 
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * M handles ReadyEvent - fills a report and sends agents to mission.
@@ -24,12 +27,24 @@ public class M extends Subscriber {
 	private final int serialNumber;
 	private int lastTick;
 	private final Diary diary;
+	private final Counter counter;
 	private final CountDownLatch subRegisterAwaiter;
 
 	public M(int serialNumber, Diary diary, CountDownLatch subRegisterAwaiter) {
+		this(serialNumber, diary, new Counter(1), subRegisterAwaiter);
+	}
+
+	/**
+	 * @param serialNumber The serial number of the M
+	 * @param diary The diary the reports are added to
+	 * @param counter Counts the Ms which have not terminated yet, shared by all of them
+	 * @param subRegisterAwaiter Counted down once the M has subscribed
+	 */
+	public M(int serialNumber, Diary diary, Counter counter, CountDownLatch subRegisterAwaiter) {
 		super("M" + serialNumber);
 		this.serialNumber = serialNumber;
 		this.diary = diary;
+		this.counter = counter;
 		this.subRegisterAwaiter = subRegisterAwaiter;
 	}
 
@@ -41,8 +56,18 @@ public class M extends Subscriber {
 		subRegisterAwaiter.countDown();
 	}
 
-	private void onLastTimeTick(LastTickBroadcast b) {
+	private void onLastTimeTick(LastTickBroadcast b) throws InterruptedException {
 		onTimeTick(b);
+		terminateAndNotify();
+	}
+
+	/**
+	 * Terminates, letting the Qs terminate as well if this is the last M
+	 */
+	private void terminateAndNotify() throws InterruptedException {
+		if (counter.decrement() == 0) {
+			sendBroadcast(new MsTerminatedBroadcast());
+		}
 		terminate();
 	}
 
@@ -51,7 +76,9 @@ public class M extends Subscriber {
 	}
 
 	private void onMissionReceived(MissionReceivedEvent e) throws InterruptedException {
-		Loggers.MnMPLogger.appendLine(getName() + " handling on tick " + lastTick + ": " + e);
+		if (Loggers.MnMPLogger.isEnabled(Level.Debug)) {
+			Loggers.MnMPLogger.appendLine(getName() + " handling on tick " + lastTick + ": " + e);
+		}
 
 		MissionInfo missionInfo = e.getMissionInfo();
 		diary.incrementTotal();
@@ -59,23 +86,44 @@ public class M extends Subscriber {
 		MissionPreparation missionPreparation = checkValidity(missionInfo);
 		switch (missionPreparation.getStatus()) {
 			case Terminate:
-				terminate();
+				// The needs were requested together, one of them may have been acquired before another found no one
+				giveBackNeeds(missionInfo, missionPreparation);
+				terminateAndNotify();
 				break;
 			case Execute:
-				Loggers.MnMPLogger.appendLine(getName() + " executing mission " + missionInfo.getMissionName());
-				sendAgents(missionInfo);
+				Loggers.MnMPLogger.appendLine(Level.Debug, "{} executing mission {}", getName(), missionInfo.getMissionName());
+				if (sendAgents(missionInfo) == null) {
+					// No moneypenny sends agents anymore, the mission can't be executed
+					Loggers.MnMPLogger.appendLine(Level.Debug, "{} terminating, no one sends agents to mission {}", getName(), missionInfo.getMissionName());
+					missionPreparation.setShouldReleaseAgents(true);
+					missionPreparation.setShouldReturnGadget(true);
+					giveBackNeeds(missionInfo, missionPreparation);
+					terminateAndNotify();
+					break;
+				}
 				reportMission(missionInfo, missionPreparation);
 				break;
 			case Abort:
-				Loggers.MnMPLogger.appendLine(getName() + " aborting mission " + missionInfo.getMissionName());
-				if (missionPreparation.shouldReleaseAgents()) {
-					Loggers.MnMPLogger.appendLine(getName() + " releasing agents for mission " + missionInfo.getMissionName());
-					releaseAgents(missionInfo);
-				}
+				Loggers.MnMPLogger.appendLine(Level.Debug, "{} aborting mission {}", getName(), missionInfo.getMissionName());
+				giveBackNeeds(missionInfo, missionPreparation);
 				break;
 		}
 	}
 
+	/**
+	 * Releases the agents and returns the gadget which were acquired for a mission which won't be executed
+	 */
+	private void giveBackNeeds(MissionInfo missionInfo, MissionPreparation missionPreparation) throws InterruptedException {
+		if (missionPreparation.shouldReleaseAgents()) {
+			Loggers.MnMPLogger.appendLine(Level.Debug, "{} releasing agents for mission {}", getName(), missionInfo.getMissionName());
+			releaseAgents(missionInfo);
+		}
+		if (missionPreparation.shouldReturnGadget()) {
+			Loggers.MnMPLogger.appendLine(Level.Debug, "{} returning gadget for mission {}", getName(), missionInfo.getMissionName());
+			returnGadget(missionInfo);
+		}
+	}
+
 	private MissionPreparation checkValidity(MissionInfo missionInfo) throws InterruptedException {
 		MissionPreparation missionPreparation = new MissionPreparation();
 		MissionPreparationNeedProvider<?>[] missionNeeds = new MissionPreparationNeedProvider<?>[] {
@@ -83,22 +131,36 @@ public class M extends Subscriber {
 			new GadgetNeedProvider(missionInfo, missionPreparation),
 		};
 
+		// Request all the needs before waiting for any of them, so they're handled concurrently
+		// and preparing the mission takes as long as the slowest need rather than all of them together
 		for (MissionPreparationNeedProvider<?> missionNeed : missionNeeds) {
-			Loggers.MnMPLogger.appendLine(getName() + " trying to fulfill need " + missionNeed.getName());
-			if (!missionNeed.tryFulfillNeed()) {
-				Loggers.MnMPLogger.appendLine(getName() + ": Need " + missionNeed.getName() + " failed to be fulfilled");
-				// Abort the mission because one of the mission prerequisite failed to be fulfilled
-				return missionPreparation;
+			Loggers.MnMPLogger.appendLine(Level.Debug, "{} trying to fulfill need {}", getName(), missionNeed.getName());
+			missionNeed.requestNeed();
+		}
+
+		// Wait for every need, even after one has failed, to know which ones were acquired and must be given back
+		boolean allFulfilled = true;
+		for (MissionPreparationNeedProvider<?> missionNeed : missionNeeds) {
+			if (!missionNeed.awaitNeedFulfilled()) {
+				Loggers.MnMPLogger.appendLine(Level.Debug, "{}: Need {} failed to be fulfilled", getName(), missionNeed.getName());
+				allFulfilled = false;
 			}
 		}
 
+		if (!allFulfilled) {
+			// Abort the mission because one of the mission prerequisite failed to be fulfilled
+			return missionPreparation;
+		}
+
 		if (lastTick >= missionInfo.getTimeExpired()) {
-			Loggers.MnMPLogger.appendLine(getName() + ": Time expired for mission " + missionInfo.getMissionName());
-			// Mission time's expired
+			Loggers.MnMPLogger.appendLine(Level.Debug, "{}: Time expired for mission {}", getName(), missionInfo.getMissionName());
+			// Mission time's expired, the gadget is considered used (as it always was)
+			missionPreparation.setShouldReturnGadget(false);
 			return missionPreparation;
 		}
 
 		missionPreparation.setShouldReleaseAgents(false);
+		missionPreparation.setShouldReturnGadget(false);
 		missionPreparation.setStatus(ActionStatus.Execute);
 		return missionPreparation;
 	}
@@ -108,11 +170,19 @@ public class M extends Subscriber {
 		sendEvent(new ReleaseAgentsEvent(new ReleaseAgentsEventArgs(agentsSerialNumbers)));
 	}
 
-	private void sendAgents(MissionInfo missionInfo) throws InterruptedException {
+	private void returnGadget(MissionInfo missionInfo) throws InterruptedException {
+		String gadget = missionInfo.getGadget();
+		sendEvent(new ReturnGadgetEvent(new ReturnGadgetEventArgs(gadget)));
+	}
+
+	/**
+	 * @return The future of the mission's execution, null if no moneypenny sends agents anymore
+	 */
+	private Future<Void> sendAgents(MissionInfo missionInfo) throws InterruptedException {
 		List<String> agentsSerialNumbers = missionInfo.getSerialAgentsNumbers();
 		int duration = missionInfo.getDuration();
 		String missionName = missionInfo.getMissionName();
-		sendEvent(new SendAgentsEvent(new SendAgentsEventArgs(agentsSerialNumbers, duration, missionName)));
+		return sendEvent(new SendAgentsEvent(new SendAgentsEventArgs(agentsSerialNumbers, duration, missionName)));
 	}
 
 	private void reportMission(MissionInfo missionInfo, MissionPreparation missionPreparation) {
@@ -180,7 +250,14 @@ public class M extends Subscriber {
 
 		@Override
 		protected boolean hasBeenFulfilled() {
-			return missionPreparation.isGadgetAvailable();
+			boolean available = missionPreparation.isGadgetAvailable();
+			if (available) {
+				// Only matters if the agents couldn't be acquired: the gadget was taken concurrently
+				// with acquiring them, so it must be returned when the mission is aborted
+				missionPreparation.setShouldReturnGadget(true);
+			}
+
+			return available;
 		}
 
 		@Override
@@ -200,6 +277,13 @@ public class M extends Subscriber {
 		 */
 		protected final MissionPreparation missionPreparation;
 
+		/**
+		 * The future of the request for the need, null if no one could handle it.
+		 * It fails if the request was rejected (see {@link bgu.spl.mics.OverflowPolicy#Fail}),
+		 * or if the handler has unregistered before handling it.
+		 */
+		private Future<T> future;
+
 		/**
 		 * Initialize a new instance with the given mission information and preparation instances
 		 * @param missionInfo The mission information
@@ -211,12 +295,24 @@ public class M extends Subscriber {
 		}
 
 		/**
-		 * Tries to send events to check a prerequisite of the mission
-		 * @return Whether the need has been fulfilled and M can continue fulfilling the rest of the prerequisites
+		 * Sends the events to check a prerequisite of the mission, without waiting for their result
 		 */
-		public boolean tryFulfillNeed() throws InterruptedException {
-			T result = sendNeedFulfillRequest();
+		public void requestNeed() throws InterruptedException {
+			future = sendNeedFulfillRequest();
+		}
+
+		/**
+		 * Waits for the result of the request sent by {@link #requestNeed()}
+		 * @return Whether the need has been fulfilled and M can continue with the mission
+		 */
+		public boolean awaitNeedFulfilled() throws InterruptedException {
+			T result = future != null ? future.get() : null;
+			if (future != null && future.getFailure() instanceof RejectedExecutionException) {
+				// Rejected by a full queue, the handlers are still there: only this mission is aborted
+				return false;
+			}
 			if (result == null) {
+				// No one could handle it, or the handler has unregistered before handling it
 				missionPreparation.setStatus(ActionStatus.Terminate);
 				return false;
 			}
@@ -246,17 +342,38 @@ public class M extends Subscriber {
 		 */
 		protected abstract boolean hasBeenFulfilled();
 
-		private T sendNeedFulfillRequest() throws InterruptedException {
-			T result = null;
-			for (int i = 0; i < MAX_MISSION_NEED_TRIES; ++i) {
-				Future<T> future = seekNeedInformation();
-				if (future != null) {
-					result = future.get();
-					break;
-				}
+		private Future<T> sendNeedFulfillRequest() throws InterruptedException {
+			Future<T> future = null;
+			for (int i = 0; i < MAX_MISSION_NEED_TRIES && future == null; ++i) {
+				future = seekNeedInformation();
 			}
 
-			return result;
+			return future;
+		}
+	}
+
+	/**
+	 * Counts the Ms which have not terminated yet, the last one lets the Qs know (see {@link MsTerminatedBroadcast}).
+	 * The Qs keep taking back the gadgets of missions which won't be executed until every M has terminated,
+	 * even after the last tick.
+	 */
+	public static class Counter {
+		private final AtomicInteger count;
+
+		/**
+		 * Initializes a new counter with the given count
+		 * @param count The amount of Ms
+		 */
+		public Counter(int count) {
+			this.count = new AtomicInteger(count);
+		}
+
+		/**
+		 * Notifies that an M has terminated
+		 * @return The amount of Ms which have not terminated yet
+		 */
+		private int decrement() {
+			return count.decrementAndGet();
 		}
 	}
 
@@ -270,6 +387,7 @@ public class M extends Subscriber {
 		private AgentsAvailableResult agentsAvailableResult;
 		private GadgetAvailableResult gadgetAvailableResult;
 		private boolean shouldReleaseAgents;
+		private boolean shouldReturnGadget;
 		private ActionStatus status;
 
 		/**
@@ -279,6 +397,7 @@ public class M extends Subscriber {
 			this.agentsAvailableResult = null;
 			this.gadgetAvailableResult = null;
 			shouldReleaseAgents = false;
+			shouldReturnGadget = false;
 			status = ActionStatus.Abort;
 		}
 
@@ -348,6 +467,21 @@ public class M extends Subscriber {
 			this.shouldReleaseAgents = shouldReleaseAgents;
 		}
 
+		/**
+		 * @return Whether the gadget should be returned to the inventory
+		 */
+		public boolean shouldReturnGadget() {
+			return shouldReturnGadget;
+		}
+
+		/**
+		 * Sets whether the gadget should be returned to the inventory
+		 * @param shouldReturnGadget The value to set to
+		 */
+		public void setShouldReturnGadget(boolean shouldReturnGadget) {
+			this.shouldReturnGadget = shouldReturnGadget;
+		}
+
 		/**
 		 * @return The status of the mission
 		 */
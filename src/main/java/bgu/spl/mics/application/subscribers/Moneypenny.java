@@ -1,11 +1,14 @@
 package bgu.spl.mics.application.subscribers;
 
 import bgu.spl.mics.Subscriber;
+import bgu.spl.mics.Utils;
+import bgu.spl.mics.loggers.Level;
 import bgu.spl.mics.loggers.Loggers;
 import bgu.spl.mics.application.messages.AgentsAvailableEvent;;
 import bgu.spl.mics.application.messages.LastTickBroadcast;
 import bgu.spl.mics.application.messages.ReleaseAgentsEvent;
 import bgu.spl.mics.application.messages.SendAgentsEvent;
+import bgu.spl.mics.application.messages.TickBroadcast;
 import bgu.spl.mics.application.messages.eventsInfo.AgentsAvailableResult;
 import bgu.spl.mics.application.messages.eventsInfo.ReleaseAgentsEventArgs;
 import bgu.spl.mics.application.messages.eventsInfo.SendAgentsEventArgs;
@@ -13,6 +16,7 @@ import bgu.spl.mics.application.passiveObjects.Squad;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.PriorityQueue;
 import java.util.Set;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -33,6 +37,12 @@ public class Moneypenny extends Subscriber {
 	private SubscribeTO subscribeTo;
 	private final CountDownLatch subRegisterAwaiter;
 	private List<String> allAgentsSerialNumbers;
+	private int lastTick;
+
+	/**
+	 * The missions this moneypenny has sent agents to and haven't ended yet, ordered by the tick in which they end
+	 */
+	private final PriorityQueue<MissionExecution> executingMissions;
 
 	public Moneypenny(int id, Releaser releaser, SubscribeTO subscribeTo, CountDownLatch subRegisterAwaiter) {
 		super("Moneypenny"+ id);
@@ -41,6 +51,8 @@ public class Moneypenny extends Subscriber {
 		this.subscribeTo = subscribeTo;
 		this.subRegisterAwaiter = subRegisterAwaiter;
 		squad = Squad.getInstance();
+		lastTick = 0;
+		executingMissions = new PriorityQueue<>();
 	}
 
 	/**
@@ -53,6 +65,7 @@ public class Moneypenny extends Subscriber {
 		if(subscribeTo == SubscribeTO.AgentsAvailable) {
 			subscribeEvent(AgentsAvailableEvent.class, this::agentsAvailableCallback);
 		} else if(subscribeTo == SubscribeTO.SendAndRelease) {
+			subscribeBroadcast(TickBroadcast.class, this::tickBroadcastCallback);
 			subscribeEvent(SendAgentsEvent.class, this::sendAgentsCallback);
 			subscribeEvent(ReleaseAgentsEvent.class, this::releaseAgentsCallback);
 		}
@@ -67,31 +80,69 @@ public class Moneypenny extends Subscriber {
 		List<String> agents = aAE.getArgs().agentsSerialNumbers();
 		boolean agentsExist = squad.getAgents(agents);
 		releaser.notifyHelpers();
+		if (agentsExist && releaser.isReleasing()) {
+			// The agents were released because the time is up, not by the mission which held them,
+			// so no mission may be executed with them
+			releaseAgents(agents);
+			Loggers.DefaultLogger.appendLine(Level.Debug, "{} completing {} after the last tick", getName(), aAE);
+			complete(aAE, null);
+			return;
+		}
 
-		Loggers.DefaultLogger.appendLine(getName() + " completing " + aAE);
+		Loggers.DefaultLogger.appendLine(Level.Debug, "{} completing {}", getName(), aAE);
 		AgentsAvailableResult agentsAvailableResult = new AgentsAvailableResult(agentsExist,
 				agentsExist ? squad.getAgentsNames(agents) : null, agents, id);
 		complete(aAE, agentsAvailableResult);
 	}
 
-	private void sendAgentsCallback(SendAgentsEvent sendAgentsEvent) throws InterruptedException {
+	/**
+	 * Sends the agents to the mission without waiting for it to end:
+	 * the agents are released (and the event is completed) by the tick in which the mission ends,
+	 * so meanwhile this moneypenny keeps handling other events.
+	 * @param sendAgentsEvent SendAgentsEvent
+	 */
+	private void sendAgentsCallback(SendAgentsEvent sendAgentsEvent) {
 		SendAgentsEventArgs sendAgentsEventArgs = sendAgentsEvent.getArgs();
-		Loggers.DefaultLogger.appendLine(getName() + " executing mission: '" + sendAgentsEvent.getArgs().getMissionName() + "'");
-		squad.sendAgents(sendAgentsEventArgs.serialAgentsNumbers(),
-				sendAgentsEventArgs.duration());
+		Loggers.DefaultLogger.appendLine(Level.Debug, "{} executing mission: '{}'", getName(), sendAgentsEventArgs.getMissionName());
+		executingMissions.add(new MissionExecution(sendAgentsEvent, lastTick + sendAgentsEventArgs.duration()));
+		endMissions();
+	}
+
+	private void tickBroadcastCallback(TickBroadcast tickBroadcast) {
+		lastTick = tickBroadcast.getTick();
+		endMissions();
+	}
+
+	/**
+	 * Ends the missions whose duration has passed
+	 */
+	private void endMissions() {
+		while (!executingMissions.isEmpty() && executingMissions.peek().endTick <= lastTick) {
+			endMission(executingMissions.poll().sendAgentsEvent);
+		}
+	}
+
+	private void endMission(SendAgentsEvent sendAgentsEvent) {
+		releaseAgents(sendAgentsEvent.getArgs().serialAgentsNumbers());
 		complete(sendAgentsEvent, null);
-		Loggers.DefaultLogger.appendLine("Mission ended: '" + sendAgentsEvent.getArgs().getMissionName() + "'");
+		Loggers.DefaultLogger.appendLine(Level.Debug, "Mission ended: '{}'", sendAgentsEvent.getArgs().getMissionName());
 	}
 
 	private void releaseAgentsCallback(ReleaseAgentsEvent releaseAgentsEvent){
-		Loggers.DefaultLogger.appendLine(getName() + " handling " + releaseAgentsEvent);
+		Loggers.DefaultLogger.appendLine(Level.Debug, "{} handling {}", getName(), releaseAgentsEvent);
 		ReleaseAgentsEventArgs releaseAgentsEventArgs = releaseAgentsEvent.getArgs();
 		releaseAgents(releaseAgentsEventArgs.serialAgentsNumbers());
-		Loggers.DefaultLogger.appendLine(getName() + " completing " + releaseAgentsEvent);
+		Loggers.DefaultLogger.appendLine(Level.Debug, "{} completing {}", getName(), releaseAgentsEvent);
 		complete(releaseAgentsEvent, null);
 	}
 
 	private void lastTickBroadcastCallback(LastTickBroadcast lastTickBroadcast) throws InterruptedException {
+		// The time is up, so the missions which are still executing end now.
+		// Their agents are released because of that, so they may not be sent to other missions.
+		releaser.startReleasing();
+		while (!executingMissions.isEmpty()) {
+			endMission(executingMissions.poll().sendAgentsEvent);
+		}
 		cleanupAndTerminate();
 	}
 
@@ -131,6 +182,24 @@ public class Moneypenny extends Subscriber {
 		return allAgentsSerialNumbers;
 	}
 
+	/**
+	 * A mission which agents were sent to
+	 */
+	private static class MissionExecution implements Comparable<MissionExecution> {
+		private final SendAgentsEvent sendAgentsEvent;
+		private final int endTick;
+
+		private MissionExecution(SendAgentsEvent sendAgentsEvent, int endTick) {
+			this.sendAgentsEvent = sendAgentsEvent;
+			this.endTick = endTick;
+		}
+
+		@Override
+		public int compareTo(MissionExecution other) {
+			return Integer.compare(endTick, other.endTick);
+		}
+	}
+
 	/**
 	 * An object responsible for releasing agents when the program is terminating to
 	 * allow moneypennies who are stuck on agents acquisition to terminate gracefully
@@ -138,6 +207,11 @@ public class Moneypenny extends Subscriber {
 	public static class Releaser {
 		private AtomicInteger count;
 
+		/**
+		 * Whether the agents are being released because the time is up
+		 */
+		private volatile boolean releasing;
+
 		/**
 		 * Initializes a new releaser with the given count
 		 * @param count The count of moneypennies who perform get agents who'll need
@@ -145,6 +219,22 @@ public class Moneypenny extends Subscriber {
 		 */
 		public Releaser(int count) {
 			this.count = new AtomicInteger(count);
+			releasing = false;
+		}
+
+		/**
+		 * @return Whether the agents are being released because the time is up,
+		 * i.e. agents which are acquired now were not released by the missions which held them
+		 */
+		public boolean isReleasing() {
+			return releasing;
+		}
+
+		/**
+		 * Notifies that the agents are about to be released because the time is up
+		 */
+		public void startReleasing() {
+			releasing = true;
 		}
 
 		/**
@@ -177,7 +267,7 @@ public class Moneypenny extends Subscriber {
 		 */
 		public void awaitRelease() throws InterruptedException {
 			synchronized (this) {
-				wait();
+				Utils.managedWait(this);
 			}
 		}
 	}
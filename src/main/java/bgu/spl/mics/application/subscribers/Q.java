@@ -3,6 +3,8 @@ package bgu.spl.mics.application.subscribers;
 import bgu.spl.mics.Subscriber;
 import bgu.spl.mics.application.messages.GadgetAvailableEvent;
 import bgu.spl.mics.application.messages.LastTickBroadcast;
+import bgu.spl.mics.application.messages.MsTerminatedBroadcast;
+import bgu.spl.mics.application.messages.ReturnGadgetEvent;
 import bgu.spl.mics.application.messages.TickBroadcast;
 import bgu.spl.mics.application.messages.eventsInfo.GadgetAvailableEventArgs;
 import bgu.spl.mics.application.messages.eventsInfo.GadgetAvailableResult;
@@ -18,25 +20,86 @@ import java.util.concurrent.CountDownLatch;
  */
 public class Q extends Subscriber {
 	private int lastTick;
+
+	/**
+	 * Whether the last tick has passed, from then on gadgets are only taken back
+	 */
+	private boolean timeIsUp;
 	private final Inventory inventory;
+	private final int shard;
+
+	/**
+	 * Whether to keep taking back gadgets after the last tick, until the last M has terminated
+	 */
+	private final boolean awaitMs;
 	private final CountDownLatch subRegisterAwaiter;
 
 	public Q(String name, Inventory inventory, CountDownLatch subRegisterAwaiter) {
+		this(name, inventory, 0, false, subRegisterAwaiter);
+	}
+
+	/**
+	 * @param name The name of the Q
+	 * @param inventory The inventory
+	 * @param awaitMs Whether there are Ms, the Q then terminates only once the last of them has terminated
+	 *                (see {@link MsTerminatedBroadcast})
+	 * @param subRegisterAwaiter Counted down once the Q has subscribed
+	 */
+	public Q(String name, Inventory inventory, boolean awaitMs, CountDownLatch subRegisterAwaiter) {
+		this(name, inventory, 0, awaitMs, subRegisterAwaiter);
+	}
+
+	/**
+	 * @param name The name of the Q
+	 * @param inventory The inventory
+	 * @param shard The shard of the inventory this Q is responsible for, when there are several Qs
+	 *              (see {@link Inventory#load(String[], int)})
+	 * @param subRegisterAwaiter Counted down once the Q has subscribed
+	 */
+	public Q(String name, Inventory inventory, int shard, CountDownLatch subRegisterAwaiter) {
+		this(name, inventory, shard, false, subRegisterAwaiter);
+	}
+
+	/**
+	 * @param name The name of the Q
+	 * @param inventory The inventory
+	 * @param shard The shard of the inventory this Q is responsible for, when there are several Qs
+	 *              (see {@link Inventory#load(String[], int)})
+	 * @param awaitMs Whether there are Ms, the Q then terminates only once the last of them has terminated
+	 *                (see {@link MsTerminatedBroadcast})
+	 * @param subRegisterAwaiter Counted down once the Q has subscribed
+	 */
+	public Q(String name, Inventory inventory, int shard, boolean awaitMs, CountDownLatch subRegisterAwaiter) {
 		super(name);
 		this.inventory = inventory;
+		this.shard = shard;
+		this.awaitMs = awaitMs;
 		this.subRegisterAwaiter = subRegisterAwaiter;
+		timeIsUp = false;
 	}
 
 	@Override
 	protected void initialize() {
+		setShard(shard);
 		subscribeBroadcast(LastTickBroadcast.class, this::onLastTimeTick);
 		subscribeBroadcast(TickBroadcast.class, this::onTimeTick);
+		subscribeBroadcast(MsTerminatedBroadcast.class, this::onMsTerminated);
 		subscribeEvent(GadgetAvailableEvent.class, this::onGadgetAvailableEvent);
+		subscribeEvent(ReturnGadgetEvent.class, this::onReturnGadgetEvent);
 		subRegisterAwaiter.countDown();
 	}
 
 	private void onLastTimeTick(LastTickBroadcast b) {
 		onTimeTick(b);
+		timeIsUp = true;
+		// An M which is still preparing a mission may have taken a gadget for it, which it will return.
+		// The last M to terminate lets the Q know once it's done, after the gadgets it has returned.
+		if (!awaitMs) {
+			terminate();
+		}
+	}
+
+	private void onMsTerminated(MsTerminatedBroadcast b) {
 		terminate();
 	}
 
@@ -51,9 +114,20 @@ public class Q extends Subscriber {
 	It is possible that if the second Q got the gadget, the second mission would be executed.
 	 */
 	private void onGadgetAvailableEvent(GadgetAvailableEvent gadgetAvailableEvent) {
+		if (timeIsUp) {
+			// As if the Q has terminated, no mission is executed after the last tick
+			complete(gadgetAvailableEvent, null);
+			return;
+		}
+
 		GadgetAvailableEventArgs args = gadgetAvailableEvent.getArgs();
 		boolean isAvailable = inventory.getItem(args.gadget());
 		GadgetAvailableResult result = new GadgetAvailableResult(isAvailable, lastTick);
 		complete(gadgetAvailableEvent, result);
 	}
+
+	private void onReturnGadgetEvent(ReturnGadgetEvent returnGadgetEvent) {
+		inventory.returnItem(returnGadgetEvent.getArgs().gadget());
+		complete(returnGadgetEvent, null);
+	}
 }
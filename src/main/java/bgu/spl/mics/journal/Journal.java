@@ -0,0 +1,22 @@
+package bgu.spl.mics.journal;
+
+import bgu.spl.mics.Event;
+import bgu.spl.mics.Message;
+import bgu.spl.mics.Subscriber;
+
+/**
+ * Records the activity of the message broker as structured entries (see {@link JournalEntryType}),
+ * instead of the text lines of a logger.
+ * The entries of the same message can be matched by its identity, e.g. an event with the subscriber it was assigned to.
+ */
+public interface Journal {
+    void send(Message message);
+
+    void assign(Subscriber subscriber, Message message);
+
+    void complete(Event<?> event);
+
+    void register(Subscriber subscriber);
+
+    void unregister(Subscriber subscriber);
+}
@@ -0,0 +1,212 @@
+package bgu.spl.mics.journal;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Renders a journal file written by {@link MappedFileJournal} as text or as JSON, offline.
+ * The entries are rendered one at a time, so the journal of a long run is never held in memory.
+ * <p>
+ * Usage: {@code JournalDecoder <journal file> [text|json]}, the output is printed to the standard output.
+ */
+public class JournalDecoder {
+    private static final String FORMAT_TEXT = "text";
+    private static final String FORMAT_JSON = "json";
+
+    private static final String NO_NAME = "-";
+
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            printErr("Bad arguments, expected a journal file path and optionally the output format (text or json)");
+            return;
+        }
+
+        String format = args.length > 1 ? args[1] : FORMAT_TEXT;
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+        try {
+            switch (format) {
+                case FORMAT_TEXT:
+                    toText(args[0], out);
+                    break;
+                case FORMAT_JSON:
+                    toJson(args[0], out);
+                    break;
+                default:
+                    printErr("Unknown output format '" + format + "', expected text or json");
+                    return;
+            }
+            out.flush();
+        } catch (IOException e) {
+            printErr("Failed to decode the journal: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Renders the journal as text, an entry per line: the time (in milliseconds since the journal was opened),
+     * the entry type, the subscriber, the message type and the identity of the message
+     * @param journalPath The path of the journal file
+     * @param out Where to write the text
+     */
+    public static void toText(String journalPath, Writer out) throws IOException {
+        decode(journalPath, new EntryHandler() {
+            @Override
+            public void start(long startTimeMillis) throws IOException {
+                out.write(String.format("Journal opened at %tF %<tT.%<tL%n", startTimeMillis));
+            }
+
+            @Override
+            public void entry(JournalEntryType type, long timeNanos, String subscriber, String messageType, int messageId) throws IOException {
+                out.write(String.format("%12.3f ms  %-10s  %-16s  %-24s  %s%n",
+                    timeNanos / 1_000_000.0,
+                    type,
+                    subscriber != null ? subscriber : NO_NAME,
+                    messageType != null ? getSimpleName(messageType) : NO_NAME,
+                    messageType != null ? String.format("#%08x", messageId) : NO_NAME));
+            }
+
+            @Override
+            public void end() {
+            }
+        });
+    }
+
+    /**
+     * Renders the journal as a JSON object, with the time it was opened and the array of its entries
+     * @param journalPath The path of the journal file
+     * @param out Where to write the JSON
+     */
+    public static void toJson(String journalPath, Writer out) throws IOException {
+        JsonWriter json = new JsonWriter(out);
+        json.setIndent("  ");
+        decode(journalPath, new EntryHandler() {
+            @Override
+            public void start(long startTimeMillis) throws IOException {
+                json.beginObject();
+                json.name("startTime").value(startTimeMillis);
+                json.name("entries").beginArray();
+            }
+
+            @Override
+            public void entry(JournalEntryType type, long timeNanos, String subscriber, String messageType, int messageId) throws IOException {
+                json.beginObject();
+                json.name("timeNanos").value(timeNanos);
+                json.name("type").value(type.name());
+                if (subscriber != null) {
+                    json.name("subscriber").value(subscriber);
+                }
+                if (messageType != null) {
+                    json.name("messageType").value(messageType);
+                    json.name("message").value(messageId);
+                }
+                json.endObject();
+            }
+
+            @Override
+            public void end() throws IOException {
+                json.endArray();
+                json.endObject();
+                json.flush();
+            }
+        });
+    }
+
+    private interface EntryHandler {
+        void start(long startTimeMillis) throws IOException;
+
+        void entry(JournalEntryType type, long timeNanos, String subscriber, String messageType, int messageId) throws IOException;
+
+        void end() throws IOException;
+    }
+
+    private static void decode(String journalPath, EntryHandler handler) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(journalPath), StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize < JournalFormat.HEADER_SIZE) {
+                throw new IOException("Not a journal file, too short");
+            }
+
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, JournalFormat.HEADER_SIZE);
+            if (header.getInt(JournalFormat.MAGIC_OFFSET) != JournalFormat.MAGIC) {
+                throw new IOException("Not a journal file, bad magic number");
+            }
+            if (header.getShort(JournalFormat.VERSION_OFFSET) != JournalFormat.VERSION) {
+                throw new IOException("Unsupported journal version " + header.getShort(JournalFormat.VERSION_OFFSET));
+            }
+
+            int segmentSize = header.getInt(JournalFormat.SEGMENT_SIZE_OFFSET);
+            long length = header.getLong(JournalFormat.LENGTH_OFFSET);
+            // A journal which was not closed has no length, read whatever was written
+            long end = length > 0 ? Math.min(length, fileSize) : fileSize;
+
+            handler.start(header.getLong(JournalFormat.START_TIME_OFFSET));
+            Map<Integer, String> subscriberNames = new HashMap<>();
+            Map<Integer, String> messageTypeNames = new HashMap<>();
+            for (long segmentStart = 0; segmentStart < end; segmentStart += segmentSize) {
+                int segmentLength = (int)Math.min(segmentSize, end - segmentStart);
+                MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY, segmentStart, segmentLength);
+                int offset = segmentStart == 0 ? JournalFormat.HEADER_SIZE : 0;
+                while (offset < segmentLength) {
+                    byte kind = segment.get(offset);
+                    if (kind == JournalFormat.EMPTY) {
+                        // The rest of the segment, a closed journal has no record which was claimed but not written
+                        break;
+                    }
+                    else if (kind == JournalFormat.SUBSCRIBER_NAME) {
+                        offset = readName(segment, offset, subscriberNames);
+                    }
+                    else if (kind == JournalFormat.MESSAGE_TYPE_NAME) {
+                        offset = readName(segment, offset, messageTypeNames);
+                    }
+                    else {
+                        JournalEntryType type = JournalEntryType.fromCode(kind);
+                        if (type == null) {
+                            throw new IOException("Corrupt journal, unknown record at " + (segmentStart + offset));
+                        }
+                        handler.entry(type,
+                            segment.getLong(offset + 1),
+                            subscriberNames.get(segment.getInt(offset + 9)),
+                            messageTypeNames.get(segment.getInt(offset + 13)),
+                            segment.getInt(offset + 17));
+                        offset += JournalFormat.ENTRY_SIZE;
+                    }
+                }
+            }
+            handler.end();
+        }
+    }
+
+    /**
+     * Reads a name record into the names of its ids
+     * @return Where the next record starts
+     */
+    private static int readName(MappedByteBuffer segment, int offset, Map<Integer, String> names) {
+        int id = segment.getInt(offset + 1);
+        int length = segment.getShort(offset + 5) & 0xffff;
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = segment.get(offset + JournalFormat.NAME_HEADER_SIZE + i);
+        }
+        names.put(id, new String(bytes, StandardCharsets.UTF_8));
+        return offset + JournalFormat.NAME_HEADER_SIZE + length;
+    }
+
+    private static String getSimpleName(String className) {
+        String name = className.substring(className.lastIndexOf('.') + 1);
+        return name.substring(name.lastIndexOf('$') + 1);
+    }
+
+    private static void printErr(String msg) {
+        System.err.println(msg);
+    }
+}
@@ -0,0 +1,58 @@
+package bgu.spl.mics.journal;
+
+/**
+ * The kinds of broker activity recorded in a {@link Journal}
+ */
+public enum JournalEntryType {
+    /**
+     * A message was sent, before it's delivered to anyone
+     */
+    Send(1),
+
+    /**
+     * A message was delivered to a subscriber: an event it was picked for (or stole), or a broadcast
+     */
+    Assign(2),
+
+    /**
+     * An event was completed
+     */
+    Complete(3),
+
+    /**
+     * A subscriber registered
+     */
+    Register(4),
+
+    /**
+     * A subscriber unregistered
+     */
+    Unregister(5);
+
+    private final byte code;
+
+    JournalEntryType(int code) {
+        this.code = (byte)code;
+    }
+
+    /**
+     * @return The code of the entry type in the journal file
+     */
+    public byte getCode() {
+        return code;
+    }
+
+    /**
+     * @param code The code of an entry type in the journal file
+     * @return The entry type of the code, null if no entry type has it
+     */
+    public static JournalEntryType fromCode(byte code) {
+        for (JournalEntryType type : values()) {
+            if (type.code == code) {
+                return type;
+            }
+        }
+
+        return null;
+    }
+}
@@ -0,0 +1,43 @@
+package bgu.spl.mics.journal;
+
+/**
+ * The layout of a journal file.
+ * <p>
+ * The file starts with a header: the magic number, the version, the size of a segment,
+ * the time the journal was opened (in milliseconds since the epoch) and the length of the journal,
+ * which is written when it's closed. The records follow it:
+ * <ul>
+ *     <li>An entry: its type code, the time (in nanoseconds since the journal was opened),
+ *     the id of the subscriber (or {@link #NO_ID}), the id of the message type (or {@link #NO_ID})
+ *     and the identity hash code of the message (or 0)</li>
+ *     <li>A name: {@link #SUBSCRIBER_NAME} or {@link #MESSAGE_TYPE_NAME}, the id and the name (its UTF-8 length and bytes).
+ *     A name is recorded before the first entry which refers to its id.</li>
+ * </ul>
+ * The file is made of segments of the same size, and a record never crosses the end of a segment:
+ * if it doesn't fit in the rest of one it starts at the next. A zero byte where a record should start
+ * means the rest of the segment is empty.
+ */
+class JournalFormat {
+    static final int MAGIC = 0x4d49364a; // "MI6J"
+    static final short VERSION = 1;
+
+    static final int MAGIC_OFFSET = 0;
+    static final int VERSION_OFFSET = 4;
+    static final int SEGMENT_SIZE_OFFSET = 8;
+    static final int START_TIME_OFFSET = 12;
+    static final int LENGTH_OFFSET = 20;
+    static final int HEADER_SIZE = 28;
+
+    static final byte EMPTY = 0;
+    static final byte SUBSCRIBER_NAME = 16;
+    static final byte MESSAGE_TYPE_NAME = 17;
+
+    static final int ENTRY_SIZE = 1 + 8 + 4 + 4 + 4;
+    static final int NAME_HEADER_SIZE = 1 + 4 + 2;
+    static final int MAX_NAME_BYTES = 0xffff;
+
+    static final int NO_ID = -1;
+
+    private JournalFormat() {
+    }
+}
@@ -0,0 +1,15 @@
+package bgu.spl.mics.journal;
+
+public class Journals {
+    public static Journal NoJournal;
+
+    /**
+     * The journal of the message broker, records nothing unless set at startup
+     */
+    public static Journal BrokerJournal;
+
+    static {
+        NoJournal = new NoJournal();
+        BrokerJournal = NoJournal;
+    }
+}
@@ -0,0 +1,296 @@
+package bgu.spl.mics.journal;
+
+import bgu.spl.mics.Event;
+import bgu.spl.mics.Message;
+import bgu.spl.mics.Subscriber;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link Journal} written to a memory-mapped file, in the binary format of {@link JournalFormat}.
+ * Recording an entry takes no lock and makes no system call: the thread claims the space of the record
+ * by advancing the position of the journal, and writes the record to the mapped segment directly.
+ * The file grows by a segment at a time, see {@link JournalFormat}.
+ * <p>
+ * Decode it with {@link JournalDecoder}. Entries recorded after the journal is closed are ignored,
+ * closing it waits for the entries which are being recorded meanwhile.
+ */
+public class MappedFileJournal implements Journal, Closeable {
+    /**
+     * The size of a segment of the file, by default
+     */
+    public static final int DEFAULT_SEGMENT_SIZE = 1 << 20;
+
+    private final String filePath;
+    private final FileChannel channel;
+    private final int segmentSize;
+    private final long startNanos;
+
+    /**
+     * The mapped segments, by their index. Only grows, under the lock of the journal.
+     */
+    private volatile MappedByteBuffer[] segments;
+
+    /**
+     * Where the next record starts
+     */
+    private final AtomicLong position;
+
+    private final ConcurrentMap<Subscriber, Integer> subscriberIds;
+    private final ConcurrentMap<Class<?>, Integer> messageTypeIds;
+    private final AtomicInteger nextSubscriberId;
+    private final AtomicInteger nextMessageTypeId;
+
+    /**
+     * The amount of threads recording an entry at the moment
+     */
+    private final AtomicInteger writers;
+    private volatile boolean closed;
+
+    /**
+     * Creates (or truncates) the file, with segments of the default size
+     * @param filePath The path of the file
+     */
+    public MappedFileJournal(String filePath) throws IOException {
+        this(filePath, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * Creates (or truncates) the file
+     * @param filePath The path of the file
+     * @param segmentSize The size of a segment of the file, by which it grows
+     */
+    public MappedFileJournal(String filePath, int segmentSize) throws IOException {
+        if (segmentSize < JournalFormat.HEADER_SIZE + JournalFormat.NAME_HEADER_SIZE + JournalFormat.MAX_NAME_BYTES) {
+            throw new IllegalArgumentException("segmentSize must hold the header and the longest record.");
+        }
+
+        this.filePath = filePath;
+        this.segmentSize = segmentSize;
+        channel = FileChannel.open(Paths.get(filePath),
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        segments = new MappedByteBuffer[0];
+        position = new AtomicLong(JournalFormat.HEADER_SIZE);
+        subscriberIds = new ConcurrentHashMap<>();
+        messageTypeIds = new ConcurrentHashMap<>();
+        nextSubscriberId = new AtomicInteger();
+        nextMessageTypeId = new AtomicInteger();
+        writers = new AtomicInteger();
+        closed = false;
+
+        startNanos = System.nanoTime();
+        MappedByteBuffer header = getSegment(0);
+        header.putInt(JournalFormat.MAGIC_OFFSET, JournalFormat.MAGIC);
+        header.putShort(JournalFormat.VERSION_OFFSET, JournalFormat.VERSION);
+        header.putInt(JournalFormat.SEGMENT_SIZE_OFFSET, segmentSize);
+        header.putLong(JournalFormat.START_TIME_OFFSET, System.currentTimeMillis());
+    }
+
+    @Override
+    public void send(Message message) {
+        record(JournalEntryType.Send, null, message);
+    }
+
+    @Override
+    public void assign(Subscriber subscriber, Message message) {
+        record(JournalEntryType.Assign, subscriber, message);
+    }
+
+    @Override
+    public void complete(Event<?> event) {
+        // The subscriber which completed it is the last one it was assigned to
+        record(JournalEntryType.Complete, null, event);
+    }
+
+    @Override
+    public void register(Subscriber subscriber) {
+        record(JournalEntryType.Register, subscriber, null);
+    }
+
+    @Override
+    public void unregister(Subscriber subscriber) {
+        record(JournalEntryType.Unregister, subscriber, null);
+    }
+
+    /**
+     * @return The length of the journal so far, in bytes
+     */
+    public long getLength() {
+        return position.get();
+    }
+
+    /**
+     * Waits for the entries which are being recorded, writes the length of the journal to its header, and closes the file
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+
+            closed = true;
+        }
+
+        // The length covers every record claimed so far, the decoder stops at the first one which isn't written.
+        // Not under the lock of the journal, a writer may be mapping a segment (and find that it's closed).
+        while (writers.get() > 0) {
+            Thread.yield();
+        }
+
+        synchronized (this) {
+            MappedByteBuffer[] mapped = segments;
+            mapped[0].putLong(JournalFormat.LENGTH_OFFSET, position.get());
+            for (MappedByteBuffer segment : mapped) {
+                segment.force();
+            }
+            channel.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "MappedFileJournal: '" + filePath + "'";
+    }
+
+    private void record(JournalEntryType type, Subscriber subscriber, Message message) {
+        // Counted before checking whether it's closed, so closing either sees the writer or the writer sees it closed
+        writers.incrementAndGet();
+        try {
+            if (!closed) {
+                write(type, subscriber, message);
+            }
+        } finally {
+            writers.decrementAndGet();
+        }
+    }
+
+    private void write(JournalEntryType type, Subscriber subscriber, Message message) {
+        long timeNanos = System.nanoTime() - startNanos;
+        int subscriberId = subscriber != null ? getSubscriberId(subscriber) : JournalFormat.NO_ID;
+        int messageTypeId = message != null ? getMessageTypeId(message.getClass()) : JournalFormat.NO_ID;
+        int messageId = message != null ? System.identityHashCode(message) : 0;
+
+        long start = claim(JournalFormat.ENTRY_SIZE);
+        MappedByteBuffer segment = getSegment(start);
+        if (segment == null) {
+            return;
+        }
+
+        int offset = (int)(start % segmentSize);
+        segment.putLong(offset + 1, timeNanos);
+        segment.putInt(offset + 9, subscriberId);
+        segment.putInt(offset + 13, messageTypeId);
+        segment.putInt(offset + 17, messageId);
+        // The type last, so a record which is only partly written reads as empty
+        segment.put(offset, type.getCode());
+    }
+
+    private int getSubscriberId(Subscriber subscriber) {
+        Integer id = subscriberIds.get(subscriber);
+        if (id != null) {
+            return id;
+        }
+
+        return subscriberIds.computeIfAbsent(subscriber, s ->
+            recordName(JournalFormat.SUBSCRIBER_NAME, nextSubscriberId.getAndIncrement(), s.getName()));
+    }
+
+    private int getMessageTypeId(Class<?> type) {
+        Integer id = messageTypeIds.get(type);
+        if (id != null) {
+            return id;
+        }
+
+        return messageTypeIds.computeIfAbsent(type, t ->
+            recordName(JournalFormat.MESSAGE_TYPE_NAME, nextMessageTypeId.getAndIncrement(), t.getName()));
+    }
+
+    /**
+     * Records the name of an id, before any entry which refers to it is claimed
+     * @return The id
+     */
+    private int recordName(byte kind, int id, String name) {
+        byte[] bytes = String.valueOf(name).getBytes(StandardCharsets.UTF_8);
+        int length = Math.min(bytes.length, JournalFormat.MAX_NAME_BYTES);
+        long start = claim(JournalFormat.NAME_HEADER_SIZE + length);
+        MappedByteBuffer segment = getSegment(start);
+        if (segment == null) {
+            return id;
+        }
+
+        int offset = (int)(start % segmentSize);
+        segment.putInt(offset + 1, id);
+        segment.putShort(offset + 5, (short)length);
+        for (int i = 0; i < length; i++) {
+            segment.put(offset + JournalFormat.NAME_HEADER_SIZE + i, bytes[i]);
+        }
+        segment.put(offset, kind);
+        return id;
+    }
+
+    /**
+     * Claims the space of a record, at the next segment if it doesn't fit in the rest of the current one
+     * @return Where the record starts
+     */
+    private long claim(int size) {
+        while (true) {
+            long start = position.get();
+            long segmentEnd = (start / segmentSize + 1) * segmentSize;
+            long claimed = start + size <= segmentEnd ? start : segmentEnd;
+            if (position.compareAndSet(start, claimed + size)) {
+                return claimed;
+            }
+        }
+    }
+
+    /**
+     * @param position A position in the file
+     * @return The segment which holds the position, mapped if it's the first time; null if the journal is closed
+     */
+    private MappedByteBuffer getSegment(long position) {
+        int index = (int)(position / segmentSize);
+        MappedByteBuffer[] mapped = segments;
+        if (index < mapped.length) {
+            return mapped[index];
+        }
+
+        return mapSegments(index);
+    }
+
+    private synchronized MappedByteBuffer mapSegments(int index) {
+        MappedByteBuffer[] mapped = segments;
+        if (index < mapped.length) {
+            return mapped[index];
+        }
+        if (closed) {
+            return null;
+        }
+
+        // Map every segment up to it, a thread may have claimed a record in a segment before it but not mapped it yet
+        MappedByteBuffer[] grown = Arrays.copyOf(mapped, index + 1);
+        try {
+            for (int i = mapped.length; i <= index; i++) {
+                grown[i] = channel.map(FileChannel.MapMode.READ_WRITE, (long)i * segmentSize, segmentSize);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            closed = true;
+            return null;
+        }
+
+        segments = grown;
+        return grown[index];
+    }
+}
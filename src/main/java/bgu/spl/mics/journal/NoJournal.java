@@ -0,0 +1,35 @@
+package bgu.spl.mics.journal;
+
+import bgu.spl.mics.Event;
+import bgu.spl.mics.Message;
+import bgu.spl.mics.Subscriber;
+
+/**
+ * A journal which records nothing
+ */
+public class NoJournal implements Journal {
+    @Override
+    public void send(Message message) {
+
+    }
+
+    @Override
+    public void assign(Subscriber subscriber, Message message) {
+
+    }
+
+    @Override
+    public void complete(Event<?> event) {
+
+    }
+
+    @Override
+    public void register(Subscriber subscriber) {
+
+    }
+
+    @Override
+    public void unregister(Subscriber subscriber) {
+
+    }
+}
@@ -0,0 +1,344 @@
+package bgu.spl.mics.loggers;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Logs to a file without making the logging threads wait for each other or for the file.
+ * Logged messages are put in a lock-free ring buffer, which a writer thread of its own drains in batches,
+ * writing every batch through a {@link FileChannel} at once.
+ * While the buffer is full, a logged message is handled by the {@link FullBufferPolicy}.
+ * <p>
+ * Messages logged by the same thread are written in order. Messages of different threads are interleaved
+ * at the granularity of single calls, like with {@link FileLogger}.
+ */
+public class AsyncFileLogger implements Logger, Closeable {
+    /**
+     * The amount of messages the buffer holds, by default
+     */
+    public static final int DEFAULT_CAPACITY = 8192;
+
+    /**
+     * How much is written to the file at once, at most
+     */
+    private static final int WRITE_BUFFER_BYTES = 64 * 1024;
+
+    /**
+     * How long a logging thread parks at a time while the buffer is full, or while it flushes.
+     * The writer parks without a timeout while the buffer is empty, the logging threads wake it.
+     */
+    private static final long PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    /**
+     * How many times a logging thread yields to the writer while the buffer is full, before it parks
+     */
+    private static final int FULL_BUFFER_YIELDS = 100;
+
+    private final String filePath;
+    private final FileChannel channel;
+    private final FullBufferPolicy policy;
+    private volatile Level level = Level.Debug;
+
+    /**
+     * Published in the slot of a message which was claimed once the logger closed, so the writer skips it
+     */
+    private static final String DROPPED = new String();
+
+    /**
+     * The ring of messages, an empty slot is null
+     */
+    private final AtomicReferenceArray<String> slots;
+    private final int mask;
+
+    /**
+     * The next sequence number to be claimed by a logging thread
+     */
+    private final AtomicLong claimed;
+
+    /**
+     * The next sequence number to be taken by the writer, the slots of the messages before it are free
+     */
+    private final AtomicLong taken;
+
+    /**
+     * Every message before this sequence number has been written to the file
+     */
+    private final AtomicLong written;
+
+    private final LongAdder dropped;
+    private final Thread writer;
+
+    /**
+     * Whether the writer thread is parked waiting for messages
+     */
+    private volatile boolean writerParked;
+    private volatile boolean closed;
+
+    /**
+     * Opens (or truncates) the file, with a buffer of the default capacity which blocks the logging threads while full
+     * @param filePath The path of the file
+     */
+    public AsyncFileLogger(String filePath) throws IOException {
+        this(filePath, DEFAULT_CAPACITY, FullBufferPolicy.Block);
+    }
+
+    /**
+     * Opens (or truncates) the file
+     * @param filePath The path of the file
+     * @param capacity The amount of messages the buffer holds, rounded up to a power of 2
+     * @param policy What to do with a message logged while the buffer is full
+     */
+    public AsyncFileLogger(String filePath, int capacity, FullBufferPolicy policy) throws IOException {
+        if (capacity <= 0 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("capacity must be positive and at most 2^30.");
+        }
+
+        this.filePath = filePath;
+        this.policy = policy != null ? policy : FullBufferPolicy.Block;
+        int size = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        slots = new AtomicReferenceArray<>(size);
+        mask = size - 1;
+        claimed = new AtomicLong();
+        taken = new AtomicLong();
+        written = new AtomicLong();
+        dropped = new LongAdder();
+        closed = false;
+        channel = FileChannel.open(Paths.get(filePath),
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        writer = new Thread(this::drain, "AsyncFileLogger: '" + filePath + "'");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public Logger appendLine(String s) {
+        return log(s + "\n");
+    }
+
+    @Override
+    public Logger append(String s) {
+        return log(s);
+    }
+
+    @Override
+    public Logger appendLine(Object o) {
+        return log(o + "\n");
+    }
+
+    @Override
+    public Logger append(Object o) {
+        return log(String.valueOf(o));
+    }
+
+    @Override
+    public Level getLevel() {
+        return level;
+    }
+
+    @Override
+    public void setLevel(Level level) {
+        this.level = level;
+    }
+
+    /**
+     * @return The amount of messages which were dropped because the buffer was full (or the logger closed)
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * Waits until every message logged before the call has been written to the file
+     */
+    @Override
+    public void flush() throws IOException {
+        long target = claimed.get();
+        wakeWriter();
+        while (written.get() < target) {
+            if (!writer.isAlive()) {
+                throw new IOException("The writer of " + this + " has stopped.");
+            }
+            LockSupport.parkNanos(this, PARK_NANOS);
+        }
+    }
+
+    /**
+     * Writes every message logged so far, forces it to the storage device and closes the file. Messages logged afterwards are dropped.
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        wakeWriter();
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            channel.force(false);
+        } finally {
+            channel.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "AsyncFileLogger: '" + filePath + "'";
+    }
+
+    private Logger log(String message) {
+        long sequence = claim();
+        if (sequence < 0) {
+            dropped.increment();
+            return this;
+        }
+        if (closed) {
+            // Claimed after the writer may have made its last check, it may never be written
+            dropped.increment();
+            message = DROPPED;
+        }
+
+        // A volatile write, so either the writer sees the message or this thread sees the writer parked
+        slots.set(index(sequence), message);
+        if (writerParked) {
+            // Until the writer is scheduled again, the next messages needn't wake it
+            writerParked = false;
+            wakeWriter();
+        }
+        return this;
+    }
+
+    /**
+     * Claims the next sequence number, waiting (or giving up) while the buffer is full
+     * @return The claimed sequence number, negative if the message should be dropped
+     */
+    private long claim() {
+        int idle = 0;
+        while (!closed) {
+            long sequence = claimed.get();
+            if (sequence - slots.length() < taken.get()) {
+                if (claimed.compareAndSet(sequence, sequence + 1)) {
+                    return sequence;
+                }
+            }
+            else if (policy == FullBufferPolicy.Drop) {
+                return -1;
+            }
+            else if (++idle <= FULL_BUFFER_YIELDS) {
+                wakeWriter();
+                Thread.yield();
+            }
+            else {
+                LockSupport.parkNanos(this, PARK_NANOS);
+            }
+        }
+
+        return -1;
+    }
+
+    private void wakeWriter() {
+        LockSupport.unpark(writer);
+    }
+
+    /**
+     * The loop of the writer thread: takes the published messages in order, and writes them in batches
+     */
+    private void drain() {
+        CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        ByteBuffer bytes = ByteBuffer.allocate(WRITE_BUFFER_BYTES);
+        long sequence = taken.get();
+        try {
+            while (true) {
+                // Read before taking, so the messages which were claimed before closing are all written
+                boolean closing = closed;
+                String message;
+                while ((message = slots.get(index(sequence))) != null) {
+                    slots.lazySet(index(sequence), null);
+                    taken.lazySet(++sequence);
+                    if (message != DROPPED) {
+                        encode(encoder, message, bytes);
+                    }
+                }
+                write(bytes);
+                written.set(sequence);
+
+                if (closing && sequence == claimed.get()) {
+                    return;
+                }
+                awaitMessages(sequence);
+            }
+        } catch (IOException e) {
+            // Nothing more can be written, drop the messages instead of letting the logging threads wait forever
+            closed = true;
+            e.printStackTrace();
+        }
+    }
+
+    private void awaitMessages(long sequence) {
+        writerParked = true;
+        if (slots.get(index(sequence)) == null && !closed) {
+            // Either a logging thread or close unparks it, having seen it parked
+            LockSupport.park(this);
+        }
+        writerParked = false;
+    }
+
+    private void encode(CharsetEncoder encoder, String message, ByteBuffer bytes) throws IOException {
+        // Log messages are mostly ASCII, which is copied as is, the rest goes through the encoder
+        byte[] array = bytes.array();
+        int length = message.length();
+        int i = 0;
+        while (i < length) {
+            int position = bytes.position();
+            int end = Math.min(length, i + bytes.remaining());
+            char c;
+            while (i < end && (c = message.charAt(i)) < 0x80) {
+                array[position++] = (byte)c;
+                ++i;
+            }
+            bytes.position(position);
+            if (i < end) {
+                encodeRest(encoder, message, i, bytes);
+                return;
+            }
+            if (!bytes.hasRemaining()) {
+                write(bytes);
+            }
+        }
+    }
+
+    private void encodeRest(CharsetEncoder encoder, String message, int from, ByteBuffer bytes) throws IOException {
+        CharBuffer chars = CharBuffer.wrap(message, from, message.length());
+        while (encoder.encode(chars, bytes, true).isOverflow()) {
+            write(bytes);
+        }
+        encoder.reset();
+    }
+
+    private void write(ByteBuffer bytes) throws IOException {
+        bytes.flip();
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+        bytes.clear();
+    }
+
+    private int index(long sequence) {
+        return (int)sequence & mask;
+    }
+}
@@ -5,6 +5,7 @@ import java.io.*;
 public class FileLogger implements Logger, Closeable {
     private Writer fileWriter;
     private final String filePath;
+    private volatile Level level = Level.Debug;
 
     public FileLogger(String filePath) throws IOException {
         fileWriter = new BufferedWriter(new FileWriter(filePath));
@@ -53,6 +54,16 @@ public class FileLogger implements Logger, Closeable {
         return this;
     }
 
+    @Override
+    public Level getLevel() {
+        return level;
+    }
+
+    @Override
+    public void setLevel(Level level) {
+        this.level = level;
+    }
+
     @Override
     public void flush() throws IOException {
         fileWriter.flush();
@@ -0,0 +1,17 @@
+package bgu.spl.mics.loggers;
+
+/**
+ * What an {@link AsyncFileLogger} does with a message logged while its buffer is full,
+ * i.e. while the writer thread lags behind the logging threads
+ */
+public enum FullBufferPolicy {
+    /**
+     * The logging thread waits until there's room, no message is lost
+     */
+    Block,
+
+    /**
+     * The message is dropped and counted, the logging thread never waits
+     */
+    Drop
+}
@@ -0,0 +1,31 @@
+package bgu.spl.mics.loggers;
+
+/**
+ * The severity of a logged message. A logger only logs the messages of its level and above.
+ */
+public enum Level {
+    /**
+     * Traces of every message and every step, only useful when debugging
+     */
+    Debug,
+
+    /**
+     * The life cycle of the system, e.g. subscribers registering and terminating
+     */
+    Info,
+
+    /**
+     * Something unexpected which the system recovers from, e.g. an event no one is subscribed to
+     */
+    Warn,
+
+    /**
+     * Something which went wrong
+     */
+    Error,
+
+    /**
+     * Logs nothing, only used as the level of a logger
+     */
+    Off
+}
@@ -0,0 +1,35 @@
+package bgu.spl.mics.loggers;
+
+/**
+ * Formats parameterized log messages, whose parameters are marked with {@code {}}.
+ * Only called once the message is known to be logged, so a disabled message costs nothing to format.
+ */
+final class LogFormat {
+    private static final String PLACEHOLDER = "{}";
+
+    private LogFormat() {
+    }
+
+    /**
+     * Replaces each placeholder in the format with the next argument, in order.
+     * Placeholders without an argument are left as they are, extra arguments are ignored.
+     * @param format The message format
+     * @param args The arguments
+     * @return The formatted message
+     */
+    static String format(String format, Object... args) {
+        StringBuilder sb = new StringBuilder(format.length() + 16 * args.length);
+        int start = 0;
+        for (Object arg : args) {
+            int placeholder = format.indexOf(PLACEHOLDER, start);
+            if (placeholder < 0) {
+                break;
+            }
+            sb.append(format, start, placeholder)
+                .append(arg);
+            start = placeholder + PLACEHOLDER.length();
+        }
+
+        return sb.append(format, start, format.length()).toString();
+    }
+}
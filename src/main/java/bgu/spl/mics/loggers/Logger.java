@@ -1,9 +1,14 @@
 package bgu.spl.mics.loggers;
 
 import java.io.IOException;
+import java.util.function.Supplier;
 
 /**
  * Responsible for logging to a string buffer
+ * <p>
+ * The leveled methods only build the message if the logger logs messages of the level, so a disabled message
+ * allocates nothing as long as its arguments are already at hand. A message whose arguments are costly to compute
+ * should be passed as a supplier, or guarded with {@link #isEnabled(Level)}.
  */
 public interface Logger {
     /**
@@ -34,6 +39,96 @@ public interface Logger {
      */
     Logger append(Object o);
 
+    /**
+     * @return The lowest level of the messages this logger logs
+     */
+    Level getLevel();
+
+    /**
+     * Sets the lowest level of the messages this logger logs
+     * @param level The level, {@link Level#Off} to log nothing
+     */
+    void setLevel(Level level);
+
+    /**
+     * @param level The level of a message
+     * @return Whether messages of the level are logged
+     */
+    default boolean isEnabled(Level level) {
+        return level.compareTo(getLevel()) >= 0;
+    }
+
+    /**
+     * Logs the message if its level is enabled, and appends a new line separator
+     * @param level The level of the message
+     * @param message The message
+     * @return The logger instance
+     */
+    default Logger appendLine(Level level, String message) {
+        if (isEnabled(level)) {
+            appendLine(message);
+        }
+        return this;
+    }
+
+    /**
+     * Logs the message supplied if its level is enabled, and appends a new line separator
+     * @param level The level of the message
+     * @param message Supplies the message, only called if the message is logged
+     * @return The logger instance
+     */
+    default Logger appendLine(Level level, Supplier<String> message) {
+        if (isEnabled(level)) {
+            appendLine(message.get());
+        }
+        return this;
+    }
+
+    /**
+     * Logs the message if its level is enabled, and appends a new line separator
+     * @param level The level of the message
+     * @param format The message, with {@code {}} in place of the argument
+     * @param arg The argument
+     * @return The logger instance
+     */
+    default Logger appendLine(Level level, String format, Object arg) {
+        if (isEnabled(level)) {
+            appendLine(LogFormat.format(format, arg));
+        }
+        return this;
+    }
+
+    /**
+     * Logs the message if its level is enabled, and appends a new line separator
+     * @param level The level of the message
+     * @param format The message, with {@code {}} in place of each argument
+     * @param arg1 The first argument
+     * @param arg2 The second argument
+     * @return The logger instance
+     */
+    default Logger appendLine(Level level, String format, Object arg1, Object arg2) {
+        if (isEnabled(level)) {
+            appendLine(LogFormat.format(format, arg1, arg2));
+        }
+        return this;
+    }
+
+    /**
+     * Logs the message if its level is enabled, and appends a new line separator
+     * @param level The level of the message
+     * @param format The message, with {@code {}} in place of each argument
+     * @param arg1 The first argument
+     * @param arg2 The second argument
+     * @param arg3 The third argument
+     * @return The logger instance
+     */
+    default Logger appendLine(Level level, String format, Object arg1, Object arg2, Object arg3) {
+        if (isEnabled(level)) {
+            appendLine(LogFormat.format(format, arg1, arg2, arg3));
+        }
+        return this;
+    }
+
     void flush() throws IOException;
 
     @Override
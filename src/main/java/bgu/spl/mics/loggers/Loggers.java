@@ -35,4 +35,18 @@ public class Loggers {
 
         return null;
     }
+
+    /**
+     * @param filePath The path of the file to log to
+     * @return An {@link AsyncFileLogger} of the file, null if it couldn't be opened
+     */
+    public static Logger initAsyncFileLogger(String filePath) {
+        try {
+            return new AsyncFileLogger(filePath);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        return null;
+    }
 }
@@ -23,6 +23,20 @@ public class NoLogger implements Logger {
         return this;
     }
 
+    @Override
+    public Level getLevel() {
+        return Level.Off;
+    }
+
+    @Override
+    public void setLevel(Level level) {
+    }
+
+    @Override
+    public boolean isEnabled(Level level) {
+        return false;
+    }
+
     @Override
     public void flush() throws IOException {
 
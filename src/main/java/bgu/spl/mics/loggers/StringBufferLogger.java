@@ -7,6 +7,7 @@ import java.io.IOException;
  */
 public class StringBufferLogger implements Logger {
     private StringBuilder sb;
+    private volatile Level level = Level.Debug;
 
     /**
      * Initializes a new logger instance with a default StringBuffer
@@ -37,6 +38,16 @@ public class StringBufferLogger implements Logger {
         return this;
     }
 
+    @Override
+    public Level getLevel() {
+        return level;
+    }
+
+    @Override
+    public void setLevel(Level level) {
+        this.level = level;
+    }
+
     @Override
     public void flush() throws IOException {
 
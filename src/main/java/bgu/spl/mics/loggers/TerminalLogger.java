@@ -3,6 +3,8 @@ package bgu.spl.mics.loggers;
 import java.io.IOException;
 
 public class TerminalLogger implements Logger {
+    private volatile Level level = Level.Debug;
+
     @Override
     public synchronized Logger appendLine(String s) {
         System.out.println(s);
@@ -27,6 +29,16 @@ public class TerminalLogger implements Logger {
         return this;
     }
 
+    @Override
+    public Level getLevel() {
+        return level;
+    }
+
+    @Override
+    public void setLevel(Level level) {
+        this.level = level;
+    }
+
     @Override
     public synchronized void flush() throws IOException {
         System.out.flush();
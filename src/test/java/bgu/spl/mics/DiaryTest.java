@@ -0,0 +1,115 @@
+package bgu.spl.mics;
+
+import bgu.spl.mics.application.passiveObjects.Diary;
+import bgu.spl.mics.application.passiveObjects.Report;
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DiaryTest {
+    /**
+     * Tests that a streamed diary leaves a recoverable file midway,
+     * and ends up the same as the one printed at once
+     */
+    @Test
+    public void testStreamToFile() throws IOException {
+        Diary diary = Diary.getInstance();
+        File streamed = createOutputFile();
+        File printed = createOutputFile();
+
+        diary.addReport(createReport("Thunderball", 1));
+        diary.incrementTotal();
+        diary.printToFile(printed.getPath());
+
+        // The reports added so far are streamed first
+        diary.streamToFile(streamed.getPath());
+        assertTrue(diary.getReports().isEmpty(), "Kept the streamed reports");
+        diary.addReport(createReport("Skyfall", 2));
+
+        // As if the run stopped here
+        JsonObject recovered = new Gson().fromJson(readFile(streamed) + "]}", JsonObject.class);
+        assertEquals(2, recovered.getAsJsonArray("reports").size(), "Reports missing from the partial file");
+
+        diary.printToFile(streamed.getPath());
+        JsonObject expected = new Gson().fromJson(readFile(printed), JsonObject.class);
+        expected.getAsJsonArray("reports").add(new Gson().toJsonTree(createReport("Skyfall", 2)));
+        assertEquals(expected, new Gson().fromJson(readFile(streamed), JsonObject.class),
+            "The streamed diary is different than the printed one");
+    }
+
+    /**
+     * Tests that the reports added concurrently are all kept, and that every read is a snapshot of them:
+     * the reports of every M in the order it added them, until some point
+     */
+    @Test
+    public void testConcurrentReports() throws IOException, InterruptedException {
+        Diary diary = Diary.getInstance();
+        int mCount = 4;
+        int reportsPerM = 10_000;
+        Thread[] ms = new Thread[mCount];
+        for (int m = 0; m < mCount; m++) {
+            int serialNumber = m;
+            ms[m] = new Thread(() -> {
+                for (int i = 0; i < reportsPerM; i++) {
+                    diary.addReport(createReport(String.valueOf(i), serialNumber));
+                }
+            });
+            ms[m].start();
+        }
+
+        boolean done = false;
+        while (!done) {
+            done = true;
+            for (Thread m : ms) {
+                done &= !m.isAlive();
+            }
+            assertSnapshot(diary.getReports(), mCount, done ? reportsPerM : -1);
+        }
+
+        // Empties the diary for the other tests
+        File drained = createOutputFile();
+        diary.streamToFile(drained.getPath());
+        diary.printToFile(drained.getPath());
+    }
+
+    private static void assertSnapshot(List<Report> reports, int mCount, int expectedPerM) {
+        int[] next = new int[mCount];
+        for (Report report : reports) {
+            assertEquals(next[report.getM()]++, Integer.parseInt(report.getMissionName()), "Not a snapshot");
+        }
+        if (expectedPerM >= 0) {
+            for (int count : next) {
+                assertEquals(expectedPerM, count, "Lost reports");
+            }
+        }
+    }
+
+    private static Report createReport(String missionName, int m) {
+        Report report = new Report();
+        report.setMissionName(missionName);
+        report.setM(m);
+        report.setAgentsSerialNumbersNumber(Arrays.asList("007"));
+        report.setAgentsNames(Arrays.asList("James Bond"));
+        report.setGadgetName("Sky Hook");
+        return report;
+    }
+
+    private static String readFile(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+
+    private static File createOutputFile() throws IOException {
+        File file = File.createTempFile("diary", ".json");
+        file.deleteOnExit();
+        return file;
+    }
+}
@@ -3,7 +3,10 @@ package bgu.spl.mics;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.lang.reflect.Field;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -139,4 +142,145 @@ public class FutureTest {
 
         TestUtils.closeThread(resolver);
     }
+
+    @Test
+    /*
+    Tests that waiters which timed out don't stay in the future, only the registered callbacks do
+     */
+    public void timedGet_timeoutUnlinksWaiter() throws Exception {
+        StringBuilder calls = new StringBuilder();
+        future.onResolved(result -> calls.append("a").append(result));
+        for (int i = 0; i < 1000; i++) {
+            assertNull(future.get(1, TimeUnit.MICROSECONDS), "Got some result despite timeout");
+        }
+
+        Field state = Future.class.getDeclaredField("state");
+        state.setAccessible(true);
+        int completions = 0;
+        Field next = null;
+        for (Object completion = state.get(future); completion != null; completion = next.get(completion)) {
+            if (next == null) {
+                next = completion.getClass().getSuperclass().getDeclaredField("next");
+                next.setAccessible(true);
+            }
+            ++completions;
+        }
+        assertEquals(1, completions, "The waiters which timed out were kept");
+
+        future.resolve(5);
+        assertEquals("a5", calls.toString(), "The callback was not called");
+    }
+
+    @Test
+    /*
+    Tests that callbacks registered before resolving are called once resolved, in registration order,
+    and that a callback registered after resolving is called immediately
+     */
+    public void onResolved() {
+        StringBuilder calls = new StringBuilder();
+        future.onResolved(result -> calls.append("a").append(result));
+        future.onResolved(result -> calls.append("b").append(result));
+        assertEquals("", calls.toString(), "A callback was called before resolving");
+
+        future.resolve(4);
+        assertEquals("a4b4", calls.toString(), "Callbacks were not called in order");
+
+        future.onResolved(result -> calls.append("c").append(result));
+        assertEquals("a4b4c4", calls.toString(), "A callback registered after resolving was not called");
+    }
+
+    @Test
+    /*
+    Tests that a callback which throws doesn't prevent the rest from being called, nor fails the resolving thread
+     */
+    public void onResolved_throwingCallback() {
+        StringBuilder calls = new StringBuilder();
+        future.onResolved(result -> {
+            throw new IllegalStateException("Thrown by a test callback");
+        });
+        future.onResolved(result -> calls.append("b").append(result));
+
+        future.resolve(3);
+        assertEquals("b3", calls.toString(), "A callback after the throwing one was not called");
+        assertTrue(future.isDone(), "The future was not resolved");
+    }
+
+    @Test
+    /*
+    Tests that only the first resolve sets the result
+     */
+    public void resolveOnlyOnce() throws InterruptedException {
+        AtomicInteger calls = new AtomicInteger();
+        future.onResolved(result -> calls.incrementAndGet());
+
+        future.resolve(1);
+        future.resolve(2);
+
+        assertEquals(1, future.get(), "The result was overridden");
+        assertEquals(1, calls.get(), "The callback was called more than once");
+    }
+
+    @Test
+    /*
+    Tests chaining futures with thenApply and thenCompose
+     */
+    public void thenApplyAndCompose() throws InterruptedException {
+        Future<Integer> next = new Future<>();
+        Future<String> mapped = future.thenApply(result -> "#" + result);
+        Future<Integer> composed = future.thenCompose(result -> next);
+        Future<Integer> composedWithNull = future.thenCompose(result -> null);
+
+        future.resolve(6);
+        assertEquals("#6", mapped.get(50, TimeUnit.MILLISECONDS), "Different mapped result");
+        assertFalse(composed.isDone(), "Resolved before the composed future did");
+        assertTrue(composedWithNull.isDone(), "Not resolved when no future was composed");
+        assertNull(composedWithNull.get(), "Got a result when no future was composed");
+
+        next.resolve(8);
+        assertEquals(8, composed.get(50, TimeUnit.MILLISECONDS), "Different composed result");
+    }
+
+    @Test
+    /*
+    Tests that a failed future has no result, and that its failure (or a failing function) fails the chained futures
+     */
+    public void failPropagates() throws Exception {
+        StringBuilder calls = new StringBuilder();
+        future.onResolved(result -> calls.append(result));
+        Future<String> mapped = future.thenApply(result -> "#" + result);
+        Future<Integer> composed = future.thenCompose(result -> new Future<>());
+        CompletableFuture<Integer> completableFuture = future.toCompletableFuture();
+        RuntimeException cause = new RuntimeException("rejected");
+
+        future.fail(cause);
+        future.resolve(3);
+        assertTrue(future.isDone(), "Not done after failing");
+        assertTrue(future.isFailed(), "Not failed");
+        assertSame(cause, future.getFailure(), "Different failure");
+        assertNull(future.get(), "Got a result of a failed future");
+        assertEquals("", calls.toString(), "A callback was called for a failed future");
+        assertSame(cause, mapped.getFailure(), "The mapped future did not fail");
+        assertSame(cause, composed.getFailure(), "The composed future did not fail");
+        assertTrue(completableFuture.isCompletedExceptionally(), "The CompletableFuture did not fail");
+
+        Future<Integer> resolved = new Future<>();
+        Future<Integer> throwing = resolved.thenApply(result -> {
+            throw new IllegalStateException();
+        });
+        resolved.resolve(1);
+        assertTrue(throwing.getFailure() instanceof IllegalStateException, "A throwing function did not fail the future");
+        assertFalse(resolved.isFailed(), "A resolved future failed");
+    }
+
+    @Test
+    /*
+    Tests that the CompletableFuture bridge completes when the future is resolved
+     */
+    public void toCompletableFuture() throws Exception {
+        CompletableFuture<Integer> completableFuture = future.toCompletableFuture();
+        assertFalse(completableFuture.isDone(), "Completed before resolving");
+
+        future.resolve(9);
+        assertEquals(9, completableFuture.get(50, TimeUnit.MILLISECONDS), "Different result");
+    }
 }
@@ -0,0 +1,156 @@
+package bgu.spl.mics;
+
+import bgu.spl.mics.journal.JournalDecoder;
+import bgu.spl.mics.journal.Journals;
+import bgu.spl.mics.journal.MappedFileJournal;
+import bgu.spl.mics.mocks.MockBroadcast;
+import bgu.spl.mics.mocks.MockEvent;
+import bgu.spl.mics.mocks.MockSubscriber;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JournalTest {
+    /**
+     * Tests that the activity of the broker is recorded and decoded back, as text and as JSON
+     */
+    @Test
+    public void testBrokerActivity() throws IOException, InterruptedException {
+        File file = createJournalFile();
+        MappedFileJournal journal = new MappedFileJournal(file.getPath());
+        MessageBroker broker = new MessageBrokerImpl();
+        Subscriber subscriber = new MockSubscriber("s1");
+        MockEvent event = new MockEvent();
+
+        Journals.BrokerJournal = journal;
+        try {
+            broker.register(subscriber);
+            broker.subscribeEvent(MockEvent.class, subscriber);
+            broker.subscribeBroadcast(MockBroadcast.class, subscriber);
+            broker.sendEvent(event);
+            broker.awaitMessage(subscriber);
+            broker.complete(event, 1);
+            broker.sendBroadcast(new MockBroadcast());
+            broker.unregister(subscriber);
+        } finally {
+            Journals.BrokerJournal = Journals.NoJournal;
+            journal.close();
+        }
+
+        StringWriter text = new StringWriter();
+        JournalDecoder.toText(file.getPath(), text);
+        String[] lines = text.toString().split("\\R");
+        String[] expected = {
+            "Register s1 - -",
+            "Send - MockEvent " + String.format("#%08x", System.identityHashCode(event)),
+            "Assign s1 MockEvent " + String.format("#%08x", System.identityHashCode(event)),
+            "Complete - MockEvent " + String.format("#%08x", System.identityHashCode(event)),
+            "Send - MockBroadcast",
+            "Assign s1 MockBroadcast",
+            "Unregister s1 - -",
+        };
+        assertEquals(1 + expected.length, lines.length, "Wrong number of entries:\n" + text);
+        for (int i = 0; i < expected.length; i++) {
+            String[] columns = lines[i + 1].trim().split("\\s+", 3);
+            assertTrue(columns[2].replaceAll("\\s+", " ").startsWith(expected[i]), "Wrong entry: " + lines[i + 1]);
+        }
+
+        StringWriter json = new StringWriter();
+        JournalDecoder.toJson(file.getPath(), json);
+        assertTrue(json.toString().contains("\"messageType\": \"bgu.spl.mics.mocks.MockEvent\""), json.toString());
+        assertEquals(expected.length, json.toString().split("\"timeNanos\"").length - 1);
+    }
+
+    /**
+     * Tests that records which don't fit in the rest of a segment continue in the next one,
+     * from several threads at once
+     */
+    @Test
+    public void testManySegments() throws IOException, InterruptedException {
+        int threadCount = 4;
+        int entriesPerThread = 10_000;
+        File file = createJournalFile();
+        // The smallest segment, holds a few thousand entries
+        MappedFileJournal journal = new MappedFileJournal(file.getPath(), 70_000);
+
+        Thread[] threads = new Thread[threadCount];
+        for (int t = 0; t < threadCount; t++) {
+            Subscriber subscriber = new MockSubscriber("s" + t);
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < entriesPerThread; i++) {
+                    journal.assign(subscriber, new MockBroadcast());
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        journal.close();
+        assertTrue(journal.getLength() > 70_000 * 3, "Didn't span several segments");
+
+        StringWriter text = new StringWriter();
+        JournalDecoder.toText(file.getPath(), text);
+        int[] counts = new int[threadCount];
+        String[] lines = text.toString().split("\\R");
+        for (int i = 1; i < lines.length; i++) {
+            String[] columns = lines[i].trim().split("\\s+");
+            assertEquals("Assign", columns[2], "Wrong entry: " + lines[i]);
+            ++counts[Integer.parseInt(columns[3].substring(1))];
+        }
+        for (int count : counts) {
+            assertEquals(entriesPerThread, count, "Lost entries");
+        }
+    }
+
+    /**
+     * Tests that closing the journal while threads are recording waits for their records,
+     * so every record within the length of the journal is decoded
+     */
+    @Test
+    public void testCloseWhileRecording() throws IOException, InterruptedException {
+        int threadCount = 4;
+        // Few enough for the default segment, so no segment ends with unused space
+        int entriesPerThread = 10_000;
+        File file = createJournalFile();
+        MappedFileJournal journal = new MappedFileJournal(file.getPath());
+        CountDownLatch recording = new CountDownLatch(threadCount);
+
+        Thread[] threads = new Thread[threadCount];
+        for (int t = 0; t < threadCount; t++) {
+            Subscriber subscriber = new MockSubscriber("s" + t);
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < entriesPerThread; i++) {
+                    journal.assign(subscriber, new MockBroadcast());
+                    if (i == 100) {
+                        recording.countDown();
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        recording.await();
+        journal.close();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        StringWriter text = new StringWriter();
+        JournalDecoder.toText(file.getPath(), text);
+        int entries = text.toString().split("\\R").length - 1;
+        // The header, the name records (a name of 2 bytes for every subscriber and the name of the message type) and the entries
+        long namesLength = threadCount * (7 + 2) + 7 + MockBroadcast.class.getName().length();
+        assertEquals(journal.getLength(), 28 + namesLength + entries * 21L, "Records within the length were not decoded");
+    }
+
+    private static File createJournalFile() throws IOException {
+        File file = File.createTempFile("journal", ".bin");
+        file.deleteOnExit();
+        return file;
+    }
+}
@@ -0,0 +1,84 @@
+package bgu.spl.mics;
+
+import bgu.spl.mics.mocks.MockSubscriber;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class KeyedEventRoutingTest {
+    private MessageBrokerImpl messageBroker;
+
+    @BeforeEach
+    public void setUp() {
+        messageBroker = new MessageBrokerImpl();
+    }
+
+    /**
+     * Tests that keyed events always go to the subscriber owning the shard of their key
+     */
+    @Test
+    public void testRoutedToOwningShard() throws InterruptedException {
+        Subscriber s0 = new ShardSubscriber("s0", 0);
+        Subscriber s1 = new ShardSubscriber("s1", 1);
+        registerAndSubscribe(s0);
+        registerAndSubscribe(s1);
+
+        KeyedMockEvent first = new KeyedMockEvent(3);
+        KeyedMockEvent second = new KeyedMockEvent(5);
+        KeyedMockEvent third = new KeyedMockEvent(-2);
+        assertNotNull(messageBroker.sendEvent(first), "No subscriber to handle the message");
+        messageBroker.sendEvent(second);
+        messageBroker.sendEvent(third);
+
+        assertSame(first, messageBroker.pollMessage(s1), "The event was not routed to its shard");
+        assertSame(second, messageBroker.pollMessage(s1), "The event was not routed to its shard");
+        assertSame(third, messageBroker.pollMessage(s0), "The event was not routed to its shard");
+        assertNull(messageBroker.pollMessage(s0), "An event was routed to the wrong shard");
+    }
+
+    /**
+     * Tests that a keyed event whose shard has no owner is still handled by someone
+     */
+    @Test
+    public void testFallbackWithoutOwner() throws InterruptedException {
+        Subscriber s0 = new ShardSubscriber("s0", 0);
+        Subscriber unsharded = new MockSubscriber();
+        registerAndSubscribe(s0);
+        registerAndSubscribe(unsharded);
+
+        KeyedMockEvent event = new KeyedMockEvent(1);
+        assertNotNull(messageBroker.sendEvent(event), "The event without an owner was dropped");
+
+        Message received = messageBroker.pollMessage(s0);
+        if (received == null) {
+            received = messageBroker.pollMessage(unsharded);
+        }
+        assertSame(event, received, "The event without an owner was not delivered");
+    }
+
+    private void registerAndSubscribe(Subscriber subscriber) {
+        messageBroker.register(subscriber);
+        messageBroker.subscribeEvent(KeyedMockEvent.class, subscriber);
+    }
+
+    private static class KeyedMockEvent implements KeyedEvent<Integer> {
+        private final int key;
+
+        KeyedMockEvent(int key) {
+            this.key = key;
+        }
+
+        @Override
+        public int getRoutingKey() {
+            return key;
+        }
+    }
+
+    private static class ShardSubscriber extends MockSubscriber {
+        ShardSubscriber(String name, int shard) {
+            super(name);
+            setShard(shard);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package bgu.spl.mics;
+
+import bgu.spl.mics.loggers.AsyncFileLogger;
+import bgu.spl.mics.loggers.FullBufferPolicy;
+import bgu.spl.mics.loggers.Level;
+import bgu.spl.mics.loggers.Logger;
+import bgu.spl.mics.loggers.Loggers;
+import bgu.spl.mics.loggers.StringBufferLogger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LoggerTest {
+    private Logger logger;
+
+    @BeforeEach
+    public void setUp() {
+        logger = new StringBufferLogger();
+    }
+
+    /**
+     * Tests that the arguments of a parameterized message replace its placeholders in order
+     */
+    @Test
+    public void testParameterizedMessage() {
+        logger.appendLine(Level.Info, "{} sent {} to {}", "M1", 7, null);
+        logger.appendLine(Level.Info, "{} and {}", "only one");
+        assertEquals("M1 sent 7 to null\nonly one and {}\n", logger.toString());
+    }
+
+    /**
+     * Tests that messages below the level of the logger are neither built nor logged
+     */
+    @Test
+    public void testLevelGating() {
+        logger.setLevel(Level.Warn);
+        logger.appendLine(Level.Debug, () -> {
+            fail("Built a disabled message");
+            return "";
+        });
+        logger.appendLine(Level.Info, "{} registered", "M1");
+        logger.appendLine(Level.Warn, "No one has taken {}", "the event");
+        assertEquals("No one has taken the event\n", logger.toString());
+
+        assertFalse(Loggers.NoLogger.isEnabled(Level.Error), "The no logger logs");
+    }
+
+    /**
+     * Tests that the async file logger writes every line logged before close, in the order of each thread,
+     * and that flush waits for the lines logged before it
+     */
+    @Test
+    public void testAsyncFileLogger() throws IOException, InterruptedException {
+        int threadCount = 4;
+        int linesPerThread = 5000;
+        File file = File.createTempFile("async-logger", ".log");
+        file.deleteOnExit();
+        // A small buffer, so the logging threads catch up with the writer and wait for it
+        AsyncFileLogger asyncLogger = new AsyncFileLogger(file.getPath(), 64, FullBufferPolicy.Block);
+
+        asyncLogger.appendLine("first");
+        asyncLogger.flush();
+        assertEquals("first\n", new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+
+        Thread[] threads = new Thread[threadCount];
+        for (int t = 0; t < threadCount; t++) {
+            int thread = t;
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < linesPerThread; i++) {
+                    asyncLogger.appendLine(Level.Info, "{} {}", thread, i);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        asyncLogger.close();
+        asyncLogger.appendLine("after close");
+
+        List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+        assertEquals(1 + threadCount * linesPerThread, lines.size(), "Lost lines");
+        int[] next = new int[threadCount];
+        for (String line : lines.subList(1, lines.size())) {
+            String[] parts = line.split(" ");
+            int thread = Integer.parseInt(parts[0]);
+            assertEquals(next[thread]++, Integer.parseInt(parts[1]), "Out of order line of thread " + thread);
+        }
+        assertEquals(1, asyncLogger.getDroppedCount(), "Only the line logged after close is dropped");
+    }
+
+    /**
+     * Tests that every line logged while the async file logger closes is either written or counted as dropped
+     */
+    @Test
+    public void testAsyncFileLoggerCloseWhileLogging() throws IOException, InterruptedException {
+        int threadCount = 4;
+        int linesPerThread = 2000;
+        for (int round = 0; round < 20; round++) {
+            File file = File.createTempFile("async-logger", ".log");
+            file.deleteOnExit();
+            AsyncFileLogger asyncLogger = new AsyncFileLogger(file.getPath(), 64, FullBufferPolicy.Block);
+
+            Thread[] threads = new Thread[threadCount];
+            for (int t = 0; t < threadCount; t++) {
+                threads[t] = new Thread(() -> {
+                    for (int i = 0; i < linesPerThread; i++) {
+                        asyncLogger.appendLine("line");
+                    }
+                });
+                threads[t].start();
+            }
+            asyncLogger.close();
+            for (Thread thread : threads) {
+                thread.join();
+            }
+
+            long written = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8).size();
+            assertEquals(threadCount * linesPerThread, written + asyncLogger.getDroppedCount(),
+                "Lines were neither written nor dropped");
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package bgu.spl.mics;
+
+import bgu.spl.mics.application.MI6Runner;
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MI6RunnerTest {
+    /**
+     * Tests a run in which the Moneypennies release the agents at the last tick, while Ms still wait for them.
+     * The missions left are not executed, and their gadgets are back in the inventory.
+     * The run is in another JVM, as the passive objects are singletons and the runner exits on errors.
+     */
+    @Test
+    public void testShutdownRelease() throws IOException, InterruptedException {
+        File inventoryFile = createOutputFile("inventory");
+        File diaryFile = createOutputFile("diary");
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        Process process = new ProcessBuilder(
+            java, "-cp", System.getProperty("java.class.path"), MI6Runner.class.getName(),
+            "example-files/boaz-input2.json", inventoryFile.getPath(), diaryFile.getPath())
+            .inheritIO()
+            .start();
+        assertTrue(process.waitFor(60, TimeUnit.SECONDS), "The run did not finish");
+        assertEquals(0, process.exitValue(), "The run failed");
+
+        JsonObject diary = new Gson().fromJson(readFile(diaryFile), JsonObject.class);
+        assertEquals(4, diary.get("total").getAsInt(), "Wrong amount of missions received");
+        List<String> missions = new ArrayList<>();
+        for (JsonElement report : diary.getAsJsonArray("reports")) {
+            missions.add(report.getAsJsonObject().get("missionName").getAsString());
+        }
+        missions.sort(null);
+        assertEquals(Arrays.asList("Land of Riches", "Thunderball"), missions,
+            "Executed a mission whose agents were released at the last tick");
+
+        List<String> gadgets = new ArrayList<>();
+        for (JsonElement gadget : new Gson().fromJson(readFile(inventoryFile), JsonArray.class)) {
+            gadgets.add(gadget.getAsString());
+        }
+        gadgets.sort(null);
+        assertEquals(Arrays.asList("Dagger shoe", "Jet", "Knife", "Tank"), gadgets,
+            "The gadgets of the missions left were not given back");
+    }
+
+    private static String readFile(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+
+    private static File createOutputFile(String prefix) throws IOException {
+        File file = File.createTempFile(prefix, ".json");
+        file.deleteOnExit();
+        return file;
+    }
+}
@@ -0,0 +1,11 @@
+package bgu.spl.mics;
+
+/**
+ * Runs the message broker tests against the broker the application uses by default
+ */
+public class MessageBrokerImplTest extends MessageBrokerTest {
+    @Override
+    protected MessageBroker createMessageBroker() {
+        return new MessageBrokerImpl();
+    }
+}
@@ -14,7 +14,15 @@ public class MessageBrokerTest {
 
     @BeforeEach
     public void setUp(){
-        messageBroker = new MockMessageBroker();
+        messageBroker = createMessageBroker();
+    }
+
+    /**
+     * Creates the message broker under test, overridden by the tests of other implementations
+     * @return A new message broker
+     */
+    protected MessageBroker createMessageBroker() {
+        return new MockMessageBroker();
     }
 
     /**
@@ -46,6 +54,38 @@ public class MessageBrokerTest {
         TestUtils.closeThread(interrupter);
     }
 
+    /**
+     * Tests completing events from threads other than the one which took them:
+     * one which has taken a message of another subscriber since, and one which has not taken any message
+     */
+    @Test
+    public void testCompleteFromAnotherThread() throws InterruptedException {
+        Subscriber handler = new MockSubscriber("handler");
+        Subscriber other = new MockSubscriber("other");
+        messageBroker.register(handler);
+        messageBroker.register(other);
+        messageBroker.subscribeEvent(MockEvent.class, handler);
+        messageBroker.subscribeBroadcast(MockBroadcast.class, other);
+
+        Event<Integer> event = new MockEvent();
+        Future<Integer> future = messageBroker.sendEvent(event);
+        assertSame(event, messageBroker.awaitMessage(handler), "Got a different event");
+        messageBroker.sendBroadcast(new MockBroadcast());
+        messageBroker.awaitMessage(other);
+        messageBroker.complete(event, 4);
+        assertTrue(future.isDone(), "The event was not completed after taking a message of another subscriber");
+        assertEquals(4, future.get());
+
+        Event<Integer> second = new MockEvent();
+        Future<Integer> secondFuture = messageBroker.sendEvent(second);
+        assertSame(second, messageBroker.awaitMessage(handler), "Got a different event");
+        Thread completer = new Thread(() -> messageBroker.complete(second, 5));
+        completer.start();
+        completer.join();
+        assertTrue(secondFuture.isDone(), "The event was not completed from a thread which has not taken it");
+        assertEquals(5, secondFuture.get());
+    }
+
     /**
      * Tests the unregistering works. e.g. that the subscriber stops receiving events
      */
@@ -0,0 +1,106 @@
+package bgu.spl.mics;
+
+import bgu.spl.mics.mocks.MockBroadcast;
+import bgu.spl.mics.mocks.MockEvent;
+import bgu.spl.mics.mocks.MockSubscriber;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the message broker tests against the ring buffer broker, with a few of its own
+ */
+public class RingBufferMessageBrokerTest extends MessageBrokerTest {
+    private static final int RING_SIZE = 4;
+
+    @Override
+    protected MessageBroker createMessageBroker() {
+        return new RingBufferMessageBroker(RING_SIZE, WaitStrategy.Park);
+    }
+
+    /**
+     * Tests that events sent through a small ring arrive in order, with the senders waiting for room as it wraps around
+     */
+    @Test
+    public void testWrapAround() throws InterruptedException {
+        for (WaitStrategy waitStrategy : WaitStrategy.values()) {
+            RingBufferMessageBroker broker = new RingBufferMessageBroker(RING_SIZE, waitStrategy);
+            Subscriber subscriber = new MockSubscriber();
+            broker.register(subscriber);
+            broker.subscribeEvent(MockEvent.class, subscriber);
+
+            int count = RING_SIZE * 25;
+            List<Event<Integer>> sent = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                sent.add(new MockEvent());
+            }
+            List<Future<Integer>> futures = new ArrayList<>();
+            Thread sender = new Thread(() -> {
+                try {
+                    for (Event<Integer> event : sent) {
+                        futures.add(broker.sendEvent(event));
+                    }
+                } catch (InterruptedException ignored) {
+                }
+            });
+            sender.start();
+
+            for (int i = 0; i < count; i++) {
+                Message message = broker.awaitMessage(subscriber);
+                assertSame(sent.get(i), message, "Got the events out of order with " + waitStrategy);
+                broker.complete(sent.get(i), i);
+            }
+            sender.join();
+            assertEquals(count - 1, futures.get(count - 1).get(), "The last event was not completed with " + waitStrategy);
+            broker.unregister(subscriber);
+            assertTrue(broker.awaitQuiescence(0, TimeUnit.MILLISECONDS), "Messages are left unhandled with " + waitStrategy);
+        }
+    }
+
+    /**
+     * Tests that broadcasts sent to a full ring don't wait, and are taken in order after the ones in the ring
+     */
+    @Test
+    public void testBroadcastsSpillFromFullRing() throws InterruptedException {
+        RingBufferMessageBroker broker = new RingBufferMessageBroker(RING_SIZE, WaitStrategy.Park);
+        Subscriber subscriber = new MockSubscriber();
+        broker.register(subscriber);
+        broker.subscribeBroadcast(MockBroadcast.class, subscriber);
+
+        List<Broadcast> sent = new ArrayList<>();
+        for (int i = 0; i < RING_SIZE * 3; i++) {
+            Broadcast broadcast = new MockBroadcast();
+            sent.add(broadcast);
+            broker.sendBroadcast(broadcast);
+        }
+        assertEquals(sent.size(), broker.getPendingCount(subscriber), "Not all the broadcasts were delivered");
+
+        for (Broadcast broadcast : sent) {
+            assertSame(broadcast, broker.pollMessage(subscriber), "Got the broadcasts out of order");
+        }
+        assertNull(broker.pollMessage(subscriber), "Got a broadcast which was not sent");
+        assertTrue(broker.awaitQuiescence(0, TimeUnit.MILLISECONDS), "Messages are left unhandled");
+    }
+
+    /**
+     * Tests that the events left in the ring of a subscriber which unregisters fail
+     */
+    @Test
+    public void testUnregisterFailsQueuedEvents() throws InterruptedException {
+        RingBufferMessageBroker broker = new RingBufferMessageBroker(RING_SIZE, WaitStrategy.Park);
+        Subscriber subscriber = new MockSubscriber();
+        broker.register(subscriber);
+        broker.subscribeEvent(MockEvent.class, subscriber);
+
+        Future<Integer> future = broker.sendEvent(new MockEvent());
+        broker.unregister(subscriber);
+
+        assertTrue(future.isDone(), "The queued event was not resolved");
+        assertTrue(future.isFailed(), "The queued event did not fail");
+        assertTrue(broker.awaitQuiescence(0, TimeUnit.MILLISECONDS), "Messages are left unhandled");
+    }
+}
@@ -0,0 +1,83 @@
+package bgu.spl.mics;
+
+import bgu.spl.mics.mocks.MockEvent;
+import bgu.spl.mics.mocks.MockSubscriber;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RoundRobinDispatcherTest {
+    private RoundRobinDispatcher dispatcher;
+    private Subscriber[] subscribers;
+
+    @BeforeEach
+    public void setUp() {
+        dispatcher = new RoundRobinDispatcher();
+        subscribers = new Subscriber[] {
+            new MockSubscriber("s1"),
+            new MockSubscriber("s2"),
+            new MockSubscriber("s3")
+        };
+    }
+
+    /**
+     * Tests that consecutive picks go over the subscribers in order, and wrap around
+     */
+    @Test
+    public void testPicksInOrder() {
+        for (int round = 0; round < 3; round++) {
+            for (Subscriber subscriber : subscribers) {
+                assertSame(subscriber, dispatcher.next(MockEvent.class, subscribers), "Picked out of order");
+            }
+        }
+    }
+
+    /**
+     * Tests that when many threads pick concurrently, every subscriber is picked the same amount of times
+     */
+    @Test
+    public void testConcurrentPicksAreFair() throws InterruptedException {
+        int threadsCount = 8;
+        int picksPerThread = subscribers.length * 1000;
+        Map<Subscriber, AtomicInteger> picks = new ConcurrentHashMap<>();
+        for (Subscriber subscriber : subscribers) {
+            picks.put(subscriber, new AtomicInteger());
+        }
+
+        Thread[] threads = new Thread[threadsCount];
+        for (int i = 0; i < threadsCount; i++) {
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < picksPerThread; j++) {
+                    picks.get(dispatcher.next(MockEvent.class, subscribers)).incrementAndGet();
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        int expected = threadsCount * picksPerThread / subscribers.length;
+        for (Subscriber subscriber : subscribers) {
+            assertEquals(expected, picks.get(subscriber).get(), subscriber.getName() + " was not picked fairly");
+        }
+    }
+
+    /**
+     * Tests that picking keeps going round robin over a new snapshot after the subscribers change
+     */
+    @Test
+    public void testPicksAfterSnapshotChange() {
+        dispatcher.next(MockEvent.class, subscribers);
+        Subscriber[] smaller = new Subscriber[] { subscribers[0], subscribers[2] };
+
+        Subscriber first = dispatcher.next(MockEvent.class, smaller);
+        Subscriber second = dispatcher.next(MockEvent.class, smaller);
+        assertNotSame(first, second, "The same subscriber was picked twice in a row");
+    }
+}
@@ -0,0 +1,136 @@
+package bgu.spl.mics;
+
+import bgu.spl.mics.mocks.MockEvent;
+import bgu.spl.mics.mocks.MockSubscriber;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RoutingPoliciesTest {
+    private Subscriber[] subscribers;
+
+    @BeforeEach
+    public void setUp() {
+        subscribers = new Subscriber[] { new MockSubscriber("s0"), new MockSubscriber("s1"), new MockSubscriber("s2") };
+    }
+
+    /**
+     * Tests that key affinity picks the same subscriber for the same key even when no subscriber owns a shard
+     */
+    @Test
+    public void testKeyAffinityWithoutShards() {
+        RoutingPolicy<KeyedMockEvent> policy = RoutingPolicies.keyAffinity(KeyedMockEvent::getRoutingKey);
+
+        Subscriber picked = policy.route(new KeyedMockEvent(7), subscribers);
+        for (int i = 0; i < 5; i++) {
+            assertSame(picked, policy.route(new KeyedMockEvent(7), subscribers), "The same key went to another subscriber");
+        }
+        assertSame(subscribers[1], picked, "The key was not mapped to its shard");
+    }
+
+    /**
+     * Tests that over a fixed amount of shards, only the keys of an unregistered owner move to another subscriber
+     */
+    @Test
+    public void testKeyAffinityFixedShards() {
+        Subscriber[] owners = new Subscriber[subscribers.length];
+        for (int i = 0; i < owners.length; i++) {
+            owners[i] = new ShardMockSubscriber("s" + i, i);
+        }
+        RoutingPolicy<KeyedMockEvent> policy = RoutingPolicies.keyAffinity(KeyedMockEvent::getRoutingKey, owners.length);
+
+        for (int key = 0; key < 30; key++) {
+            assertSame(owners[key % owners.length], policy.route(new KeyedMockEvent(key), owners), "The key was not sent to its owner");
+        }
+
+        // s1 unregistered
+        Subscriber[] remaining = { owners[0], owners[2] };
+        for (int key = 0; key < 30; key++) {
+            Subscriber picked = policy.route(new KeyedMockEvent(key), remaining);
+            if (key % owners.length != 1) {
+                assertSame(owners[key % owners.length], picked, "The key of a remaining owner moved");
+            }
+            else {
+                assertSame(picked, policy.route(new KeyedMockEvent(key), remaining), "The same key went to another subscriber");
+            }
+        }
+    }
+
+    /**
+     * Tests that the broker routes an event type by the policy set for it, and by default once it's removed
+     */
+    @Test
+    public void testSetRoutingPolicy() throws InterruptedException {
+        MessageBrokerImpl messageBroker = new MessageBrokerImpl();
+        for (Subscriber subscriber : subscribers) {
+            messageBroker.register(subscriber);
+            messageBroker.subscribeEvent(MockEvent.class, subscriber);
+        }
+
+        messageBroker.setRoutingPolicy(MockEvent.class, (event, snapshot) -> snapshot[snapshot.length - 1]);
+        MockEvent first = new MockEvent();
+        MockEvent second = new MockEvent();
+        messageBroker.sendEvent(first);
+        messageBroker.sendEvent(second);
+        assertSame(first, messageBroker.pollMessage(subscribers[2]), "The policy was not used");
+        assertSame(second, messageBroker.pollMessage(subscribers[2]), "The policy was not used");
+
+        messageBroker.setRoutingPolicy(MockEvent.class, null);
+        for (int i = 0; i < subscribers.length; i++) {
+            messageBroker.sendEvent(new MockEvent());
+        }
+        for (Subscriber subscriber : subscribers) {
+            assertNotNull(messageBroker.pollMessage(subscriber), "The default policy did not take turns");
+        }
+    }
+
+    /**
+     * Tests that the least pending policy avoids subscribers which haven't handled their messages,
+     * and counts the message being handled until the next one is taken
+     */
+    @Test
+    public void testLeastPending() throws InterruptedException {
+        MessageBrokerImpl messageBroker = new MessageBrokerImpl();
+        for (Subscriber subscriber : subscribers) {
+            messageBroker.register(subscriber);
+            messageBroker.subscribeEvent(MockEvent.class, subscriber);
+        }
+        messageBroker.setRoutingPolicy(MockEvent.class, RoutingPolicies.leastPending(messageBroker));
+
+        for (int i = 0; i < subscribers.length; i++) {
+            messageBroker.sendEvent(new MockEvent());
+        }
+        for (Subscriber subscriber : subscribers) {
+            assertEquals(1, messageBroker.getPendingCount(subscriber), "The events were not spread");
+        }
+
+        // s0 handles its event, but s1 and s2 still have theirs
+        assertNotNull(messageBroker.pollMessage(subscribers[0]));
+        assertEquals(1, messageBroker.getPendingCount(subscribers[0]), "The handled message is not counted");
+        assertNull(messageBroker.pollMessage(subscribers[0]));
+        MockEvent event = new MockEvent();
+        messageBroker.sendEvent(event);
+        assertSame(event, messageBroker.pollMessage(subscribers[0]), "The event was not sent to the idle subscriber");
+    }
+
+    private static class ShardMockSubscriber extends MockSubscriber {
+        ShardMockSubscriber(String name, int shard) {
+            super(name);
+            setShard(shard);
+        }
+    }
+
+    private static class KeyedMockEvent implements KeyedEvent<Integer> {
+        private final int key;
+
+        KeyedMockEvent(int key) {
+            this.key = key;
+        }
+
+        @Override
+        public int getRoutingKey() {
+            return key;
+        }
+    }
+}
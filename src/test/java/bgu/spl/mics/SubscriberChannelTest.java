@@ -0,0 +1,240 @@
+package bgu.spl.mics;
+
+import bgu.spl.mics.mocks.MockBroadcast;
+import bgu.spl.mics.mocks.MockEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SubscriberChannelTest {
+    private SubscriberChannel channel;
+
+    @BeforeEach
+    public void setUp() {
+        channel = new SubscriberChannel();
+    }
+
+    /**
+     * Tests that completing the event which was just taken resolves its future
+     */
+    @Test
+    public void testCompleteTakenEvent() throws InterruptedException {
+        MockEvent event = new MockEvent();
+        Envelope<Integer> envelope = Envelope.of(event);
+
+        assertTrue(channel.put(envelope), "The envelope was not delivered");
+        assertSame(event, channel.take(), "Took a different message");
+        assertTrue(channel.complete(event, 3), "The taken event was not found");
+        assertEquals(3, envelope.getFuture().get());
+    }
+
+    /**
+     * Tests that an event can still be completed after the next messages have been taken
+     */
+    @Test
+    public void testCompleteDeferredEvent() throws InterruptedException {
+        MockEvent event = new MockEvent();
+        Envelope<Integer> envelope = Envelope.of(event);
+
+        channel.put(envelope);
+        channel.put(Envelope.of(new MockBroadcast()));
+        channel.put(Envelope.of(new MockEvent()));
+        channel.take();
+        channel.take();
+        channel.take();
+
+        assertTrue(channel.complete(event, 5), "The deferred event was not found");
+        assertEquals(5, envelope.getFuture().get());
+        assertFalse(channel.complete(new MockEvent(), 1), "Completed an event which was never taken");
+    }
+
+    /**
+     * Tests that closing the channel fails the events left in it, and rejects new ones
+     */
+    @Test
+    public void testClose() throws InterruptedException {
+        Envelope<Integer> envelope = Envelope.of(new MockEvent());
+        channel.put(envelope);
+
+        channel.close();
+
+        assertTrue(envelope.getFuture().isDone(), "The queued event was not resolved");
+        assertTrue(envelope.getFuture().isFailed(), "The queued event did not fail");
+        assertNull(envelope.getFuture().get(), "The queued event was resolved with a result");
+        assertFalse(channel.put(Envelope.of(new MockEvent())), "An envelope was delivered to a closed channel");
+    }
+
+    /**
+     * Tests that the listener is notified of put messages, which can then be polled without blocking
+     */
+    @Test
+    public void testListenerAndPoll() throws InterruptedException {
+        int[] notified = { 0 };
+        channel.setListener(() -> notified[0]++);
+        MockBroadcast broadcast = new MockBroadcast();
+
+        assertNull(channel.poll(), "Polled a message from an empty channel");
+        channel.put(Envelope.of(broadcast));
+
+        assertEquals(1, notified[0], "The listener was not notified");
+        assertTrue(channel.hasMessages(), "The put message is missing");
+        assertSame(broadcast, channel.poll(), "Polled a different message");
+        assertFalse(channel.hasMessages(), "The polled message is still in the channel");
+    }
+
+    /**
+     * Tests that a delivered message keeps the channel active until the subscriber is done handling it
+     */
+    @Test
+    public void testActivityUntilHandled() throws InterruptedException {
+        MessageActivity activity = new MessageActivity();
+        channel = new SubscriberChannel(activity);
+        assertTrue(activity.awaitQuiescence(0, TimeUnit.MILLISECONDS), "Active without any message");
+
+        channel.put(Envelope.of(new MockBroadcast()));
+        assertFalse(activity.awaitQuiescence(0, TimeUnit.MILLISECONDS), "Quiescent while a message is queued");
+
+        channel.take();
+        assertFalse(activity.awaitQuiescence(0, TimeUnit.MILLISECONDS), "Quiescent while a message is handled");
+
+        assertNull(channel.poll());
+        assertTrue(activity.awaitQuiescence(0, TimeUnit.MILLISECONDS), "Active after the message was handled");
+    }
+
+    /**
+     * Tests that queued events are stolen only while the subscriber is busy, and can be completed by the thief
+     */
+    @Test
+    public void testStealWhileHandling() throws InterruptedException {
+        SubscriberChannel thief = new SubscriberChannel();
+        // Like the broker does for the subscribers of a stealable type, batched events can't be stolen
+        channel.setBatching(false);
+        MockEvent event = new MockEvent();
+        Envelope<Integer> envelope = Envelope.of(event);
+        channel.put(Envelope.of(new MockEvent()));
+        channel.put(Envelope.of(new MockBroadcast()));
+        channel.put(envelope);
+
+        assertNull(channel.steal(MockEvent.class), "Stole from an idle subscriber");
+        channel.take();
+        assertNull(channel.steal(MockBroadcast.class), "Stole a broadcast");
+        Envelope<?> stolen = channel.steal(MockEvent.class);
+        assertSame(envelope, stolen, "Stole a different event");
+        assertEquals(2, channel.getPendingCount(), "The stolen event is still counted by its channel");
+
+        assertSame(event, thief.adopt(stolen), "Adopted a different event");
+        assertEquals(1, thief.getPendingCount(), "The stolen event is not counted by the thief");
+        assertTrue(thief.complete(event, 4), "The thief could not complete the stolen event");
+        assertEquals(4, envelope.getFuture().get());
+    }
+
+    /**
+     * Tests that a full queue with the fail policy rejects events, but still lets broadcasts in
+     */
+    @Test
+    public void testBoundedFail() throws InterruptedException {
+        channel = new SubscriberChannel(new MessageActivity(), 1, OverflowPolicy.Fail);
+        Envelope<Integer> first = Envelope.of(new MockEvent());
+        Envelope<Integer> rejected = Envelope.of(new MockEvent());
+
+        channel.put(first);
+        channel.put(rejected);
+        channel.put(Envelope.of(new MockBroadcast()));
+
+        assertTrue(rejected.getFuture().isDone(), "The rejected event was not resolved");
+        assertTrue(rejected.getFuture().isFailed(), "The rejected event did not fail");
+        assertNull(rejected.getFuture().get(), "The rejected event was resolved with a result");
+        assertFalse(first.getFuture().isDone(), "The queued event was resolved");
+        QueueOccupancy occupancy = channel.getOccupancy();
+        assertEquals(2, occupancy.getSize(), "The broadcast was not let in");
+        assertEquals(1, occupancy.getOverflows(), "The rejection was not counted");
+    }
+
+    /**
+     * Tests that an event whose sender was interrupted while waiting for room is not counted
+     */
+    @Test
+    public void testBoundedBlockInterrupted() throws InterruptedException {
+        MessageActivity activity = new MessageActivity();
+        channel = new SubscriberChannel(activity, 1, OverflowPolicy.Block);
+        channel.put(Envelope.of(new MockEvent()));
+
+        Thread.currentThread().interrupt();
+        assertThrows(InterruptedException.class, () -> channel.put(Envelope.of(new MockEvent())));
+        assertEquals(1, channel.getPendingCount(), "The interrupted event is counted as pending");
+
+        channel.take();
+        assertNull(channel.poll());
+        assertTrue(activity.awaitQuiescence(0, TimeUnit.MILLISECONDS), "The interrupted event is counted as active");
+    }
+
+    /**
+     * Tests that stale broadcasts are dropped to make room, but the newest broadcast of a type is kept
+     */
+    @Test
+    public void testBoundedDropOldestBroadcast() throws InterruptedException {
+        channel = new SubscriberChannel(new MessageActivity(), 2, OverflowPolicy.DropOldestBroadcast);
+        MockBroadcast stale = new MockBroadcast();
+        MockBroadcast newest = new MockBroadcast();
+        MockEvent event = new MockEvent();
+
+        channel.put(Envelope.of(stale));
+        channel.put(Envelope.of(newest));
+        channel.put(Envelope.of(event));
+
+        assertSame(newest, channel.poll(), "The stale broadcast was not dropped");
+        assertSame(event, channel.poll(), "The event was not let in");
+        assertEquals(1, channel.getOccupancy().getOverflows(), "The drop was not counted");
+        assertEquals(2, channel.getOccupancy().getPeak(), "The peak went beyond the capacity");
+    }
+
+    /**
+     * Tests that messages taken in a batch keep their order, and that closing resolves the batched events
+     */
+    @Test
+    public void testBatchedTake() throws InterruptedException {
+        MockBroadcast broadcast = new MockBroadcast();
+        Envelope<Integer> batched = Envelope.of(new MockEvent());
+        channel.put(Envelope.of(broadcast));
+        channel.put(batched);
+
+        assertSame(broadcast, channel.take(), "Took the messages out of order");
+        assertFalse(channel.hasMessages() && batched.getFuture().isDone(), "The batched event was resolved");
+        assertTrue(channel.hasMessages(), "The batched event is missing");
+
+        channel.close();
+        assertTrue(batched.getFuture().isDone(), "The batched event was not resolved on closing");
+        assertNull(batched.getFuture().get(), "The batched event was resolved with a result");
+    }
+
+    /**
+     * Tests that a coalescing broadcast replaces the waiting one of its type, in its place in the queue
+     */
+    @Test
+    public void testCoalescing() throws InterruptedException {
+        MessageActivity activity = new MessageActivity();
+        channel = new SubscriberChannel(activity);
+        LatestValue stale = new LatestValue();
+        LatestValue latest = new LatestValue();
+        MockBroadcast other = new MockBroadcast();
+
+        channel.put(Envelope.of(stale));
+        channel.put(Envelope.of(other));
+        channel.put(Envelope.of(latest));
+
+        assertSame(latest, channel.take(), "The waiting broadcast was not replaced");
+        assertSame(other, channel.take(), "The replaced broadcast lost its place");
+        assertNull(channel.poll(), "The superseded broadcast was queued");
+        assertTrue(activity.awaitQuiescence(0, TimeUnit.MILLISECONDS), "The superseded broadcast is still counted");
+
+        LatestValue next = new LatestValue();
+        channel.put(Envelope.of(next));
+        assertSame(next, channel.poll(), "A broadcast sent after the latest one was taken was not queued");
+    }
+
+    private static class LatestValue implements CoalescingBroadcast {
+    }
+}
@@ -0,0 +1,60 @@
+package bgu.spl.mics;
+
+import bgu.spl.mics.application.publishers.TickScheduler;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TickSchedulerTest {
+    private static final int TICK_MS = 20;
+    private static final int TICKS = 5;
+
+    /**
+     * Tests that every tick is run in order, with the lag of each one reported
+     */
+    @Test
+    public void testRunsEveryTick() throws InterruptedException {
+        List<Integer> ticks = new ArrayList<>();
+        List<Integer> reported = new ArrayList<>();
+        TickScheduler scheduler = new TickScheduler(TICK_MS, TickScheduler.MissedTickPolicy.CatchUp,
+            (tick, lag) -> reported.add(tick));
+
+        long start = System.nanoTime();
+        scheduler.run(TICKS, ticks::add);
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        assertEquals(Arrays.asList(1, 2, 3, 4, 5), ticks, "Ticks were not run in order");
+        assertEquals(ticks, reported, "The lag was not reported for every tick");
+        assertTrue(elapsedMs >= TICKS * TICK_MS, "Ticks ran before their deadline");
+    }
+
+    /**
+     * Tests that after a slow tick, catching up runs the missed ticks back to back,
+     * while skipping keeps the spacing between the rest of the ticks
+     */
+    @Test
+    public void testMissedTickPolicies() throws InterruptedException {
+        long catchUpMs = runWithSlowFirstTick(TickScheduler.MissedTickPolicy.CatchUp);
+        long skipMs = runWithSlowFirstTick(TickScheduler.MissedTickPolicy.Skip);
+
+        // The first tick ends after 1 + 5 ticks, catching up doesn't wait for the rest of the ticks
+        assertTrue(catchUpMs < 8 * TICK_MS, "Didn't catch up, took " + catchUpMs + "ms");
+        // Skipping waits for every one of the remaining 3 ticks after the one run immediately
+        assertTrue(skipMs >= 9 * TICK_MS, "Didn't keep the spacing, took " + skipMs + "ms");
+    }
+
+    private static long runWithSlowFirstTick(TickScheduler.MissedTickPolicy policy) throws InterruptedException {
+        TickScheduler scheduler = new TickScheduler(TICK_MS, policy, (tick, lag) -> { });
+        long start = System.nanoTime();
+        scheduler.run(TICKS, tick -> {
+            if (tick == 1) {
+                Thread.sleep(5 * TICK_MS);
+            }
+        });
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+}
@@ -0,0 +1,97 @@
+package bgu.spl.mics;
+
+import bgu.spl.mics.mocks.MockEvent;
+import bgu.spl.mics.mocks.MockSubscriber;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WorkStealingTest {
+    private MessageBrokerImpl messageBroker;
+    private Subscriber busy;
+    private Subscriber idle;
+
+    @BeforeEach
+    public void setUp() {
+        messageBroker = new MessageBrokerImpl();
+        busy = new MockSubscriber("busy");
+        idle = new MockSubscriber("idle");
+        for (Subscriber subscriber : new Subscriber[] { busy, idle }) {
+            messageBroker.register(subscriber);
+            messageBroker.subscribeEvent(MockEvent.class, subscriber);
+        }
+        messageBroker.setWorkStealing(MockEvent.class, true);
+        // Every event is sent to the busy subscriber, the idle one only gets what it steals
+        messageBroker.setRoutingPolicy(MockEvent.class, (event, subscribers) -> busy);
+    }
+
+    /**
+     * Tests that an idle subscriber waiting for messages is woken to steal an event sent to a busy one
+     */
+    @Test
+    public void testWokenBySend() throws InterruptedException {
+        messageBroker.sendEvent(new MockEvent());
+        assertNotNull(messageBroker.awaitMessage(busy));
+
+        AtomicReference<Message> stolen = new AtomicReference<>();
+        Thread thief = startAwaiting(idle, stolen);
+        // Let it find nothing to steal and wait
+        Thread.sleep(50);
+        MockEvent event = new MockEvent();
+        messageBroker.sendEvent(event);
+
+        thief.join(1000);
+        assertSame(event, stolen.get(), "The idle subscriber was not woken to steal the event");
+    }
+
+    /**
+     * Tests that an idle subscriber waiting for messages is woken to steal the events left in the queue
+     * of a subscriber which has just become busy
+     */
+    @Test
+    public void testWokenByTake() throws InterruptedException {
+        messageBroker.sendEvent(new MockEvent());
+        MockEvent second = new MockEvent();
+        messageBroker.sendEvent(second);
+
+        AtomicReference<Message> stolen = new AtomicReference<>();
+        Thread thief = startAwaiting(idle, stolen);
+        // The busy subscriber isn't handling anything yet, so there's nothing to steal
+        Thread.sleep(50);
+        assertNotNull(messageBroker.awaitMessage(busy));
+
+        thief.join(1000);
+        assertSame(second, stolen.get(), "The idle subscriber was not woken to steal the event");
+    }
+
+    /**
+     * Tests that an idle subscriber waiting for messages still receives the messages sent to it
+     */
+    @Test
+    public void testWokenByOwnMessage() throws InterruptedException {
+        messageBroker.setRoutingPolicy(MockEvent.class, (event, subscribers) -> idle);
+        AtomicReference<Message> received = new AtomicReference<>();
+        Thread waiting = startAwaiting(idle, received);
+        Thread.sleep(50);
+        MockEvent event = new MockEvent();
+        messageBroker.sendEvent(event);
+
+        waiting.join(1000);
+        assertSame(event, received.get(), "The idle subscriber was not woken by its own message");
+    }
+
+    private Thread startAwaiting(Subscriber subscriber, AtomicReference<Message> received) {
+        Thread thread = new Thread(() -> {
+            try {
+                received.set(messageBroker.awaitMessage(subscriber));
+            } catch (InterruptedException ignored) {
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+}